@@ -0,0 +1,40 @@
+package de.aservo.confapi.confluence.constants;
+
+/**
+ * Path segments for Confluence specific endpoints that are not (yet) part of the shared ConfAPI constants.
+ */
+public class ConfluenceConfAPI {
+
+    public static final String CACHES_CLUSTER = "cluster";
+    public static final String CACHES_PROFILE = "profile";
+    public static final String CACHES_PROFILE_APPLY = "apply";
+    public static final String CACHES_METRICS = "metrics";
+
+    public static final String USERS_BULK = "bulk";
+    public static final String USERS_LIST = "list";
+    public static final String USERS_RENAME = "rename";
+    public static final String USERS_RENAME_QUEUE = "rename-queue";
+    public static final String USERS_PASSWORDS = "passwords";
+    public static final String USERS_CHANGES = "changes";
+    public static final String USERS_DEACTIVATE = "deactivate";
+    public static final String USERS_DEACTIVATE_QUEUE = "deactivate-queue";
+
+    public static final String DIRECTORIES_APPLY = "apply";
+    public static final String DIRECTORIES_SYNC = "sync";
+    public static final String DIRECTORIES_SYNC_QUEUE = "sync-queue";
+    public static final String DIRECTORIES_SYNC_HISTORY = "history";
+    public static final String DIRECTORIES_SYNC_SCHEDULE = "sync-schedule";
+    public static final String DIRECTORIES_LDAP = "ldap";
+    public static final String DIRECTORIES_PROBE = "probe";
+    public static final String DIRECTORIES_ORDER = "order";
+
+    public static final String GROUPS = "groups";
+    public static final String GROUP = "group";
+    public static final String GROUP_MEMBERS = "members";
+
+    public static final String MEDIA_TYPE_OPENMETRICS = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private ConfluenceConfAPI() {
+    }
+
+}
@@ -0,0 +1,91 @@
+package de.aservo.confapi.confluence.filter;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import de.aservo.confapi.commons.model.UserBean;
+import de.aservo.confapi.commons.service.api.UsersService;
+import de.aservo.confapi.confluence.model.util.UserBeanUtil;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * The user entity tag resource filter.
+ *
+ * Adds an ETag header to all responses containing a single user. Conditional reads with If-None-Match
+ * are answered with 304 if the user did not change, updates with If-Match are rejected with 412
+ * if the user has been changed in the meantime.
+ */
+@Provider
+@Component
+public class UserEntityTagResourceFilter implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String QUERY_PARAM_USERNAME = "username";
+
+    private final UsersService usersService;
+
+    /**
+     * Instantiates a new user entity tag resource filter.
+     *
+     * @param usersService the users service
+     */
+    @Inject
+    public UserEntityTagResourceFilter(UsersService usersService) {
+        this.usersService = usersService;
+    }
+
+    public ContainerRequestFilter getRequestFilter() {
+        return this;
+    }
+
+    public ContainerResponseFilter getResponseFilter() {
+        return this;
+    }
+
+    public ContainerRequest filter(ContainerRequest containerRequest) {
+        final String username = containerRequest.getQueryParameters().getFirst(QUERY_PARAM_USERNAME);
+
+        if (HttpMethod.PUT.equals(containerRequest.getMethod()) && username != null
+                && containerRequest.getRequestHeaders().getFirst(HttpHeaders.IF_MATCH) != null) {
+
+            final EntityTag entityTag = new EntityTag(UserBeanUtil.toEntityTag(usersService.getUser(username)));
+            final Response.ResponseBuilder preconditionFailed = containerRequest.evaluatePreconditions(entityTag);
+
+            if (preconditionFailed != null) {
+                throw new WebApplicationException(preconditionFailed.tag(entityTag).build());
+            }
+        }
+
+        return containerRequest;
+    }
+
+    public ContainerResponse filter(ContainerRequest containerRequest, ContainerResponse containerResponse) {
+        if (containerResponse.getStatus() != Response.Status.OK.getStatusCode()
+                || !(containerResponse.getEntity() instanceof UserBean)) {
+            return containerResponse;
+        }
+
+        final EntityTag entityTag = new EntityTag(UserBeanUtil.toEntityTag((UserBean) containerResponse.getEntity()));
+
+        if (HttpMethod.GET.equals(containerRequest.getMethod())) {
+            final Response.ResponseBuilder notModified = containerRequest.evaluatePreconditions(entityTag);
+
+            if (notModified != null) {
+                containerResponse.setResponse(notModified.tag(entityTag).build());
+                return containerResponse;
+            }
+        }
+
+        containerResponse.getHttpHeaders().putSingle(HttpHeaders.ETAG, entityTag);
+        return containerResponse;
+    }
+}
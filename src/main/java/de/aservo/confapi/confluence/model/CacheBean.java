@@ -7,11 +7,14 @@ import lombok.NoArgsConstructor;
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
 
 @Data
 @NoArgsConstructor
 @XmlRootElement(name = ConfAPI.CACHE)
-public class CacheBean {
+public class CacheBean implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @NotNull
     @XmlElement
@@ -20,9 +23,21 @@ public class CacheBean {
     @XmlElement
     private Integer maxObjectCount;
 
+    @XmlElement
+    private Long objectCount;
+
+    @XmlElement
+    private Long hitCount;
+
+    @XmlElement
+    private Long missCount;
+
     @XmlElement
     private Long currentHeapSizeInByte;
 
+    @XmlElement
+    private Boolean heapSizeEstimated;
+
     @XmlElement
     private Double effectivenessInPercent;
 
@@ -0,0 +1,41 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.exception.BadRequestException;
+
+import java.util.Arrays;
+
+/**
+ * Determines how the heap size of caches is reported.
+ */
+public enum CacheHeapSizeMode {
+
+    /**
+     * Always measure the heap size, which may be expensive for large caches.
+     */
+    EXACT,
+
+    /**
+     * Measure the heap size within a time budget and extrapolate from earlier measurements otherwise.
+     */
+    ESTIMATED,
+
+    /**
+     * Do not report the heap size at all.
+     */
+    NONE;
+
+    public static CacheHeapSizeMode fromString(
+            final String mode) {
+
+        if (mode == null) {
+            return EXACT;
+        }
+
+        return Arrays.stream(values())
+                .filter(value -> value.name().equalsIgnoreCase(mode))
+                .findAny()
+                .orElseThrow(() -> new BadRequestException(String.format(
+                        "Given heap size mode '%s' is not supported, use one of %s", mode, Arrays.toString(values()))));
+    }
+
+}
@@ -0,0 +1,31 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Map;
+
+/**
+ * Bean for a named set of cache sizes.
+ *
+ * The keys of the cache sizes are cache names, a key ending with '*' matches all caches starting with the given prefix.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.CACHE + "-profile")
+public class CacheProfileBean {
+
+    @NotNull
+    @XmlElement
+    private String name;
+
+    @XmlElement
+    private Map<String, Integer> maxObjectCounts;
+
+}
@@ -0,0 +1,24 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Collection;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.CACHES + "-cluster")
+public class CachesClusterBean {
+
+    @XmlElement
+    private Collection<CacheNodeBean> nodes;
+
+    @XmlElement
+    private Collection<CacheBean> caches;
+
+}
@@ -0,0 +1,22 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-apply")
+public class DirectoriesApplyBean {
+
+    @XmlElement
+    private List<DirectoryApplyResultBean> results;
+
+    @XmlElement
+    private long elapsedTimeInMillis;
+
+}
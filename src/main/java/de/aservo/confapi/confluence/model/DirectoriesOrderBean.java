@@ -0,0 +1,29 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The directories in the order in which users are looked up, only the ids are needed to set the order.
+ */
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-order")
+public class DirectoriesOrderBean {
+
+    @XmlElement
+    private List<DirectoryOrderEntryBean> directories;
+
+    /**
+     * The start of the login statistics of this node.
+     */
+    @XmlElement
+    private Date statisticsSince;
+
+}
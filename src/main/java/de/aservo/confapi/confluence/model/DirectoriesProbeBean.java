@@ -0,0 +1,34 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-probe")
+public class DirectoriesProbeBean {
+
+    /**
+     * The connection probes per active directory.
+     */
+    @XmlElement
+    private List<DirectoryProbeResultBean> directories;
+
+    /**
+     * The authentication probe of the test account, null if no test account was given.
+     */
+    @XmlElement
+    private DirectoryProbeResultBean authentication;
+
+    @XmlElement
+    private boolean timedOut;
+
+    @XmlElement
+    private long elapsedTimeInMillis;
+
+}
@@ -0,0 +1,36 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-probe-request")
+public class DirectoriesProbeRequestBean {
+
+    /**
+     * The test account used for the authentication probe, if null only the directory connections are probed.
+     */
+    @XmlElement
+    private String username;
+
+    @XmlElement
+    private String password;
+
+    /**
+     * The number of probes per directory, defaults to 5.
+     */
+    @XmlElement
+    private Integer probes;
+
+    /**
+     * The timeout for all probes together, defaults to 60 seconds.
+     */
+    @XmlElement
+    private Integer timeoutInSeconds;
+
+}
@@ -0,0 +1,46 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-apply-result")
+public class DirectoryApplyResultBean {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        UNCHANGED,
+    }
+
+    @XmlElement
+    private Long id;
+
+    @XmlElement
+    private String name;
+
+    @XmlElement
+    private Status status;
+
+    /**
+     * The changed fields and the added, changed and removed attribute keys of an updated directory.
+     */
+    @XmlElement
+    private List<String> changedFields;
+
+    /**
+     * The duration of the connection test, null if the connection has not been tested.
+     */
+    @XmlElement
+    private Long connectionTestTimeInMillis;
+
+    @XmlElement
+    private long applyTimeInMillis;
+
+}
@@ -0,0 +1,101 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * An LDAP connector directory with its connection, paging, pooling and synchronisation settings.
+ *
+ * Settings that are null are not changed on update and fall back to the Crowd defaults on creation. On creation,
+ * schema attributes that are not given fall back to the default schema of the LDAP type.
+ */
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-ldap")
+public class DirectoryLdapConnectorBean {
+
+    public enum LdapType {
+        ACTIVE_DIRECTORY,
+        OPEN_LDAP,
+        GENERIC,
+    }
+
+    @XmlElement
+    private Long id;
+
+    @XmlElement
+    private String name;
+
+    @XmlElement
+    private String description;
+
+    @XmlElement
+    private Boolean active;
+
+    @XmlElement
+    private LdapType type;
+
+    @XmlElement
+    private URI url;
+
+    @XmlElement
+    private Boolean secure;
+
+    @XmlElement
+    private String baseDn;
+
+    @XmlElement
+    private String userDn;
+
+    /**
+     * The password of the user DN, never returned.
+     */
+    @XmlElement
+    private String password;
+
+    @XmlElement
+    private Boolean pagedResults;
+
+    @XmlElement
+    private Integer pageSize;
+
+    @XmlElement
+    private Boolean pooling;
+
+    @XmlElement
+    private Integer poolInitialSize;
+
+    @XmlElement
+    private Integer poolMaxSize;
+
+    @XmlElement
+    private Integer poolTimeoutInSeconds;
+
+    @XmlElement
+    private Long connectionTimeoutInMillis;
+
+    @XmlElement
+    private Long readTimeoutInMillis;
+
+    @XmlElement
+    private Long searchTimeoutInMillis;
+
+    @XmlElement
+    private Boolean incrementalSync;
+
+    @XmlElement
+    private Long syncIntervalInSeconds;
+
+    /**
+     * Further directory attributes, e.g. the user and group schema, which are passed to Crowd as they are.
+     */
+    @XmlElement
+    private Map<String, String> attributes;
+
+}
@@ -0,0 +1,35 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-order-entry")
+public class DirectoryOrderEntryBean {
+
+    @XmlElement
+    private Long id;
+
+    @XmlElement
+    private String name;
+
+    @XmlElement
+    private Boolean active;
+
+    /**
+     * The number of logins of users found in this directory since the statistics were started.
+     */
+    @XmlElement
+    private Long logins;
+
+    @XmlElement
+    private Double loginsInPercent;
+
+}
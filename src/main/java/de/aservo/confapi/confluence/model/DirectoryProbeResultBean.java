@@ -0,0 +1,48 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-probe-result")
+public class DirectoryProbeResultBean {
+
+    /**
+     * The probed directory or, for the authentication probe, the directory the test account was found in.
+     */
+    @XmlElement
+    private Long directoryId;
+
+    @XmlElement
+    private String name;
+
+    /**
+     * The number of completed probes, lower than requested if the timeout has been reached.
+     */
+    @XmlElement
+    private int probes;
+
+    @XmlElement
+    private int errors;
+
+    @XmlElement
+    private double errorRate;
+
+    @XmlElement
+    private Long minLatencyInMillis;
+
+    @XmlElement
+    private Long avgLatencyInMillis;
+
+    @XmlElement
+    private Long p95LatencyInMillis;
+
+    @XmlElement
+    private String lastError;
+
+}
@@ -0,0 +1,40 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-sync")
+public class DirectorySyncBean {
+
+    @XmlElement
+    private long directoryId;
+
+    @XmlElement
+    private DirectorySyncMode mode;
+
+    @XmlElement
+    private boolean synchronising;
+
+    @XmlElement
+    private Date lastStartTime;
+
+    @XmlElement
+    private Long lastDurationInMillis;
+
+    @XmlElement
+    private String lastStatus;
+
+    /**
+     * Whether the last sync took considerably longer than the usual syncs of this directory.
+     */
+    @XmlElement
+    private boolean degraded;
+
+}
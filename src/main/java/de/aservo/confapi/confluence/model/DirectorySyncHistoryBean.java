@@ -0,0 +1,43 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-sync-history")
+public class DirectorySyncHistoryBean {
+
+    @XmlElement
+    private long directoryId;
+
+    @XmlElement
+    private List<DirectorySyncHistoryEntryBean> entries;
+
+    @XmlElement
+    private Long p50DurationInMillis;
+
+    @XmlElement
+    private Long p95DurationInMillis;
+
+    /**
+     * The change of the mean duration of the newer half of the entries compared to the older half.
+     */
+    @XmlElement
+    private Double trendInPercent;
+
+    @XmlElement
+    private Long thresholdInMillis;
+
+    /**
+     * Whether the last sync took longer than the threshold.
+     */
+    @XmlElement
+    private boolean degraded;
+
+}
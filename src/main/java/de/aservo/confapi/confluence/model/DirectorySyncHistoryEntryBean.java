@@ -0,0 +1,32 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-sync-history-entry")
+public class DirectorySyncHistoryEntryBean {
+
+    @XmlElement
+    private long startTimeInMillis;
+
+    @XmlElement
+    private long durationInMillis;
+
+    /**
+     * The number of users after the sync, only known for syncs started through the API.
+     */
+    @XmlElement
+    private Long users;
+
+    @XmlElement
+    private String status;
+
+}
@@ -0,0 +1,36 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.exception.BadRequestException;
+
+import java.util.Arrays;
+
+/**
+ * The synchronisation mode of a remote directory.
+ */
+public enum DirectorySyncMode {
+
+    /**
+     * Read all users, groups and memberships from the remote directory.
+     */
+    FULL,
+
+    /**
+     * Only read the changes since the last synchronisation, requires incremental sync to be enabled.
+     */
+    INCREMENTAL;
+
+    public static DirectorySyncMode fromString(
+            final String mode) {
+
+        if (mode == null) {
+            return null;
+        }
+
+        return Arrays.stream(values())
+                .filter(value -> value.name().equalsIgnoreCase(mode))
+                .findAny()
+                .orElseThrow(() -> new BadRequestException(String.format(
+                        "Given sync mode '%s' is not supported, use one of %s", mode, Arrays.toString(values()))));
+    }
+
+}
@@ -0,0 +1,57 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-sync-queue")
+public class DirectorySyncQueueBean {
+
+    @XmlElement
+    private long directoryId;
+
+    @XmlElement
+    private DirectorySyncMode mode;
+
+    @XmlElement
+    private int percentageComplete;
+
+    @XmlElement
+    private long elapsedTimeInMillis;
+
+    /**
+     * The duration of the synchronisation itself, null while it is running.
+     */
+    @XmlElement
+    private Long durationInMillis;
+
+    /**
+     * The total number of users of the directory after the synchronisation, not the number of synchronised users.
+     */
+    @XmlElement
+    private Long users;
+
+    /**
+     * The total number of groups of the directory after the synchronisation.
+     */
+    @XmlElement
+    private Long groups;
+
+    /**
+     * The users and groups processed per second, only given for a full synchronisation, which processes all of them.
+     */
+    @XmlElement
+    private Double entitiesPerSecond;
+
+    @XmlElement
+    private String status;
+
+    @XmlElement
+    private String error;
+
+}
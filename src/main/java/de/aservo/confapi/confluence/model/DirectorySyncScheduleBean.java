@@ -0,0 +1,45 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-sync-schedule")
+public class DirectorySyncScheduleBean {
+
+    /**
+     * The directories whose automatic synchronisation is paused, they are synchronised inside the windows instead.
+     */
+    @XmlElement
+    private List<Long> pausedDirectoryIds;
+
+    @XmlElement
+    private List<DirectorySyncWindowBean> windows;
+
+    /**
+     * The delay between the syncs of the paused directories inside a window, defaults to 5 minutes.
+     */
+    @XmlElement
+    private Integer staggerInMinutes;
+
+    /**
+     * The zone the windows are interpreted in, e.g. Europe/Berlin, defaults to the zone of the server.
+     */
+    @XmlElement
+    private String zone;
+
+    /**
+     * The last sync triggered by the schedule per directory id, only returned.
+     */
+    @XmlElement
+    private Map<Long, Date> lastTriggered;
+
+}
@@ -0,0 +1,39 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+/**
+ * A recurring time window in the server time zone, the end may be on the next day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.DIRECTORIES + "-sync-window")
+public class DirectorySyncWindowBean {
+
+    /**
+     * The days of the week the window starts on, e.g. SATURDAY, every day if empty.
+     */
+    @XmlElement
+    private List<String> days;
+
+    /**
+     * The start time, formatted as HH:mm.
+     */
+    @XmlElement
+    private String startTime;
+
+    /**
+     * The end time, formatted as HH:mm.
+     */
+    @XmlElement
+    private String endTime;
+
+}
@@ -0,0 +1,22 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfluenceConfAPI.GROUP)
+public class GroupBean {
+
+    @XmlElement
+    @NotNull
+    private String name;
+
+}
@@ -0,0 +1,28 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfluenceConfAPI.GROUP + "-" + ConfluenceConfAPI.GROUP_MEMBERS + "-result")
+public class GroupMembersResultBean {
+
+    @XmlElement
+    private List<String> added;
+
+    @XmlElement
+    private List<String> removed;
+
+    @XmlElement
+    private int unchanged;
+
+    @XmlElement
+    private List<UserBulkItemBean> failed;
+
+}
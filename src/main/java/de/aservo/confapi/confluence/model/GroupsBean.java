@@ -0,0 +1,21 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Collection;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfluenceConfAPI.GROUPS)
+public class GroupsBean {
+
+    @XmlElement
+    private Collection<GroupBean> groups;
+
+}
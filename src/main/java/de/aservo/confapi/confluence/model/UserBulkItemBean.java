@@ -0,0 +1,35 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.USERS + "-bulk-item")
+public class UserBulkItemBean {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        RENAMED,
+        DEACTIVATED,
+        INACTIVE,
+        FAILED,
+    }
+
+    @XmlElement
+    private String username;
+
+    @XmlElement
+    private Status status;
+
+    @XmlElement
+    private String error;
+
+}
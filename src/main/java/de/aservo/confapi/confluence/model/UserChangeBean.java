@@ -0,0 +1,41 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.USERS + "-change")
+public class UserChangeBean {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        RENAMED,
+        DEACTIVATED,
+        REACTIVATED,
+        DELETED,
+    }
+
+    @XmlElement
+    private long sequence;
+
+    @XmlElement
+    private long timestamp;
+
+    @XmlElement
+    private Type type;
+
+    @XmlElement
+    private String username;
+
+    @XmlElement
+    private String oldUsername;
+
+}
@@ -0,0 +1,26 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.USERS + "-rename")
+public class UserRenameBean {
+
+    @XmlElement
+    @NotNull
+    private String username;
+
+    @XmlElement
+    @NotNull
+    private String newUsername;
+
+}
@@ -0,0 +1,34 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.USERS + "-bulk")
+public class UsersBulkBean {
+
+    @XmlElement
+    private List<UserBulkItemBean> results;
+
+    @XmlElement
+    private int created;
+
+    @XmlElement
+    private int updated;
+
+    @XmlElement
+    private int failed;
+
+    @XmlElement
+    private long elapsedTimeInMillis;
+
+    @XmlElement
+    private double usersPerSecond;
+
+}
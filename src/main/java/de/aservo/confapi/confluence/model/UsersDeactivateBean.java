@@ -0,0 +1,44 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Collection;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlRootElement(name = ConfAPI.USERS + "-deactivate")
+public class UsersDeactivateBean {
+
+    /**
+     * Users whose last successful login is at least this number of days ago are deactivated.
+     */
+    @XmlElement
+    @NotNull
+    private Integer inactiveDays;
+
+    /**
+     * Whether users that have never logged in are deactivated as well.
+     */
+    @XmlElement
+    private boolean includeNeverLoggedIn;
+
+    /**
+     * Members of these groups are never deactivated, e.g. administrators and technical users.
+     */
+    @XmlElement
+    private Collection<String> excludedGroups;
+
+    /**
+     * Only report the inactive users without deactivating them.
+     */
+    @XmlElement
+    private boolean dryRun;
+
+}
@@ -0,0 +1,37 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.USERS + "-deactivate-queue")
+public class UsersDeactivateQueueBean {
+
+    @XmlElement
+    private int percentageComplete;
+
+    @XmlElement
+    private long elapsedTimeInMillis;
+
+    @XmlElement
+    private long estimatedTimeRemainingInMillis;
+
+    @XmlElement
+    private long scanned;
+
+    @XmlElement
+    private int deactivated;
+
+    @XmlElement
+    private int failed;
+
+    @XmlElement
+    private List<UserBulkItemBean> results;
+
+}
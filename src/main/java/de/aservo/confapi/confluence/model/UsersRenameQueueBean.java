@@ -0,0 +1,28 @@
+package de.aservo.confapi.confluence.model;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@XmlRootElement(name = ConfAPI.USERS + "-rename-queue")
+public class UsersRenameQueueBean {
+
+    @XmlElement
+    private int percentageComplete;
+
+    @XmlElement
+    private long elapsedTimeInMillis;
+
+    @XmlElement
+    private long estimatedTimeRemainingInMillis;
+
+    @XmlElement
+    private List<UserBulkItemBean> results;
+
+}
@@ -5,6 +5,9 @@ import com.atlassian.cache.ManagedCache;
 import de.aservo.confapi.confluence.model.CacheBean;
 
 import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 public class CacheBeanUtil {
 
@@ -17,9 +20,30 @@ public class CacheBeanUtil {
     public static CacheBean toCacheBean(
             @NotNull final ManagedCache managedCache) {
 
+        return toCacheBean(managedCache, getStatistic(managedCache, CacheStatisticsKey.HEAP_SIZE), false);
+    }
+
+    /**
+     * Build CacheBean cache with a heap size that has been determined separately.
+     *
+     * @param managedCache      the cache
+     * @param heapSize          the heap size in byte or null if unknown
+     * @param heapSizeEstimated whether the heap size is an estimate
+     * @return the cache
+     */
+    @NotNull
+    public static CacheBean toCacheBean(
+            @NotNull final ManagedCache managedCache,
+            final Long heapSize,
+            final boolean heapSizeEstimated) {
+
         CacheBean cacheBean = new CacheBean();
         cacheBean.setName(managedCache.getName());
-        cacheBean.setCurrentHeapSizeInByte(managedCache.getStatistics().get(CacheStatisticsKey.HEAP_SIZE).get());
+        cacheBean.setObjectCount(getStatistic(managedCache, CacheStatisticsKey.SIZE));
+        cacheBean.setHitCount(getStatistic(managedCache, CacheStatisticsKey.HIT_COUNT));
+        cacheBean.setMissCount(getStatistic(managedCache, CacheStatisticsKey.MISS_COUNT));
+        cacheBean.setCurrentHeapSizeInByte(heapSize);
+        cacheBean.setHeapSizeEstimated(heapSize != null ? heapSizeEstimated : null);
         cacheBean.setEffectivenessInPercent(getEffectiveness(managedCache));
         cacheBean.setMaxObjectCount(managedCache.currentMaxEntries());
         cacheBean.setUtilisationInPercent(getUtilization(managedCache));
@@ -28,25 +52,90 @@ public class CacheBeanUtil {
         return cacheBean;
     }
 
-    private static double getEffectiveness(ManagedCache cache) {
-        long hit = cache.getStatistics().get(CacheStatisticsKey.HIT_COUNT).get();
-        long miss = cache.getStatistics().get(CacheStatisticsKey.MISS_COUNT).get();
-        return (double) hit * 100 / (hit + miss);
+    /**
+     * Sum up the cache beans of the same cache collected from different cluster nodes.
+     *
+     * Counts and sizes are summed up, the percentages are recalculated from the summed values.
+     *
+     * @param name       the cache name
+     * @param cacheBeans the cache beans of all nodes
+     * @return the summed cache bean
+     */
+    @NotNull
+    public static CacheBean toCacheBean(
+            @NotNull final String name,
+            @NotNull final Collection<CacheBean> cacheBeans) {
+
+        long objectCount = 0;
+        long hitCount = 0;
+        long missCount = 0;
+        Long heapSize = 0L;
+        Integer maxObjectCount = 0;
+        boolean heapSizeEstimated = false;
+        boolean flushable = true;
+
+        for (CacheBean cacheBean : cacheBeans) {
+            objectCount += toLong(cacheBean.getObjectCount());
+            hitCount += toLong(cacheBean.getHitCount());
+            missCount += toLong(cacheBean.getMissCount());
+            heapSize = heapSize != null && cacheBean.getCurrentHeapSizeInByte() != null
+                    ? heapSize + cacheBean.getCurrentHeapSizeInByte() : null;
+            maxObjectCount = maxObjectCount != null && cacheBean.getMaxObjectCount() != null
+                    ? maxObjectCount + cacheBean.getMaxObjectCount() : null;
+            heapSizeEstimated |= Boolean.TRUE.equals(cacheBean.getHeapSizeEstimated());
+            flushable &= Boolean.TRUE.equals(cacheBean.getFlushable());
+        }
+
+        CacheBean cacheBean = new CacheBean();
+        cacheBean.setName(name);
+        cacheBean.setObjectCount(objectCount);
+        cacheBean.setHitCount(hitCount);
+        cacheBean.setMissCount(missCount);
+        cacheBean.setCurrentHeapSizeInByte(heapSize);
+        cacheBean.setHeapSizeEstimated(heapSize != null ? heapSizeEstimated : null);
+        cacheBean.setMaxObjectCount(maxObjectCount);
+        cacheBean.setEffectivenessInPercent(hitCount + missCount > 0 ? (double) hitCount * 100 / (hitCount + missCount) : null);
+        cacheBean.setUtilisationInPercent(maxObjectCount != null && maxObjectCount > 0 ? (double) objectCount * 100 / maxObjectCount : null);
+        cacheBean.setFlushable(flushable);
+
+        return cacheBean;
     }
 
+    private static Double getEffectiveness(ManagedCache cache) {
+        Long hit = getStatistic(cache, CacheStatisticsKey.HIT_COUNT);
+        Long miss = getStatistic(cache, CacheStatisticsKey.MISS_COUNT);
+
+        if (hit != null && miss != null && hit + miss > 0) {
+            return (double) hit * 100 / (hit + miss);
+        }
+        return null;
+    }
 
     private static Double getUtilization(ManagedCache cache) {
-        // currentMaxEntries can be null so check this first
+        // neither the object count nor currentMaxEntries are guaranteed to be available
 
-        long objects = cache.getStatistics().get(CacheStatisticsKey.SIZE).get();
+        Long objects = getStatistic(cache, CacheStatisticsKey.SIZE);
         Integer size = cache.currentMaxEntries();
 
-        if (size != null) {
+        if (objects != null && size != null && size > 0) {
             return (double) objects * 100 / size;
         }
         return null;
     }
 
+    /**
+     * Not every cache implementation provides every statistic, so a missing one is reported as null.
+     */
+    private static Long getStatistic(ManagedCache cache, CacheStatisticsKey key) {
+        return Optional.ofNullable(cache.getStatistics().get(key))
+                .map(Supplier::get)
+                .orElse(null);
+    }
+
+    private static long toLong(Long value) {
+        return value != null ? value : 0L;
+    }
+
     private CacheBeanUtil() {
     }
 }
@@ -1,5 +1,8 @@
 package de.aservo.confapi.confluence.model.util;
 
+import com.atlassian.crowd.directory.GenericLDAP;
+import com.atlassian.crowd.directory.MicrosoftActiveDirectory;
+import com.atlassian.crowd.directory.OpenLDAP;
 import com.atlassian.crowd.directory.RemoteCrowdDirectory;
 import com.atlassian.crowd.embedded.api.Directory;
 import com.atlassian.crowd.embedded.api.DirectoryType;
@@ -12,22 +15,44 @@ import de.aservo.confapi.commons.model.DirectoryCrowdBean.DirectoryCrowdServer.D
 import de.aservo.confapi.commons.model.DirectoryGenericBean;
 import de.aservo.confapi.commons.model.DirectoryInternalBean;
 import de.aservo.confapi.commons.model.DirectoryLdapBean;
+import de.aservo.confapi.confluence.model.DirectoryLdapConnectorBean;
+import de.aservo.confapi.confluence.model.DirectoryLdapConnectorBean.LdapType;
 
 import javax.validation.constraints.NotNull;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static com.atlassian.crowd.directory.RemoteCrowdDirectory.*;
+import static com.atlassian.crowd.directory.ldap.LDAPPropertiesMapper.*;
 import static com.atlassian.crowd.directory.SynchronisableDirectoryProperties.*;
 import static com.atlassian.crowd.model.directory.DirectoryImpl.ATTRIBUTE_KEY_USE_NESTED_GROUPS;
 import static de.aservo.confapi.commons.util.ConversionUtil.*;
 
 public class DirectoryBeanUtil {
 
+    /**
+     * The attributes of a Crowd directory that are mapped by {@link #toDirectory(DirectoryCrowdBean)}. Other
+     * attributes, e.g. the ones set in the UI or by Crowd itself, cannot be given in a request.
+     */
+    public static final Set<String> CROWD_DIRECTORY_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            CROWD_SERVER_URL, APPLICATION_NAME, APPLICATION_PASSWORD, CROWD_HTTP_TIMEOUT, CROWD_HTTP_MAX_CONNECTIONS,
+            CROWD_HTTP_PROXY_HOST, CROWD_HTTP_PROXY_PORT, CROWD_HTTP_PROXY_USERNAME, CROWD_HTTP_PROXY_PASSWORD,
+            CACHE_SYNCHRONISE_INTERVAL, ATTRIBUTE_KEY_USE_NESTED_GROUPS, INCREMENTAL_SYNC_ENABLED,
+            SYNC_GROUP_MEMBERSHIP_AFTER_SUCCESSFUL_USER_AUTH_ENABLED)));
+
     /**
      * Build directory directory.
      *
+     * Of the HTTP connection settings, the connection timeout, the maximum number of connections and the proxy
+     * are written. These are the settings that are modelled by the common server bean and read back by
+     * {@link #toDirectoryBean(Directory)}, so that they can be round-tripped. A setting that is not given is not
+     * written, so an update removes it from the directory and Crowd falls back to its default.
+     *
      * @return the directory
      */
     @NotNull
@@ -39,6 +64,12 @@ public class DirectoryBeanUtil {
             attributes.put(CROWD_SERVER_URL, directoryBean.getServer().getUrl().toString());
             attributes.put(APPLICATION_NAME, directoryBean.getServer().getAppUsername());
             attributes.put(APPLICATION_PASSWORD, directoryBean.getServer().getAppPassword());
+            if (directoryBean.getServer().getConnectionTimeoutInMillis() != null) {
+                attributes.put(CROWD_HTTP_TIMEOUT, directoryBean.getServer().getConnectionTimeoutInMillis().toString());
+            }
+            if (directoryBean.getServer().getMaxConnections() != null) {
+                attributes.put(CROWD_HTTP_MAX_CONNECTIONS, directoryBean.getServer().getMaxConnections().toString());
+            }
             if (directoryBean.getServer().getProxy() != null) {
                 attributes.put(CROWD_HTTP_PROXY_HOST, directoryBean.getServer().getProxy().getHost());
                 if (directoryBean.getServer().getProxy().getPort() != null) {
@@ -114,6 +145,127 @@ public class DirectoryBeanUtil {
         return directoryBean;
     }
 
+    /**
+     * Build LDAP connector directory.
+     *
+     * @param directoryBean the LDAP connector bean
+     * @return the directory
+     */
+    @NotNull
+    public static Directory toDirectory(
+            @NotNull final DirectoryLdapConnectorBean directoryBean) {
+
+        final Map<String, String> attributes = new HashMap<>();
+        if (directoryBean.getAttributes() != null) {
+            attributes.putAll(directoryBean.getAttributes());
+        }
+        putIfNotNull(attributes, LDAP_URL_KEY, directoryBean.getUrl());
+        putIfNotNull(attributes, LDAP_SECURE_KEY, directoryBean.getSecure());
+        putIfNotNull(attributes, LDAP_BASEDN_KEY, directoryBean.getBaseDn());
+        putIfNotNull(attributes, LDAP_USERDN_KEY, directoryBean.getUserDn());
+        putIfNotNull(attributes, LDAP_PASSWORD_KEY, directoryBean.getPassword());
+        putIfNotNull(attributes, LDAP_PAGEDRESULTS_KEY, directoryBean.getPagedResults());
+        putIfNotNull(attributes, LDAP_PAGEDRESULTS_SIZE, directoryBean.getPageSize());
+        putIfNotNull(attributes, LDAP_POOLING_KEY, directoryBean.getPooling());
+        putIfNotNull(attributes, LDAP_POOL_INITSIZE, directoryBean.getPoolInitialSize());
+        putIfNotNull(attributes, LDAP_POOL_MAXSIZE, directoryBean.getPoolMaxSize());
+        putIfNotNull(attributes, LDAP_POOL_TIMEOUT, directoryBean.getPoolTimeoutInSeconds());
+        putIfNotNull(attributes, LDAP_CONNECTION_TIMEOUT, directoryBean.getConnectionTimeoutInMillis());
+        putIfNotNull(attributes, LDAP_READ_TIMEOUT, directoryBean.getReadTimeoutInMillis());
+        putIfNotNull(attributes, LDAP_SEARCH_TIMELIMIT, directoryBean.getSearchTimeoutInMillis());
+        putIfNotNull(attributes, INCREMENTAL_SYNC_ENABLED, directoryBean.getIncrementalSync());
+        putIfNotNull(attributes, CACHE_SYNCHRONISE_INTERVAL, directoryBean.getSyncIntervalInSeconds());
+
+        final LdapType type = directoryBean.getType() != null ? directoryBean.getType() : LdapType.GENERIC;
+
+        return ImmutableDirectory.builder(directoryBean.getName(), DirectoryType.CONNECTOR, getImplementationClass(type))
+                .setActive(directoryBean.getActive() == null || directoryBean.getActive())
+                .setDescription(directoryBean.getDescription())
+                .setAttributes(attributes)
+                .build();
+    }
+
+    /**
+     * Build LDAP connector bean, without the password.
+     *
+     * @param directory the LDAP connector directory
+     * @return the LDAP connector bean
+     */
+    @NotNull
+    public static DirectoryLdapConnectorBean toDirectoryLdapConnectorBean(
+            @NotNull final Directory directory) {
+
+        final Map<String, String> attributes = directory.getAttributes();
+
+        final DirectoryLdapConnectorBean directoryBean = new DirectoryLdapConnectorBean();
+        directoryBean.setId(directory.getId());
+        directoryBean.setName(directory.getName());
+        directoryBean.setDescription(directory.getDescription());
+        directoryBean.setActive(directory.isActive());
+        directoryBean.setType(getLdapType(directory.getImplementationClass()));
+        directoryBean.setUrl(attributes.get(LDAP_URL_KEY) != null ? URI.create(attributes.get(LDAP_URL_KEY)) : null);
+        directoryBean.setSecure(toBoolean(attributes.get(LDAP_SECURE_KEY)));
+        directoryBean.setBaseDn(attributes.get(LDAP_BASEDN_KEY));
+        directoryBean.setUserDn(attributes.get(LDAP_USERDN_KEY));
+        directoryBean.setPagedResults(toBoolean(attributes.get(LDAP_PAGEDRESULTS_KEY)));
+        directoryBean.setPageSize(toInt(attributes.get(LDAP_PAGEDRESULTS_SIZE)));
+        directoryBean.setPooling(toBoolean(attributes.get(LDAP_POOLING_KEY)));
+        directoryBean.setPoolInitialSize(toInt(attributes.get(LDAP_POOL_INITSIZE)));
+        directoryBean.setPoolMaxSize(toInt(attributes.get(LDAP_POOL_MAXSIZE)));
+        directoryBean.setPoolTimeoutInSeconds(toInt(attributes.get(LDAP_POOL_TIMEOUT)));
+        directoryBean.setConnectionTimeoutInMillis(toLong(attributes.get(LDAP_CONNECTION_TIMEOUT)));
+        directoryBean.setReadTimeoutInMillis(toLong(attributes.get(LDAP_READ_TIMEOUT)));
+        directoryBean.setSearchTimeoutInMillis(toLong(attributes.get(LDAP_SEARCH_TIMELIMIT)));
+        directoryBean.setIncrementalSync(toBoolean(attributes.get(INCREMENTAL_SYNC_ENABLED)));
+        directoryBean.setSyncIntervalInSeconds(toLong(attributes.get(CACHE_SYNCHRONISE_INTERVAL)));
+        return directoryBean;
+    }
+
+    /**
+     * Get the default user and group schema of the given LDAP type.
+     *
+     * Crowd does not fall back to a schema for missing attributes, so a new directory must be created with a
+     * complete schema. The defaults are the ones Crowd suggests when creating a directory of that type.
+     *
+     * @param type the LDAP type, the generic type if null
+     * @return the schema attributes, which can be modified by the caller
+     */
+    @NotNull
+    public static Map<String, String> getDefaultLdapSchema(
+            final LdapType type) {
+
+        final Map<String, String> schema = new HashMap<>();
+
+        if (type == LdapType.ACTIVE_DIRECTORY) {
+            schema.put(USER_OBJECTCLASS_KEY, "user");
+            schema.put(USER_OBJECTFILTER_KEY, "(&(objectCategory=Person)(sAMAccountName=*))");
+            schema.put(USER_USERNAME_KEY, "sAMAccountName");
+            schema.put(USER_PASSWORD_KEY, "unicodePwd");
+            schema.put(GROUP_OBJECTCLASS_KEY, "group");
+            schema.put(GROUP_OBJECTFILTER_KEY, "(objectCategory=Group)");
+            schema.put(GROUP_USERNAMES_KEY, "member");
+        } else {
+            schema.put(USER_OBJECTCLASS_KEY, "inetorgperson");
+            schema.put(USER_OBJECTFILTER_KEY, "(objectclass=inetorgperson)");
+            schema.put(USER_USERNAME_KEY, "cn");
+            schema.put(USER_PASSWORD_KEY, "userPassword");
+            schema.put(GROUP_OBJECTCLASS_KEY, "groupOfUniqueNames");
+            schema.put(GROUP_OBJECTFILTER_KEY, "(objectclass=groupOfUniqueNames)");
+            schema.put(GROUP_USERNAMES_KEY, "uniqueMember");
+        }
+
+        schema.put(USER_USERNAME_RDN_KEY, "cn");
+        schema.put(USER_FIRSTNAME_KEY, "givenName");
+        schema.put(USER_LASTNAME_KEY, "sn");
+        schema.put(USER_DISPLAYNAME_KEY, "displayName");
+        schema.put(USER_EMAIL_KEY, "mail");
+        schema.put(USER_GROUP_KEY, "memberOf");
+        schema.put(GROUP_NAME_KEY, "cn");
+        schema.put(GROUP_DESCRIPTION_KEY, "description");
+
+        return schema;
+    }
+
     public static DirectoryType getDirectoryType(
             @NotNull final AbstractDirectoryBean directoryBean) {
         if (directoryBean instanceof DirectoryInternalBean) {
@@ -127,6 +279,41 @@ public class DirectoryBeanUtil {
         }
     }
 
+    private static String getImplementationClass(
+            @NotNull final LdapType type) {
+
+        switch (type) {
+            case ACTIVE_DIRECTORY:
+                return MicrosoftActiveDirectory.class.getName();
+            case OPEN_LDAP:
+                return OpenLDAP.class.getName();
+            default:
+                return GenericLDAP.class.getName();
+        }
+    }
+
+    private static LdapType getLdapType(
+            final String implementationClass) {
+
+        if (MicrosoftActiveDirectory.class.getName().equals(implementationClass)) {
+            return LdapType.ACTIVE_DIRECTORY;
+        } else if (OpenLDAP.class.getName().equals(implementationClass)) {
+            return LdapType.OPEN_LDAP;
+        } else {
+            return LdapType.GENERIC;
+        }
+    }
+
+    private static void putIfNotNull(
+            final Map<String, String> attributes,
+            final String key,
+            final Object value) {
+
+        if (value != null) {
+            attributes.put(key, value.toString());
+        }
+    }
+
     private DirectoryBeanUtil() {
     }
 
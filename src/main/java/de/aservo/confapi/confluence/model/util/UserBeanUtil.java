@@ -4,6 +4,10 @@ import com.atlassian.confluence.user.ConfluenceUserImpl;
 import com.atlassian.user.User;
 import de.aservo.confapi.commons.model.UserBean;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 public class UserBeanUtil {
 
     public static UserBean toUserBean(
@@ -28,6 +32,43 @@ public class UserBeanUtil {
         );
     }
 
+    /**
+     * Compute the entity tag of a user bean from the fields returned to clients (the password is never returned).
+     *
+     * @param userBean the user bean
+     * @return the entity tag value (unquoted)
+     */
+    public static String toEntityTag(
+            final UserBean userBean) {
+
+        final StringBuilder fields = new StringBuilder();
+        appendField(fields, userBean.getUsername());
+        appendField(fields, userBean.getFullName());
+        appendField(fields, userBean.getEmail());
+
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(fields.toString().getBytes(StandardCharsets.UTF_8));
+            final StringBuilder entityTag = new StringBuilder();
+
+            for (byte b : hash) {
+                entityTag.append(String.format("%02x", b));
+            }
+
+            return entityTag.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // separate the fields and distinguish null from empty values, so that different users never share a hash input
+    private static void appendField(
+            final StringBuilder fields,
+            final String value) {
+
+        fields.append(value == null ? "\u0001" : value).append('\u0000');
+    }
+
     private UserBeanUtil() {
     }
 
@@ -4,6 +4,8 @@ import com.sun.jersey.spi.container.ResourceFilters;
 import de.aservo.confapi.commons.constants.ConfAPI;
 import de.aservo.confapi.confluence.filter.SysAdminOnlyResourceFilter;
 import de.aservo.confapi.confluence.model.CacheBean;
+import de.aservo.confapi.confluence.model.CacheHeapSizeMode;
+import de.aservo.confapi.confluence.model.CacheProfileBean;
 import de.aservo.confapi.confluence.rest.api.CachesResource;
 import de.aservo.confapi.confluence.service.api.CachesService;
 import org.springframework.stereotype.Component;
@@ -11,6 +13,11 @@ import org.springframework.stereotype.Component;
 import javax.inject.Inject;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 @Path(ConfAPI.CACHES)
 @ResourceFilters(SysAdminOnlyResourceFilter.class)
@@ -26,18 +33,49 @@ public class CachesResourceImpl implements CachesResource {
     }
 
     @Override
-    public Response getCaches() {
-        return Response.ok(cachesService.getAllCaches()).build();
+    public Response getCaches(String heapSize) {
+        return Response.ok(cachesService.getAllCaches(CacheHeapSizeMode.fromString(heapSize))).build();
     }
 
     @Override
-    public Response getCache(String name) {
-        return Response.ok(cachesService.getCache(name)).build();
+    public Response getCachesCluster(String heapSize) {
+        return Response.ok(cachesService.getAllCachesCluster(CacheHeapSizeMode.fromString(heapSize))).build();
+    }
+
+    @Override
+    public Response getCacheMetrics(String heapSize) {
+        final CacheHeapSizeMode heapSizeMode = CacheHeapSizeMode.fromString(heapSize);
+        final StreamingOutput metrics = outputStream -> {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            cachesService.writeCacheMetrics(writer, heapSizeMode);
+            writer.flush();
+        };
+        return Response.ok(metrics).build();
+    }
+
+    @Override
+    public Response getCacheProfile() {
+        return Response.ok(cachesService.getCacheProfile()).build();
+    }
+
+    @Override
+    public Response setCacheProfile(CacheProfileBean cacheProfile) {
+        return Response.ok(cachesService.setCacheProfile(cacheProfile)).build();
+    }
+
+    @Override
+    public Response applyCacheProfile() {
+        return Response.ok(cachesService.applyCacheProfile()).build();
+    }
+
+    @Override
+    public Response getCache(String name, String heapSize) {
+        return Response.ok(cachesService.getCache(name, CacheHeapSizeMode.fromString(heapSize))).build();
     }
 
     @Override
-    public Response flushCache(String name) {
-        cachesService.flushCache(name);
+    public Response flushCache(String name, boolean warmUp) {
+        cachesService.flushCache(name, warmUp);
         return Response.ok(cachesService.getCache(name)).build();
     }
 
@@ -2,24 +2,141 @@ package de.aservo.confapi.confluence.rest;
 
 import com.sun.jersey.spi.container.ResourceFilters;
 import de.aservo.confapi.commons.constants.ConfAPI;
+import de.aservo.confapi.commons.model.DirectoriesBean;
 import de.aservo.confapi.commons.rest.AbstractDirectoriesResourceImpl;
-import de.aservo.confapi.commons.service.api.DirectoriesService;
 import de.aservo.confapi.confluence.filter.SysAdminOnlyResourceFilter;
+import de.aservo.confapi.confluence.model.DirectoriesOrderBean;
+import de.aservo.confapi.confluence.model.DirectoriesProbeRequestBean;
+import de.aservo.confapi.confluence.model.DirectoryLdapConnectorBean;
+import de.aservo.confapi.confluence.model.DirectorySyncMode;
+import de.aservo.confapi.confluence.model.DirectorySyncQueueBean;
+import de.aservo.confapi.confluence.model.DirectorySyncScheduleBean;
+import de.aservo.confapi.confluence.rest.api.ConfluenceDirectoriesResource;
+import de.aservo.confapi.confluence.service.api.ConfluenceDirectoriesService;
+import de.aservo.confapi.confluence.service.api.DirectoryOrderService;
+import de.aservo.confapi.confluence.service.api.DirectoryProbeService;
+import de.aservo.confapi.confluence.service.api.DirectorySyncScheduleService;
+import de.aservo.confapi.confluence.service.api.DirectorySyncService;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+import java.util.UUID;
+
+import static javax.ws.rs.core.Response.Status.ACCEPTED;
+import static javax.ws.rs.core.Response.Status.CREATED;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 
 @Path(ConfAPI.DIRECTORIES)
 @ResourceFilters(SysAdminOnlyResourceFilter.class)
 @Component
-public class DirectoriesResourceImpl extends AbstractDirectoriesResourceImpl {
+public class DirectoriesResourceImpl extends AbstractDirectoriesResourceImpl implements ConfluenceDirectoriesResource {
+
+    private final ConfluenceDirectoriesService directoriesService;
+
+    private final DirectorySyncService directorySyncService;
+
+    private final DirectoryProbeService directoryProbeService;
+
+    private final DirectoryOrderService directoryOrderService;
+
+    private final DirectorySyncScheduleService directorySyncScheduleService;
 
     @Inject
-    public DirectoriesResourceImpl(DirectoriesService directoryService) {
+    public DirectoriesResourceImpl(
+            ConfluenceDirectoriesService directoryService,
+            DirectorySyncService directorySyncService,
+            DirectoryProbeService directoryProbeService,
+            DirectoryOrderService directoryOrderService,
+            DirectorySyncScheduleService directorySyncScheduleService) {
         super(directoryService);
+        this.directoriesService = directoryService;
+        this.directorySyncService = directorySyncService;
+        this.directoryProbeService = directoryProbeService;
+        this.directoryOrderService = directoryOrderService;
+        this.directorySyncScheduleService = directorySyncScheduleService;
+    }
+
+    // Inheriting the shared implementation of AbstractDirectoriesResourceImpl, only adding Confluence specific endpoints
+
+    @Override
+    public Response applyDirectories(boolean testConnection, DirectoriesBean directoriesBean) {
+        return Response.ok(directoriesService.applyDirectories(directoriesBean, testConnection)).build();
+    }
+
+    @Override
+    public Response getDirectoriesOrder() {
+        return Response.ok(directoryOrderService.getDirectoriesOrder()).build();
+    }
+
+    @Override
+    public Response setDirectoriesOrder(DirectoriesOrderBean directoriesOrderBean) {
+        return Response.ok(directoryOrderService.setDirectoriesOrder(directoriesOrderBean)).build();
+    }
+
+    @Override
+    public Response probeDirectories(DirectoriesProbeRequestBean probeRequestBean) {
+        return Response.ok(directoryProbeService.probeDirectories(probeRequestBean)).build();
+    }
+
+    @Override
+    public Response getLdapDirectory(long id) {
+        return Response.ok(directoriesService.getLdapDirectory(id)).build();
+    }
+
+    @Override
+    public Response setLdapDirectory(long id, boolean testConnection, DirectoryLdapConnectorBean ldapBean) {
+        return Response.ok(directoriesService.setLdapDirectory(id, ldapBean, testConnection)).build();
+    }
+
+    @Override
+    public Response addLdapDirectory(boolean testConnection, DirectoryLdapConnectorBean ldapBean) {
+        return Response.ok(directoriesService.addLdapDirectory(ldapBean, testConnection)).build();
+    }
+
+    @Override
+    public Response synchroniseDirectory(long id, String mode) {
+        return Response.status(ACCEPTED)
+                .location(directorySyncService.synchroniseDirectory(id, DirectorySyncMode.fromString(mode)))
+                .build();
+    }
+
+    @Override
+    public Response getDirectorySync(long id) {
+        return Response.ok(directorySyncService.getDirectorySync(id)).build();
+    }
+
+    @Override
+    public Response getDirectorySyncHistory(long id, Long thresholdInMillis) {
+        return Response.ok(directorySyncService.getDirectorySyncHistory(id, thresholdInMillis)).build();
     }
 
-    // Completely inhering the implementation of AbstractDirectoriesResourceImpl
+    @Override
+    public Response getSyncSchedule() {
+        return Response.ok(directorySyncScheduleService.getSyncSchedule()).build();
+    }
+
+    @Override
+    public Response setSyncSchedule(DirectorySyncScheduleBean syncScheduleBean) {
+        return Response.ok(directorySyncScheduleService.setSyncSchedule(syncScheduleBean)).build();
+    }
+
+    @Override
+    public Response getSyncQueue(UUID uuid) {
+        final DirectorySyncQueueBean directorySyncQueueBean = directorySyncService.getSyncQueue(uuid);
+
+        if (directorySyncQueueBean == null) {
+            return Response.status(NOT_FOUND).build();
+        }
+
+        final Response.ResponseBuilder responseBuilder = Response.ok().entity(directorySyncQueueBean);
+
+        if (directorySyncQueueBean.getPercentageComplete() == 100) {
+            responseBuilder.status(CREATED);
+        }
+
+        return responseBuilder.build();
+    }
 
 }
@@ -0,0 +1,70 @@
+package de.aservo.confapi.confluence.rest;
+
+import com.sun.jersey.spi.container.ResourceFilters;
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import de.aservo.confapi.confluence.filter.SysAdminOnlyResourceFilter;
+import de.aservo.confapi.confluence.model.GroupBean;
+import de.aservo.confapi.confluence.model.GroupMembersBean;
+import de.aservo.confapi.confluence.model.GroupMembersChangeBean;
+import de.aservo.confapi.confluence.rest.api.GroupsResource;
+import de.aservo.confapi.confluence.service.api.GroupsService;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Path(ConfluenceConfAPI.GROUPS)
+@Produces(MediaType.APPLICATION_JSON)
+@ResourceFilters(SysAdminOnlyResourceFilter.class)
+@Component
+public class GroupsResourceImpl implements GroupsResource {
+
+    private final GroupsService groupsService;
+
+    @Inject
+    public GroupsResourceImpl(GroupsService groupsService) {
+        this.groupsService = groupsService;
+    }
+
+    @Override
+    public Response getGroups() {
+        return Response.ok(groupsService.getGroups()).build();
+    }
+
+    @Override
+    public Response setGroup(
+            @NotNull final GroupBean groupBean) {
+        return Response.ok(groupsService.setGroup(groupBean)).build();
+    }
+
+    @Override
+    public Response getGroup(
+            final String name) {
+        return Response.ok(groupsService.getGroup(name)).build();
+    }
+
+    @Override
+    public Response getGroupMembers(
+            final String name) {
+        return Response.ok(groupsService.getGroupMembers(name)).build();
+    }
+
+    @Override
+    public Response setGroupMembers(
+            final String name,
+            @NotNull final GroupMembersBean groupMembersBean) {
+        return Response.ok(groupsService.setGroupMembers(name, groupMembersBean)).build();
+    }
+
+    @Override
+    public Response updateGroupMembers(
+            final String name,
+            @NotNull final GroupMembersChangeBean groupMembersChangeBean) {
+        return Response.ok(groupsService.updateGroupMembers(name, groupMembersChangeBean)).build();
+    }
+
+}
@@ -2,24 +2,145 @@ package de.aservo.confapi.confluence.rest;
 
 import com.sun.jersey.spi.container.ResourceFilters;
 import de.aservo.confapi.commons.constants.ConfAPI;
+import de.aservo.confapi.commons.model.UserBean;
 import de.aservo.confapi.commons.rest.AbstractUsersResourceImpl;
-import de.aservo.confapi.commons.service.api.UsersService;
 import de.aservo.confapi.confluence.filter.SysAdminOnlyResourceFilter;
+import de.aservo.confapi.confluence.filter.UserEntityTagResourceFilter;
+import de.aservo.confapi.confluence.model.UserRenameBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateQueueBean;
+import de.aservo.confapi.confluence.model.UsersRenameQueueBean;
+import de.aservo.confapi.confluence.rest.api.ConfluenceUsersResource;
+import de.aservo.confapi.confluence.service.api.ConfluenceUsersService;
+import de.aservo.confapi.confluence.service.api.UserChangesService;
+import de.aservo.confapi.confluence.util.JsonArrayIterator;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static javax.ws.rs.core.Response.Status.ACCEPTED;
+import static javax.ws.rs.core.Response.Status.CREATED;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 
 @Path(ConfAPI.USERS)
-@ResourceFilters(SysAdminOnlyResourceFilter.class)
+@ResourceFilters({SysAdminOnlyResourceFilter.class, UserEntityTagResourceFilter.class})
 @Component
-public class UsersResourceImpl extends AbstractUsersResourceImpl {
+public class UsersResourceImpl extends AbstractUsersResourceImpl implements ConfluenceUsersResource {
+
+    private final ConfluenceUsersService usersService;
+
+    private final UserChangesService userChangesService;
 
     @Inject
-    public UsersResourceImpl(UsersService userService) {
+    public UsersResourceImpl(
+            ConfluenceUsersService userService,
+            UserChangesService userChangesService) {
         super(userService);
+        this.usersService = userService;
+        this.userChangesService = userChangesService;
+    }
+
+    // Inheriting the shared implementation of AbstractUserResourceImpl, only adding Confluence specific endpoints
+
+    @Override
+    public Response getUsers(
+            String directory,
+            String group,
+            Boolean active,
+            String fields,
+            String cursor,
+            int limit) {
+
+        final Set<String> selectedFields = fields == null ? null : Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toSet());
+
+        // the status is already sent when the streaming starts, so invalid parameters must be rejected before
+        usersService.validateUsersQuery(directory, group, selectedFields, cursor, limit);
+
+        final StreamingOutput users = outputStream -> {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            usersService.writeUsers(writer, directory, group, active, selectedFields, cursor, limit);
+            writer.flush();
+        };
+        return Response.ok(users).build();
+    }
+
+    @Override
+    public Response getUserChanges(String cursor, int limit) {
+        return Response.ok(userChangesService.getUserChanges(cursor, limit)).build();
+    }
+
+    @Override
+    public Response setUsers(InputStream userBeans) {
+        return Response.ok(usersService.setUsers(new JsonArrayIterator<>(userBeans, UserBean.class))).build();
+    }
+
+    @Override
+    public Response setPasswords(List<UserBean> userBeans) {
+        return Response.ok(usersService.setPasswords(userBeans)).build();
     }
 
-    // Completely inhering the implementation of AbstractUserResourceImpl
+    @Override
+    public Response renameUsers(List<UserRenameBean> userRenameBeans) {
+        return Response.status(ACCEPTED)
+                .location(usersService.renameUsersAsynchronously(userRenameBeans))
+                .build();
+    }
+
+    @Override
+    public Response getRenameQueue(UUID uuid) {
+        final UsersRenameQueueBean usersRenameQueueBean = usersService.getRenameQueue(uuid);
+
+        if (usersRenameQueueBean == null) {
+            return Response.status(NOT_FOUND).build();
+        }
+
+        final Response.ResponseBuilder responseBuilder = Response.ok().entity(usersRenameQueueBean);
+
+        if (usersRenameQueueBean.getPercentageComplete() == 100) {
+            responseBuilder.status(CREATED);
+        }
+
+        return responseBuilder.build();
+    }
+
+    @Override
+    public Response deactivateUsers(UsersDeactivateBean usersDeactivateBean) {
+        return Response.status(ACCEPTED)
+                .location(usersService.deactivateUsersAsynchronously(usersDeactivateBean))
+                .build();
+    }
+
+    @Override
+    public Response getDeactivateQueue(UUID uuid) {
+        final UsersDeactivateQueueBean usersDeactivateQueueBean = usersService.getDeactivateQueue(uuid);
+
+        if (usersDeactivateQueueBean == null) {
+            return Response.status(NOT_FOUND).build();
+        }
+
+        final Response.ResponseBuilder responseBuilder = Response.ok().entity(usersDeactivateQueueBean);
+
+        if (usersDeactivateQueueBean.getPercentageComplete() == 100) {
+            responseBuilder.status(CREATED);
+        }
+
+        return responseBuilder.build();
+    }
 
 }
@@ -2,8 +2,11 @@ package de.aservo.confapi.confluence.rest.api;
 
 import de.aservo.confapi.commons.constants.ConfAPI;
 import de.aservo.confapi.commons.model.ErrorCollection;
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
 import de.aservo.confapi.confluence.model.CacheBean;
+import de.aservo.confapi.confluence.model.CacheProfileBean;
 import de.aservo.confapi.confluence.model.CachesBean;
+import de.aservo.confapi.confluence.model.CachesClusterBean;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -15,11 +18,16 @@ import javax.ws.rs.core.Response;
 
 public interface CachesResource {
 
+    String HEAP_SIZE = "heap-size";
+
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(
             tags = {ConfAPI.CACHE},
             summary = "Read all cache informations",
+            description = "The heap size is measured exactly by default, which can be expensive for large caches. " +
+                    "Use heap-size=estimated to measure within a time budget and extrapolate otherwise, " +
+                    "or heap-size=none to skip it.",
             responses = {
                     @ApiResponse(
                             responseCode = "200", content = @Content(schema = @Schema(implementation = CachesBean.class)),
@@ -30,7 +38,103 @@ public interface CachesResource {
                     )
             }
     )
-    Response getCaches();
+    Response getCaches(@QueryParam(HEAP_SIZE) final String heapSize);
+
+    @GET
+    @Path(ConfluenceConfAPI.CACHES_CLUSTER)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.CACHE},
+            summary = "Read all cache informations of all cluster nodes",
+            description = "Collects the cache statistics of every cluster node and returns them per node and summed up",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = CachesClusterBean.class)),
+                            description = "Returns the cache configuration per cluster node and summed up over all nodes."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response getCachesCluster(@QueryParam(HEAP_SIZE) final String heapSize);
+
+    @GET
+    @Path(ConfluenceConfAPI.CACHES_METRICS)
+    @Produces(ConfluenceConfAPI.MEDIA_TYPE_OPENMETRICS)
+    @Operation(
+            tags = {ConfAPI.CACHE},
+            summary = "Read the statistics of all caches in the OpenMetrics text format",
+            description = "Meant to be scraped by Prometheus compatible monitoring. The heap size is not included " +
+                    "by default, use heap-size=estimated or heap-size=exact to include it.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(mediaType = ConfluenceConfAPI.MEDIA_TYPE_OPENMETRICS),
+                            description = "Returns the cache statistics as OpenMetrics text."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response getCacheMetrics(@QueryParam(HEAP_SIZE) @DefaultValue("none") final String heapSize);
+
+    @GET
+    @Path(ConfluenceConfAPI.CACHES_PROFILE)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.CACHE},
+            summary = "Read the stored cache profile",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = CacheProfileBean.class)),
+                            description = "Returns the stored cache profile."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response getCacheProfile();
+
+    @PUT
+    @Path(ConfluenceConfAPI.CACHES_PROFILE)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.CACHE},
+            summary = "Store and apply a cache profile",
+            description = "Stores the cache profile and applies it to all matching caches of all cluster nodes. " +
+                    "The profile is applied again on every plugin start, e.g. when a new cluster node is started.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = CacheProfileBean.class)),
+                            description = "Returns the sizes of the caches the profile has been applied to."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response setCacheProfile(final CacheProfileBean cacheProfile);
+
+    @POST
+    @Path(ConfluenceConfAPI.CACHES_PROFILE + "/" + ConfluenceConfAPI.CACHES_PROFILE_APPLY)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.CACHE},
+            summary = "Apply the stored cache profile",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = CacheProfileBean.class)),
+                            description = "Returns the sizes of the caches the profile has been applied to."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response applyCacheProfile();
 
     @GET
     @Path("{name}")
@@ -48,7 +152,9 @@ public interface CachesResource {
                     )
             }
     )
-    Response getCache(@PathParam("name") final String name);
+    Response getCache(
+            @PathParam("name") final String name,
+            @QueryParam(HEAP_SIZE) final String heapSize);
 
     @PUT
     @Path("{name}")
@@ -77,7 +183,7 @@ public interface CachesResource {
     @Operation(
             tags = {ConfAPI.CACHE},
             summary = "Flushes a cache",
-            description = "Empties the specified cache",
+            description = "Empties the specified cache. With warm-up enabled, the recorded keys are loaded again asynchronously.",
             responses = {
                     @ApiResponse(
                             responseCode = "200", content = @Content(schema = @Schema(implementation = CacheBean.class)),
@@ -89,5 +195,7 @@ public interface CachesResource {
                     )
             }
     )
-    Response flushCache(@PathParam("name") final String name);
+    Response flushCache(
+            @PathParam("name") final String name,
+            @QueryParam("warm-up") @DefaultValue("false") final boolean warmUp);
 }
@@ -0,0 +1,277 @@
+package de.aservo.confapi.confluence.rest.api;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import de.aservo.confapi.commons.model.DirectoriesBean;
+import de.aservo.confapi.commons.model.ErrorCollection;
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import de.aservo.confapi.confluence.model.DirectoriesApplyBean;
+import de.aservo.confapi.confluence.model.DirectoriesOrderBean;
+import de.aservo.confapi.confluence.model.DirectoriesProbeBean;
+import de.aservo.confapi.confluence.model.DirectoriesProbeRequestBean;
+import de.aservo.confapi.confluence.model.DirectoryLdapConnectorBean;
+import de.aservo.confapi.confluence.model.DirectorySyncBean;
+import de.aservo.confapi.confluence.model.DirectorySyncHistoryBean;
+import de.aservo.confapi.confluence.model.DirectorySyncQueueBean;
+import de.aservo.confapi.confluence.model.DirectorySyncScheduleBean;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.UUID;
+
+/**
+ * Confluence specific directory endpoints in addition to the shared directories resource.
+ */
+public interface ConfluenceDirectoriesResource {
+
+    @PUT
+    @Path(ConfluenceConfAPI.DIRECTORIES_APPLY)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Create or update multiple directories and report the timing",
+            description = "Like setting the directories, but returns the result and the duration of the connection " +
+                    "test and of the write per directory. The connections are tested concurrently before any " +
+                    "directory is written. A directory is only written if a setting of the request differs, " +
+                    "attributes that cannot be given in the request are kept.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = DirectoriesApplyBean.class)),
+                            description = "Returns the result and the timing per directory."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response applyDirectories(
+            @QueryParam("testConnection") @DefaultValue("false") final boolean testConnection,
+            @NotNull final DirectoriesBean directoriesBean);
+
+    @GET
+    @Path(ConfluenceConfAPI.DIRECTORIES_ORDER)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Read the directory order",
+            description = "Returns the directories in the order in which users are looked up, with the number and " +
+                    "share of logins of users found in each directory on this node",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectoriesOrderBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getDirectoriesOrder();
+
+    @PUT
+    @Path(ConfluenceConfAPI.DIRECTORIES_ORDER)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Set the directory order",
+            description = "Sets the order of all directories at once, only the directory ids are required. If the " +
+                    "order cannot be applied completely, the previous order is restored.",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectoriesOrderBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response setDirectoriesOrder(
+            @NotNull final DirectoriesOrderBean directoriesOrderBean);
+
+    @POST
+    @Path(ConfluenceConfAPI.DIRECTORIES_PROBE)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Probe the latency of the directories",
+            description = "Tests the connection of each active directory the given number of times and, if a test " +
+                    "account is given, authenticates it the same number of times. Reports the min, avg and p95 " +
+                    "latency and the error rate. The directories are probed concurrently within a global timeout.",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectoriesProbeBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response probeDirectories(
+            @NotNull final DirectoriesProbeRequestBean probeRequestBean);
+
+    @GET
+    @Path(ConfluenceConfAPI.DIRECTORIES_LDAP + "/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Read an LDAP directory",
+            description = "Returns the LDAP directory with its connection, paging, pooling and synchronisation settings",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectoryLdapConnectorBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getLdapDirectory(
+            @PathParam("id") final long id);
+
+    @PUT
+    @Path(ConfluenceConfAPI.DIRECTORIES_LDAP + "/{id}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Update an LDAP directory",
+            description = "Updates the given settings of the LDAP directory, settings that are not given are kept. " +
+                    "The directory is only written if anything has changed.",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectoryLdapConnectorBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response setLdapDirectory(
+            @PathParam("id") final long id,
+            @QueryParam("testConnection") @DefaultValue("false") final boolean testConnection,
+            @NotNull final DirectoryLdapConnectorBean ldapBean);
+
+    @POST
+    @Path(ConfluenceConfAPI.DIRECTORIES_LDAP)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Add an LDAP directory",
+            description = "Adds an LDAP directory, settings that are not given fall back to the Crowd defaults. " +
+                    "User and group schema settings can be passed as further attributes, the default schema of the LDAP type " +
+                    "is used for the ones that are not given.",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectoryLdapConnectorBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response addLdapDirectory(
+            @QueryParam("testConnection") @DefaultValue("false") final boolean testConnection,
+            @NotNull final DirectoryLdapConnectorBean ldapBean);
+
+    @POST
+    @Path("{id}/" + ConfluenceConfAPI.DIRECTORIES_SYNC)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Synchronise a directory asynchronously",
+            description = "Starts the synchronisation of a remote directory in a long-running task. The optional " +
+                    "mode (full or incremental) must match the directory configuration.",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "The queue URL will be returned in the location header"),
+                    @ApiResponse(responseCode = "503", description = "The directory is already synchronising, retry later"),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response synchroniseDirectory(
+            @PathParam("id") final long id,
+            @QueryParam("mode") final String mode);
+
+    @GET
+    @Path("{id}/" + ConfluenceConfAPI.DIRECTORIES_SYNC)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Read the synchronisation state of a directory",
+            description = "Returns whether the directory is synchronising and the start, duration and status of " +
+                    "its last synchronisation, including scheduled ones",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectorySyncBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getDirectorySync(
+            @PathParam("id") final long id);
+
+    @GET
+    @Path("{id}/" + ConfluenceConfAPI.DIRECTORIES_SYNC + "/" + ConfluenceConfAPI.DIRECTORIES_SYNC_HISTORY)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Read the synchronisation history of a directory",
+            description = "Returns the recorded syncs with the p50 and p95 duration and the trend of the duration. " +
+                    "The last sync is flagged as degraded if it took longer than the given threshold or, without " +
+                    "threshold, considerably longer than the median sync.",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectorySyncHistoryBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getDirectorySyncHistory(
+            @PathParam("id") final long id,
+            @QueryParam("thresholdInMillis") final Long thresholdInMillis);
+
+    @GET
+    @Path(ConfluenceConfAPI.DIRECTORIES_SYNC_SCHEDULE)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Read the directory sync schedule",
+            description = "Returns the directories whose automatic synchronisation is paused, the sync windows with " +
+                    "their zone and the last syncs triggered by the schedule",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectorySyncScheduleBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getSyncSchedule();
+
+    @PUT
+    @Path(ConfluenceConfAPI.DIRECTORIES_SYNC_SCHEDULE)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Set the directory sync schedule",
+            description = "Pauses the automatic synchronisation of the given directories and synchronises them once " +
+                    "per window instead, one after the other with the given stagger. Directories that are no longer " +
+                    "paused are resumed with their previous sync interval. The windows are interpreted in the given " +
+                    "zone, e.g. Europe/Berlin, which defaults to the zone of the server.",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = DirectorySyncScheduleBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response setSyncSchedule(
+            @NotNull final DirectorySyncScheduleBean syncScheduleBean);
+
+    @GET
+    @Path(ConfluenceConfAPI.DIRECTORIES_SYNC_QUEUE + "/{uuid}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.DIRECTORIES},
+            summary = "Information about an initiated directory sync task",
+            description = "Returns the progress, the duration and the total number of users and groups of the directory " +
+                    "after the sync, and for a full sync the users and groups processed per second",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = DirectorySyncQueueBean.class)),
+                            description = "Task is still running"
+                    ),
+                    @ApiResponse(
+                            responseCode = "201", content = @Content(schema = @Schema(implementation = DirectorySyncQueueBean.class)),
+                            description = "Task completed, return the result of the sync"
+                    ),
+                    @ApiResponse(responseCode = "404", description = "No task found for the given UUID"),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getSyncQueue(@PathParam("uuid") final UUID uuid);
+
+}
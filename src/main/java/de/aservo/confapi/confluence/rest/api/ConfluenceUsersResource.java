@@ -0,0 +1,217 @@
+package de.aservo.confapi.confluence.rest.api;
+
+import de.aservo.confapi.commons.constants.ConfAPI;
+import de.aservo.confapi.commons.model.ErrorCollection;
+import de.aservo.confapi.commons.model.UserBean;
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import de.aservo.confapi.confluence.model.UserChangesBean;
+import de.aservo.confapi.confluence.model.UserRenameBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateQueueBean;
+import de.aservo.confapi.confluence.model.UsersBulkBean;
+import de.aservo.confapi.confluence.model.UsersRenameQueueBean;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Confluence specific user endpoints in addition to the shared users resource.
+ */
+public interface ConfluenceUsersResource {
+
+    @GET
+    @Path(ConfluenceConfAPI.USERS_LIST)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.USERS},
+            summary = "List users",
+            description = "Streams a page of users, optionally filtered by directory, group and active flag. " +
+                    "The fields parameter takes a comma separated list of the fields to return. " +
+                    "Pass the returned nextCursor to get the next page, it is null on the last page.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Returns the users of the page and the cursor of the next page."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response getUsers(
+            @QueryParam("directory") final String directory,
+            @QueryParam("group") final String group,
+            @QueryParam("active") final Boolean active,
+            @QueryParam("fields") final String fields,
+            @QueryParam("cursor") final String cursor,
+            @QueryParam("limit") @DefaultValue("1000") final int limit);
+
+    @GET
+    @Path(ConfluenceConfAPI.USERS_CHANGES)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.USERS},
+            summary = "Read the user changes since a cursor",
+            description = "Returns the user creations, updates, renames, deactivations and deletions recorded after " +
+                    "the given cursor. Pass the returned nextCursor to the next call. Changes become visible with a " +
+                    "delay of a few seconds. If the cursor is no longer retained, a full synchronisation is required.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = UserChangesBean.class)),
+                            description = "Returns the changes and the cursor for the next call."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response getUserChanges(
+            @QueryParam("cursor") final String cursor,
+            @QueryParam("limit") @DefaultValue("1000") final int limit);
+
+    @POST
+    @Path(ConfluenceConfAPI.USERS_BULK)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.USERS},
+            summary = "Create or update multiple users",
+            description = "Reads the users one by one from the request body and applies them in batches. " +
+                    "Users that cannot be applied are reported per user and do not abort the other users. " +
+                    "If an element of the body cannot be read, the users before it are still applied and the " +
+                    "unreadable element is reported as failed result, the elements after it are not applied.",
+            requestBody = @RequestBody(content = @Content(array = @ArraySchema(schema = @Schema(implementation = UserBean.class)))),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = UsersBulkBean.class)),
+                            description = "Returns the result per user and the throughput."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response setUsers(final InputStream userBeans);
+
+    @POST
+    @Path(ConfluenceConfAPI.USERS_PASSWORDS)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.USERS},
+            summary = "Set the passwords of multiple users",
+            description = "Looks up the users, encodes the passwords of users in internal directories in parallel " +
+                    "with a bounded number of workers and writes the passwords in small batched transactions with a " +
+                    "limited rate of password writes. " +
+                    "Only username and password of the given users are used.",
+            requestBody = @RequestBody(content = @Content(array = @ArraySchema(schema = @Schema(implementation = UserBean.class)))),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = UsersBulkBean.class)),
+                            description = "Returns the result per user and the throughput."),
+                    @ApiResponse(
+                            content = @Content(schema = @Schema(implementation = ErrorCollection.class)),
+                            description = "Returns a list of error messages."
+                    )
+            }
+    )
+    Response setPasswords(final List<UserBean> userBeans);
+
+    @POST
+    @Path(ConfluenceConfAPI.USERS_RENAME)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.USERS},
+            summary = "Rename multiple users asynchronously",
+            description = "Renames the given users in a long-running task, because renaming rewrites the user " +
+                    "references in the content. Only a limited number of rename tasks can run at the same time.",
+            requestBody = @RequestBody(content = @Content(array = @ArraySchema(schema = @Schema(implementation = UserRenameBean.class)))),
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "The queue URL will be returned in the location header"),
+                    @ApiResponse(responseCode = "503", description = "Too many renames are running, retry later"),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response renameUsers(final List<UserRenameBean> userRenameBeans);
+
+    @GET
+    @Path(ConfluenceConfAPI.USERS_RENAME_QUEUE + "/{uuid}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.USERS},
+            summary = "Information about an initiated user rename task",
+            description = "Returns the progress and the results of the users renamed so far",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = UsersRenameQueueBean.class)),
+                            description = "Task is still running, return information like ETA"
+                    ),
+                    @ApiResponse(
+                            responseCode = "201", content = @Content(schema = @Schema(implementation = UsersRenameQueueBean.class)),
+                            description = "Task completed, return the results of all users"
+                    ),
+                    @ApiResponse(responseCode = "404", description = "No task found for the given UUID"),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getRenameQueue(@PathParam("uuid") final UUID uuid);
+
+    @POST
+    @Path(ConfluenceConfAPI.USERS_DEACTIVATE)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.USERS},
+            summary = "Deactivate inactive users asynchronously",
+            description = "Deactivates the users whose last login is older than the given number of days in a " +
+                    "long-running task, to free their licence seats. Members of the excluded groups are skipped. " +
+                    "With dryRun the inactive users are only reported. Only one deactivation can run at a time.",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "The queue URL will be returned in the location header"),
+                    @ApiResponse(responseCode = "503", description = "A deactivation is already running, retry later"),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response deactivateUsers(final UsersDeactivateBean usersDeactivateBean);
+
+    @GET
+    @Path(ConfluenceConfAPI.USERS_DEACTIVATE_QUEUE + "/{uuid}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfAPI.USERS},
+            summary = "Information about an initiated user deactivation task",
+            description = "Returns the progress, the number of scanned users and the users deactivated so far",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200", content = @Content(schema = @Schema(implementation = UsersDeactivateQueueBean.class)),
+                            description = "Task is still running, return information like ETA"
+                    ),
+                    @ApiResponse(
+                            responseCode = "201", content = @Content(schema = @Schema(implementation = UsersDeactivateQueueBean.class)),
+                            description = "Task completed, return the results of all users"
+                    ),
+                    @ApiResponse(responseCode = "404", description = "No task found for the given UUID"),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getDeactivateQueue(@PathParam("uuid") final UUID uuid);
+
+}
@@ -0,0 +1,111 @@
+package de.aservo.confapi.confluence.rest.api;
+
+import de.aservo.confapi.commons.model.ErrorCollection;
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import de.aservo.confapi.confluence.model.GroupBean;
+import de.aservo.confapi.confluence.model.GroupMembersBean;
+import de.aservo.confapi.confluence.model.GroupMembersChangeBean;
+import de.aservo.confapi.confluence.model.GroupMembersResultBean;
+import de.aservo.confapi.confluence.model.GroupsBean;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+public interface GroupsResource {
+
+    @GET
+    @Operation(
+            tags = {ConfluenceConfAPI.GROUPS},
+            summary = "Get all groups",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = GroupsBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getGroups();
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfluenceConfAPI.GROUPS},
+            summary = "Create a group",
+            description = "Creates the group if it does not exist yet, an existing group is left unchanged",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = GroupBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response setGroup(
+            @NotNull final GroupBean groupBean);
+
+    @GET
+    @Path("{name}")
+    @Operation(
+            tags = {ConfluenceConfAPI.GROUPS},
+            summary = "Get a group",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = GroupBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getGroup(
+            @PathParam("name") final String name);
+
+    @GET
+    @Path("{name}/" + ConfluenceConfAPI.GROUP_MEMBERS)
+    @Operation(
+            tags = {ConfluenceConfAPI.GROUPS},
+            summary = "Get the direct members of a group",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = GroupMembersBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response getGroupMembers(
+            @PathParam("name") final String name);
+
+    @PUT
+    @Path("{name}/" + ConfluenceConfAPI.GROUP_MEMBERS)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfluenceConfAPI.GROUPS},
+            summary = "Set the members of a group",
+            description = "Compares the given members with the current members and only adds the missing " +
+                    "and removes the surplus members",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = GroupMembersResultBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response setGroupMembers(
+            @PathParam("name") final String name,
+            @NotNull final GroupMembersBean groupMembersBean);
+
+    @POST
+    @Path("{name}/" + ConfluenceConfAPI.GROUP_MEMBERS)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Operation(
+            tags = {ConfluenceConfAPI.GROUPS},
+            summary = "Add and remove members of a group",
+            description = "Adds and removes the given users, users that already are or are not members are skipped",
+            responses = {
+                    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = GroupMembersResultBean.class))),
+                    @ApiResponse(content = @Content(schema = @Schema(implementation = ErrorCollection.class)))
+            }
+    )
+    Response updateGroupMembers(
+            @PathParam("name") final String name,
+            @NotNull final GroupMembersChangeBean groupMembersChangeBean);
+
+}
@@ -0,0 +1,173 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.cache.CacheStatisticsKey;
+import com.atlassian.cache.ManagedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Estimates the heap size of caches.
+ *
+ * Measuring the heap size of a cache means sizing its whole object graph, which is expensive for large caches.
+ * The estimator therefore measures a cache at most once per sample period and only waits for the measurement
+ * until a deadline, which is shared by all caches of a request. In between or if the deadline is exceeded, the
+ * heap size is extrapolated from the bytes per entry of the last measurement and the current number of entries.
+ *
+ * Sizing a cache cannot be interrupted, so a measurement that exceeds the deadline is not cancelled but keeps
+ * running in the background. Its sample then serves the later requests, which do not start another measurement of
+ * the same cache in the meantime.
+ */
+class CacheHeapSizeEstimator {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheHeapSizeEstimator.class);
+
+    static final long SAMPLE_PERIOD_IN_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    static final long TIME_BUDGET_IN_MILLIS = 500;
+    static final int MEASUREMENT_THREADS = 2;
+
+    private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+    private final Set<String> runningMeasurements = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+
+    /**
+     * Get the deadline for estimating the heap sizes of the caches of one request.
+     *
+     * @return the deadline in milliseconds since the epoch
+     */
+    static long getDeadline() {
+        return System.currentTimeMillis() + TIME_BUDGET_IN_MILLIS;
+    }
+
+    Estimate estimate(
+            final ManagedCache cache) {
+
+        return estimate(cache, getDeadline());
+    }
+
+    Estimate estimate(
+            final ManagedCache cache,
+            final long deadline) {
+
+        final String name = cache.getName();
+        final long entries = getStatistic(cache, CacheStatisticsKey.SIZE);
+        final Sample sample = samples.get(name);
+
+        if (sample != null && System.currentTimeMillis() - sample.timestamp < SAMPLE_PERIOD_IN_MILLIS) {
+            return new Estimate(sample.extrapolate(entries), true);
+        }
+
+        final long remainingTime = deadline - System.currentTimeMillis();
+
+        // do not start measurements once the deadline is exceeded and do not pile up measurements of the same cache
+        if (remainingTime <= 0 || !runningMeasurements.add(name)) {
+            return new Estimate(sample != null ? sample.extrapolate(entries) : null, true);
+        }
+
+        final Future<Long> measurement = getExecutor().submit(() -> measure(cache, name, entries));
+
+        try {
+            return new Estimate(measurement.get(remainingTime, TimeUnit.MILLISECONDS), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.debug("Failed to measure heap size of cache '{}'", name, e.getCause());
+        } catch (TimeoutException e) {
+            log.debug("Measuring the heap size of cache '{}' exceeded the time budget, continuing in the background", name);
+        }
+
+        return new Estimate(sample != null ? sample.extrapolate(entries) : null, true);
+    }
+
+    synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+
+        // measurements that were still queued will never run and clear their flags
+        runningMeasurements.clear();
+    }
+
+    private Long measure(
+            final ManagedCache cache,
+            final String name,
+            final long entries) {
+
+        try {
+            final long heapSize = getStatistic(cache, CacheStatisticsKey.HEAP_SIZE);
+
+            // an empty cache does not tell the size of an entry
+            if (entries > 0) {
+                samples.put(name, new Sample((double) heapSize / entries, System.currentTimeMillis()));
+            }
+
+            return heapSize;
+        } finally {
+            runningMeasurements.remove(name);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            executor = Executors.newFixedThreadPool(MEASUREMENT_THREADS, runnable -> {
+                final Thread thread = new Thread(runnable, "confapi-cache-heap-size");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private static long getStatistic(
+            final ManagedCache cache,
+            final CacheStatisticsKey key) {
+
+        final Supplier<Long> statistic = cache.getStatistics().get(key);
+        return statistic != null ? statistic.get() : 0L;
+    }
+
+    static class Estimate {
+
+        final Long heapSize;
+        final boolean estimated;
+
+        Estimate(
+                final Long heapSize,
+                final boolean estimated) {
+
+            this.heapSize = heapSize;
+            this.estimated = estimated;
+        }
+    }
+
+    private static class Sample {
+
+        private final double bytesPerEntry;
+        private final long timestamp;
+
+        private Sample(
+                final double bytesPerEntry,
+                final long timestamp) {
+
+            this.bytesPerEntry = bytesPerEntry;
+            this.timestamp = timestamp;
+        }
+
+        private long extrapolate(
+                final long entries) {
+
+            return Math.round(bytesPerEntry * entries);
+        }
+    }
+
+}
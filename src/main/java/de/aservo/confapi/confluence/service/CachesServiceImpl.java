@@ -1,44 +1,261 @@
 package de.aservo.confapi.confluence.service;
 
 
+import com.atlassian.cache.Cache;
 import com.atlassian.cache.CacheManager;
+import com.atlassian.cache.CacheStatisticsKey;
 import com.atlassian.cache.ManagedCache;
+import com.atlassian.confluence.cluster.ClusterManager;
 import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
 import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import com.atlassian.spring.container.ContainerManager;
+import com.google.common.util.concurrent.RateLimiter;
 import de.aservo.confapi.commons.exception.BadRequestException;
 import de.aservo.confapi.commons.exception.NotFoundException;
 import de.aservo.confapi.confluence.model.CacheBean;
+import de.aservo.confapi.confluence.model.CacheHeapSizeMode;
+import de.aservo.confapi.confluence.model.CacheNodeBean;
+import de.aservo.confapi.confluence.model.CacheProfileBean;
 import de.aservo.confapi.confluence.model.CachesBean;
+import de.aservo.confapi.confluence.model.CachesClusterBean;
 import de.aservo.confapi.confluence.model.util.CacheBeanUtil;
 import de.aservo.confapi.confluence.service.api.CachesService;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Component
-@ExportAsService(CachesService.class)
-public class CachesServiceImpl implements CachesService {
+@ExportAsService({CachesService.class, LifecycleAware.class})
+public class CachesServiceImpl implements CachesService, LifecycleAware {
+
+    private static final Logger log = LoggerFactory.getLogger(CachesServiceImpl.class);
+
+    private static final String COMPONENT_CACHE_MANAGER = "cacheManager";
+    private static final String CLUSTER_SERVICE_NAME = "confapi-caches";
+    private static final String LOCAL_NODE_ID = "local";
+    private static final String WILDCARD = "*";
+
+    private static final String SETTINGS_KEY_PREFIX = "de.aservo.confapi.confluence.caches.";
+    public static final String SETTINGS_KEY_PROFILE_NAME = SETTINGS_KEY_PREFIX + "profile.name";
+    public static final String SETTINGS_KEY_PROFILE_SIZES = SETTINGS_KEY_PREFIX + "profile.sizes";
+
+    private static final String METRIC_PREFIX = "confluence_cache_";
+    private static final String METRIC_TYPE_COUNTER = "counter";
+    private static final String METRIC_TYPE_GAUGE = "gauge";
+
+    public static final int CLUSTER_TIMEOUT_IN_SECONDS = 30;
+    public static final int WARM_UP_MAX_KEYS = 10000;
+    public static final int WARM_UP_KEYS_PER_SECOND = 200;
+    public static final int PROFILE_CHECK_INTERVAL_IN_SECONDS = 60;
+
+    // shared by the service and the cluster tasks, which cannot reference the service instance
+    private static final CacheHeapSizeEstimator heapSizeEstimator = new CacheHeapSizeEstimator();
 
     private final CacheManager cacheManager;
+    private final ClusterManager clusterManager;
+    private final PluginSettingsFactory pluginSettingsFactory;
+    private final ExecutorService warmUpExecutor;
+    private final Map<String, Future<?>> warmUps = new ConcurrentHashMap<>();
+    private final Set<String> knownCacheNames = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService profileExecutor;
 
     @Inject
     public CachesServiceImpl(
-            @ComponentImport CacheManager cacheManager) {
+            @ComponentImport CacheManager cacheManager,
+            @ComponentImport ClusterManager clusterManager,
+            @ComponentImport PluginSettingsFactory pluginSettingsFactory) {
         this.cacheManager = cacheManager;
+        this.clusterManager = clusterManager;
+        this.pluginSettingsFactory = pluginSettingsFactory;
+        this.warmUpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "confapi-cache-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onStart() {
+        // apply the stored cache profile, so that (newly started) nodes are sized correctly right from the start
+        applyCacheProfileToNewCaches();
+
+        // many caches are only created when they are first used, so they are sized once they show up
+        profileExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "confapi-cache-profile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        profileExecutor.scheduleWithFixedDelay(this::applyCacheProfileToNewCachesSafely,
+                PROFILE_CHECK_INTERVAL_IN_SECONDS, PROFILE_CHECK_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onStop() {
+        warmUpExecutor.shutdownNow();
+        heapSizeEstimator.shutdown();
+
+        if (profileExecutor != null) {
+            profileExecutor.shutdownNow();
+            profileExecutor = null;
+        }
     }
 
     @Override
     public CachesBean getAllCaches() {
-        return new CachesBean(cacheManager.getManagedCaches().stream()
-                .map(CacheBeanUtil::toCacheBean)
-                .collect(Collectors.toList()));
+        return getAllCaches(CacheHeapSizeMode.EXACT);
+    }
+
+    @Override
+    public CachesBean getAllCaches(CacheHeapSizeMode heapSizeMode) {
+        return new CachesBean(getLocalCaches(cacheManager, heapSizeMode));
+    }
+
+    @Override
+    public CachesClusterBean getAllCachesCluster() {
+        return getAllCachesCluster(CacheHeapSizeMode.EXACT);
+    }
+
+    @Override
+    public CachesClusterBean getAllCachesCluster(CacheHeapSizeMode heapSizeMode) {
+        final List<CacheNodeBean> nodes = new ArrayList<>();
+
+        if (clusterManager.isClustered()) {
+            final Map<String, String> errors = new TreeMap<>();
+            final Map<String, ArrayList<CacheBean>> results = submitToAllNodes(new LocalCachesCallable(heapSizeMode), errors);
+
+            results.forEach((nodeId, caches) -> nodes.add(new CacheNodeBean(nodeId, caches, null)));
+            errors.forEach((nodeId, error) -> nodes.add(new CacheNodeBean(nodeId, null, error)));
+        } else {
+            nodes.add(new CacheNodeBean(LOCAL_NODE_ID, getLocalCaches(cacheManager, heapSizeMode), null));
+        }
+
+        final Map<String, List<CacheBean>> cacheBeansByName = nodes.stream()
+                .filter(node -> node.getCaches() != null)
+                .flatMap(node -> node.getCaches().stream())
+                .collect(Collectors.groupingBy(CacheBean::getName, TreeMap::new, Collectors.toList()));
+
+        final List<CacheBean> caches = cacheBeansByName.entrySet().stream()
+                .map(entry -> CacheBeanUtil.toCacheBean(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+
+        return new CachesClusterBean(nodes, caches);
+    }
+
+    @Override
+    public void writeCacheMetrics(Writer writer, CacheHeapSizeMode heapSizeMode) throws IOException {
+        final List<ManagedCache> caches = new ArrayList<>(cacheManager.getManagedCaches());
+
+        // metric families must not be interleaved, so every family iterates over all caches
+        writeCacheMetric(writer, caches, "entries", METRIC_TYPE_GAUGE, "Number of entries in the cache.",
+                cache -> getStatistic(cache, CacheStatisticsKey.SIZE));
+        writeCacheMetric(writer, caches, "max_entries", METRIC_TYPE_GAUGE, "Maximum number of entries of the cache.",
+                cache -> cache.currentMaxEntries() != null ? Long.valueOf(cache.currentMaxEntries()) : null);
+        writeCacheMetric(writer, caches, "hits", METRIC_TYPE_COUNTER, "Number of cache hits.",
+                cache -> getStatistic(cache, CacheStatisticsKey.HIT_COUNT));
+        writeCacheMetric(writer, caches, "misses", METRIC_TYPE_COUNTER, "Number of cache misses.",
+                cache -> getStatistic(cache, CacheStatisticsKey.MISS_COUNT));
+        writeCacheMetric(writer, caches, "puts", METRIC_TYPE_COUNTER, "Number of cache puts.",
+                cache -> getStatistic(cache, CacheStatisticsKey.PUT_COUNT));
+        writeCacheMetric(writer, caches, "removals", METRIC_TYPE_COUNTER, "Number of cache removals.",
+                cache -> getStatistic(cache, CacheStatisticsKey.REMOVE_COUNT));
+        writeCacheMetric(writer, caches, "evictions", METRIC_TYPE_COUNTER, "Number of cache evictions.",
+                cache -> getStatistic(cache, CacheStatisticsKey.EVICTION_COUNT));
+
+        if (heapSizeMode != CacheHeapSizeMode.NONE) {
+            final long deadline = CacheHeapSizeEstimator.getDeadline();
+            writeCacheMetric(writer, caches, "heap_size_bytes", METRIC_TYPE_GAUGE, "Heap size of the cache in bytes.",
+                    cache -> heapSizeMode == CacheHeapSizeMode.ESTIMATED
+                            ? heapSizeEstimator.estimate(cache, deadline).heapSize
+                            : getStatistic(cache, CacheStatisticsKey.HEAP_SIZE));
+        }
+
+        writer.write("# EOF\n");
+    }
+
+    private static void writeCacheMetric(
+            final Writer writer,
+            final List<ManagedCache> caches,
+            final String name,
+            final String type,
+            final String help,
+            final Function<ManagedCache, Long> value) throws IOException {
+
+        final String familyName = METRIC_PREFIX + name;
+        final String sampleName = METRIC_TYPE_COUNTER.equals(type) ? familyName + "_total" : familyName;
+
+        writer.write("# TYPE " + familyName + " " + type + "\n");
+        writer.write("# HELP " + familyName + " " + help + "\n");
+        if (familyName.endsWith("_bytes")) {
+            writer.write("# UNIT " + familyName + " bytes\n");
+        }
+
+        for (ManagedCache cache : caches) {
+            final Long sample = value.apply(cache);
+
+            if (sample != null) {
+                writer.write(sampleName);
+                writer.write("{cache=\"");
+                writer.write(escapeLabelValue(cache.getName()));
+                writer.write("\"} ");
+                writer.write(String.valueOf(sample));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static Long getStatistic(
+            final ManagedCache cache,
+            final CacheStatisticsKey key) {
+
+        final Supplier<Long> statistic = cache.getStatistics().get(key);
+        return statistic != null ? statistic.get() : null;
+    }
+
+    static String escapeLabelValue(
+            final String value) {
+
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
     }
 
     @Override
     public CacheBean getCache(String name) {
+        return getCache(name, CacheHeapSizeMode.EXACT);
+    }
+
+    @Override
+    public CacheBean getCache(String name, CacheHeapSizeMode heapSizeMode) {
         ManagedCache cache = findCache(name);
-        return CacheBeanUtil.toCacheBean(cache);
+        return toCacheBean(cache, heapSizeMode);
     }
 
     @Override
@@ -52,12 +269,197 @@ public class CachesServiceImpl implements CachesService {
 
     @Override
     public void flushCache(String name) {
+        flushCache(name, false);
+    }
+
+    @Override
+    public void flushCache(String name, boolean warmUp) {
         ManagedCache cache = findCache(name);
         if (!cache.isFlushable()) {
             throw new BadRequestException(String.format(
                     "Given cache with name '%s' is not flushable", name));
         }
+
+        // a running warm-up would only repopulate the cache with stale values
+        final Future<?> runningWarmUp = warmUps.remove(name);
+        if (runningWarmUp != null) {
+            runningWarmUp.cancel(true);
+        }
+
+        // resolve the loading view of the existing cache, the cache manager would create a new cache for unknown names
+        if (!warmUp || !(cache instanceof Cache)) {
+            if (warmUp) {
+                log.info("Cache '{}' cannot be accessed for loading values, skipping warm-up", name);
+            }
+            cache.clear();
+            return;
+        }
+
+        // record the keys before clearing, the entries still in the cache are the ones that have been accessed recently
+        @SuppressWarnings("unchecked")
+        final Cache<Object, Object> loadingCache = (Cache<Object, Object>) cache;
+        final List<Object> keys = loadingCache.getKeys().stream()
+                .limit(WARM_UP_MAX_KEYS)
+                .collect(Collectors.toList());
+
         cache.clear();
+
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        // a cache with a loader never returns null, so loading the first key tells whether the cache can be warmed up
+        if (loadingCache.get(keys.get(0)) == null) {
+            log.info("Cache '{}' does not support loading values, skipping warm-up", name);
+            return;
+        }
+
+        final List<Object> remainingKeys = keys.subList(1, keys.size());
+        log.info("Warming up cache '{}' with {} keys", name, remainingKeys.size());
+
+        // finished and cancelled warm-ups remove themselves, so that only running ones are tracked
+        final FutureTask<Void> warmUpTask = new FutureTask<Void>(() -> warmUpCache(name, loadingCache, remainingKeys), null) {
+            @Override
+            protected void done() {
+                warmUps.remove(name, this);
+            }
+        };
+        warmUps.put(name, warmUpTask);
+        warmUpExecutor.execute(warmUpTask);
+    }
+
+    private void warmUpCache(
+            final String name,
+            final Cache<Object, Object> cache,
+            final List<Object> keys) {
+
+        final RateLimiter rateLimiter = RateLimiter.create(WARM_UP_KEYS_PER_SECOND);
+        int loaded = 0;
+
+        try {
+            for (Object key : keys) {
+                if (Thread.currentThread().isInterrupted()) {
+                    log.info("Warm-up of cache '{}' cancelled after {} keys", name, loaded);
+                    return;
+                }
+
+                rateLimiter.acquire();
+                cache.get(key);
+                loaded++;
+            }
+
+            log.info("Warm-up of cache '{}' finished after {} keys", name, loaded);
+        } catch (RuntimeException e) {
+            log.warn("Warm-up of cache '{}' failed after {} keys", name, loaded, e);
+        }
+    }
+
+    int getRunningWarmUpCount() {
+        return warmUps.size();
+    }
+
+    @Override
+    public CacheProfileBean getCacheProfile() {
+        final CacheProfileBean cacheProfileBean = findCacheProfile();
+        if (cacheProfileBean == null) {
+            throw new NotFoundException("No cache profile has been stored yet");
+        }
+        return cacheProfileBean;
+    }
+
+    @Override
+    public CacheProfileBean setCacheProfile(CacheProfileBean cacheProfileBean) {
+        if (StringUtils.isBlank(cacheProfileBean.getName())) {
+            throw new BadRequestException("The cache profile must have a name");
+        }
+        if (cacheProfileBean.getMaxObjectCounts() == null || cacheProfileBean.getMaxObjectCounts().isEmpty()) {
+            throw new BadRequestException("The cache profile must contain at least one cache size");
+        }
+
+        final Map<String, String> sizes = new HashMap<>();
+        cacheProfileBean.getMaxObjectCounts().forEach((name, size) -> {
+            if (size == null || size <= 0) {
+                throw new BadRequestException(String.format(
+                        "Given cache size '%s' for cache '%s' must be a positive number", size, name));
+            }
+            sizes.put(name, String.valueOf(size));
+        });
+
+        final PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+        pluginSettings.put(SETTINGS_KEY_PROFILE_NAME, cacheProfileBean.getName());
+        pluginSettings.put(SETTINGS_KEY_PROFILE_SIZES, sizes);
+
+        return applyCacheProfile();
+    }
+
+    @Override
+    public CacheProfileBean applyCacheProfile() {
+        final CacheProfileBean cacheProfileBean = getCacheProfile();
+        final Map<String, Integer> appliedSizes = new TreeMap<>();
+
+        if (clusterManager.isClustered()) {
+            final Map<String, String> errors = new TreeMap<>();
+            final Map<String, HashMap<String, Integer>> results = submitToAllNodes(
+                    new ApplyCacheSizesCallable(new HashMap<>(cacheProfileBean.getMaxObjectCounts())), errors);
+
+            results.values().forEach(appliedSizes::putAll);
+            errors.forEach((nodeId, error) -> log.warn("Failed to apply cache profile '{}' on cluster node '{}': {}",
+                    cacheProfileBean.getName(), nodeId, error));
+        } else {
+            appliedSizes.putAll(applyCacheSizes(cacheManager, cacheProfileBean.getMaxObjectCounts()));
+        }
+
+        return new CacheProfileBean(cacheProfileBean.getName(), appliedSizes);
+    }
+
+    /**
+     * Applies the stored cache profile to the caches that have not been seen before.
+     *
+     * Caches that have already been seen are left alone, so that sizes changed for a single cache are kept until
+     * the profile is applied again.
+     */
+    void applyCacheProfileToNewCaches() {
+        final List<ManagedCache> newCaches = cacheManager.getManagedCaches().stream()
+                .filter(cache -> knownCacheNames.add(cache.getName()))
+                .collect(Collectors.toList());
+
+        if (newCaches.isEmpty()) {
+            return;
+        }
+
+        final CacheProfileBean cacheProfileBean = findCacheProfile();
+
+        if (cacheProfileBean != null) {
+            final Map<String, Integer> appliedSizes = applyCacheSizes(newCaches, cacheProfileBean.getMaxObjectCounts());
+
+            if (!appliedSizes.isEmpty()) {
+                log.info("Applied cache profile '{}' to {} new caches", cacheProfileBean.getName(), appliedSizes.size());
+            }
+        }
+    }
+
+    private void applyCacheProfileToNewCachesSafely() {
+        try {
+            applyCacheProfileToNewCaches();
+        } catch (RuntimeException e) {
+            log.warn("Failed to apply the cache profile to new caches", e);
+        }
+    }
+
+    private CacheProfileBean findCacheProfile() {
+        final PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+        final Object name = pluginSettings.get(SETTINGS_KEY_PROFILE_NAME);
+        final Object sizes = pluginSettings.get(SETTINGS_KEY_PROFILE_SIZES);
+
+        if (!(name instanceof String) || !(sizes instanceof Map)) {
+            return null;
+        }
+
+        final Map<String, Integer> maxObjectCounts = new TreeMap<>();
+        ((Map<?, ?>) sizes).forEach((cacheName, size) ->
+                maxObjectCounts.put(String.valueOf(cacheName), Integer.valueOf(String.valueOf(size))));
+
+        return new CacheProfileBean((String) name, maxObjectCounts);
     }
 
     private ManagedCache findCache(String name) {
@@ -68,4 +470,177 @@ public class CachesServiceImpl implements CachesService {
         }
         return cache;
     }
+
+    /**
+     * Execute the given task on all cluster nodes and wait for the results.
+     *
+     * @param task   the task to execute
+     * @param errors map where the errors of the nodes that failed or did not respond in time are added to
+     * @return the results of all nodes that responded successfully
+     */
+    private <T> Map<String, T> submitToAllNodes(
+            final Callable<T> task,
+            final Map<String, String> errors) {
+
+        final Map<String, CompletionStage<T>> stages = clusterManager.submitToAllNodes(task, CLUSTER_SERVICE_NAME);
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(CLUSTER_TIMEOUT_IN_SECONDS);
+        final Map<String, T> results = new TreeMap<>();
+
+        // the tasks are already running on all nodes, so only wait for the remaining time of the deadline
+        for (Map.Entry<String, CompletionStage<T>> stage : new TreeMap<>(stages).entrySet()) {
+            final String nodeId = stage.getKey();
+            final long remainingMillis = Math.max(0, deadline - System.currentTimeMillis());
+
+            try {
+                results.put(nodeId, stage.getValue().toCompletableFuture().get(remainingMillis, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                errors.put(nodeId, "Interrupted while waiting for the cluster node");
+            } catch (ExecutionException e) {
+                log.warn("Failed to execute task on cluster node '{}'", nodeId, e.getCause());
+                errors.put(nodeId, String.valueOf(e.getCause()));
+            } catch (TimeoutException e) {
+                errors.put(nodeId, String.format(
+                        "Cluster node did not respond within %d seconds", CLUSTER_TIMEOUT_IN_SECONDS));
+            }
+        }
+
+        return results;
+    }
+
+    static ArrayList<CacheBean> getLocalCaches(
+            final CacheManager cacheManager,
+            final CacheHeapSizeMode heapSizeMode) {
+
+        // the time budget applies to all caches together, not to each of them
+        final long deadline = CacheHeapSizeEstimator.getDeadline();
+
+        return cacheManager.getManagedCaches().stream()
+                .map(cache -> toCacheBean(cache, heapSizeMode, deadline))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    static CacheBean toCacheBean(
+            final ManagedCache cache,
+            final CacheHeapSizeMode heapSizeMode) {
+
+        return toCacheBean(cache, heapSizeMode, CacheHeapSizeEstimator.getDeadline());
+    }
+
+    static CacheBean toCacheBean(
+            final ManagedCache cache,
+            final CacheHeapSizeMode heapSizeMode,
+            final long deadline) {
+
+        switch (heapSizeMode) {
+            case ESTIMATED:
+                final CacheHeapSizeEstimator.Estimate estimate = heapSizeEstimator.estimate(cache, deadline);
+                return CacheBeanUtil.toCacheBean(cache, estimate.heapSize, estimate.estimated);
+            case NONE:
+                return CacheBeanUtil.toCacheBean(cache, null, false);
+            default:
+                return CacheBeanUtil.toCacheBean(cache);
+        }
+    }
+
+    static HashMap<String, Integer> applyCacheSizes(
+            final CacheManager cacheManager,
+            final Map<String, Integer> sizes) {
+
+        return applyCacheSizes(cacheManager.getManagedCaches(), sizes);
+    }
+
+    static HashMap<String, Integer> applyCacheSizes(
+            final Collection<ManagedCache> caches,
+            final Map<String, Integer> sizes) {
+
+        final HashMap<String, Integer> appliedSizes = new HashMap<>();
+
+        for (ManagedCache cache : caches) {
+            final Integer size = findCacheSize(sizes, cache.getName());
+
+            if (size == null) {
+                continue;
+            }
+
+            // avoid resizing (and thereby possibly rebuilding) caches that already have the right size
+            if (size.equals(cache.currentMaxEntries()) || cache.updateMaxEntries(size)) {
+                appliedSizes.put(cache.getName(), size);
+            } else {
+                log.debug("Cache '{}' does not support cache resizing", cache.getName());
+            }
+        }
+
+        return appliedSizes;
+    }
+
+    static Integer findCacheSize(
+            final Map<String, Integer> sizes,
+            final String cacheName) {
+
+        if (sizes.containsKey(cacheName)) {
+            return sizes.get(cacheName);
+        }
+
+        // the longest matching prefix is the most specific one
+        String matchingPrefix = null;
+
+        for (String key : sizes.keySet()) {
+            if (key.endsWith(WILDCARD)) {
+                final String prefix = key.substring(0, key.length() - WILDCARD.length());
+
+                if (cacheName.startsWith(prefix) && (matchingPrefix == null || prefix.length() > matchingPrefix.length())) {
+                    matchingPrefix = prefix;
+                }
+            }
+        }
+
+        return matchingPrefix != null ? sizes.get(matchingPrefix + WILDCARD) : null;
+    }
+
+    /**
+     * Task that is executed on every cluster node and returns the node's local cache information.
+     *
+     * The task is serialized and sent to the other nodes, so the cache manager must be looked up on the executing node.
+     */
+    static class LocalCachesCallable implements Callable<ArrayList<CacheBean>>, Serializable {
+
+        private static final long serialVersionUID = 2L;
+
+        private final CacheHeapSizeMode heapSizeMode;
+
+        LocalCachesCallable(
+                final CacheHeapSizeMode heapSizeMode) {
+            this.heapSizeMode = heapSizeMode;
+        }
+
+        @Override
+        public ArrayList<CacheBean> call() {
+            final CacheManager localCacheManager = (CacheManager) ContainerManager.getInstance()
+                    .getContainerContext().getComponent(COMPONENT_CACHE_MANAGER);
+            return getLocalCaches(localCacheManager, heapSizeMode);
+        }
+    }
+
+    /**
+     * Task that is executed on every cluster node and applies the given cache sizes to the node's local caches.
+     */
+    static class ApplyCacheSizesCallable implements Callable<HashMap<String, Integer>>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final HashMap<String, Integer> sizes;
+
+        ApplyCacheSizesCallable(
+                final HashMap<String, Integer> sizes) {
+            this.sizes = sizes;
+        }
+
+        @Override
+        public HashMap<String, Integer> call() {
+            final CacheManager localCacheManager = (CacheManager) ContainerManager.getInstance()
+                    .getContainerContext().getComponent(COMPONENT_CACHE_MANAGER);
+            return applyCacheSizes(localCacheManager, sizes);
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.confluence.event.events.security.LoginEvent;
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the logins per directory the users are found in, to decide on the directory order.
+ *
+ * The counters are kept in memory and per node, they start over with each restart.
+ */
+@Component
+@ExportAsService(LifecycleAware.class)
+public class DirectoryLoginStatistics implements LifecycleAware {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryLoginStatistics.class);
+
+    private final EventPublisher eventPublisher;
+    private final CrowdService crowdService;
+
+    private final Map<Long, LongAdder> logins = new ConcurrentHashMap<>();
+    private final Date since = new Date();
+
+    @Inject
+    public DirectoryLoginStatistics(
+            @ComponentImport final EventPublisher eventPublisher,
+            @ComponentImport final CrowdService crowdService) {
+
+        this.eventPublisher = eventPublisher;
+        this.crowdService = crowdService;
+    }
+
+    @Override
+    public void onStart() {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void onStop() {
+        eventPublisher.unregister(this);
+    }
+
+    @EventListener
+    public void onLogin(
+            final LoginEvent event) {
+
+        try {
+            final User user = crowdService.getUser(event.getUsername());
+
+            if (user != null) {
+                logins.computeIfAbsent(user.getDirectoryId(), directoryId -> new LongAdder()).increment();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Failed to count the login of user {}", event.getUsername(), e);
+        }
+    }
+
+    /**
+     * @return the number of logins per directory id
+     */
+    public Map<Long, Long> getLogins() {
+        return logins.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().sum()));
+    }
+
+    public Date getSince() {
+        return since;
+    }
+
+}
@@ -0,0 +1,132 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.exception.OperationFailedException;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.InternalServerErrorException;
+import de.aservo.confapi.confluence.model.DirectoriesOrderBean;
+import de.aservo.confapi.confluence.model.DirectoryOrderEntryBean;
+import de.aservo.confapi.confluence.service.api.DirectoryOrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component
+@ExportAsService(DirectoryOrderService.class)
+public class DirectoryOrderServiceImpl implements DirectoryOrderService {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryOrderServiceImpl.class);
+
+    private final CrowdDirectoryService crowdDirectoryService;
+
+    private final DirectoryLoginStatistics directoryLoginStatistics;
+
+    @Inject
+    public DirectoryOrderServiceImpl(
+            @ComponentImport final CrowdDirectoryService crowdDirectoryService,
+            final DirectoryLoginStatistics directoryLoginStatistics) {
+
+        this.crowdDirectoryService = crowdDirectoryService;
+        this.directoryLoginStatistics = directoryLoginStatistics;
+    }
+
+    @Override
+    public DirectoriesOrderBean getDirectoriesOrder() {
+        final Map<Long, Long> logins = directoryLoginStatistics.getLogins();
+        final long totalLogins = logins.values().stream().mapToLong(Long::longValue).sum();
+
+        final List<DirectoryOrderEntryBean> entries = crowdDirectoryService.findAllDirectories().stream()
+                .map(directory -> {
+                    final long directoryLogins = logins.getOrDefault(directory.getId(), 0L);
+                    return new DirectoryOrderEntryBean(directory.getId(), directory.getName(), directory.isActive(),
+                            directoryLogins, totalLogins > 0 ? directoryLogins * 100.0 / totalLogins : null);
+                })
+                .collect(Collectors.toList());
+
+        final DirectoriesOrderBean directoriesOrderBean = new DirectoriesOrderBean();
+        directoriesOrderBean.setDirectories(entries);
+        directoriesOrderBean.setStatisticsSince(directoryLoginStatistics.getSince());
+        return directoriesOrderBean;
+    }
+
+    @Override
+    public synchronized DirectoriesOrderBean setDirectoriesOrder(
+            final DirectoriesOrderBean directoriesOrderBean) {
+
+        final List<Long> currentOrder = crowdDirectoryService.findAllDirectories().stream()
+                .map(Directory::getId)
+                .collect(Collectors.toList());
+
+        if (directoriesOrderBean.getDirectories() == null) {
+            throw new BadRequestException("The directories must be given in the new order");
+        }
+
+        final List<Long> order = directoriesOrderBean.getDirectories().stream()
+                .map(DirectoryOrderEntryBean::getId)
+                .collect(Collectors.toList());
+
+        if (order.size() != currentOrder.size() || !new HashSet<>(order).equals(new HashSet<>(currentOrder))) {
+            throw new BadRequestException(String.format(
+                    "The new order must contain each of the directories %s exactly once", currentOrder));
+        }
+
+        if (!order.equals(currentOrder)) {
+            try {
+                applyOrder(order, currentOrder);
+            } catch (OperationFailedException | RuntimeException e) {
+                log.warn("Failed to set the directory order {}, restoring the order {}", order, currentOrder, e);
+                restoreOrder(currentOrder);
+                throw new InternalServerErrorException(String.format(
+                        "Failed to set the directory order, the previous order has been restored: %s", e.getMessage()));
+            }
+
+            log.info("Changed the directory order from {} to {}", currentOrder, order);
+        }
+
+        return getDirectoriesOrder();
+    }
+
+    /**
+     * Moves the directories one after the other to their new positions, skipping those already in place.
+     */
+    private void applyOrder(
+            final List<Long> order,
+            final List<Long> currentOrder) throws OperationFailedException {
+
+        final List<Long> positions = new ArrayList<>(currentOrder);
+
+        for (int position = 0; position < order.size(); position++) {
+            final Long directoryId = order.get(position);
+
+            if (!directoryId.equals(positions.get(position))) {
+                crowdDirectoryService.setDirectoryPosition(directoryId, position);
+                positions.remove(directoryId);
+                positions.add(position, directoryId);
+            }
+        }
+    }
+
+    private void restoreOrder(
+            final List<Long> order) {
+
+        try {
+            final List<Long> currentOrder = crowdDirectoryService.findAllDirectories().stream()
+                    .map(Directory::getId)
+                    .collect(Collectors.toList());
+            applyOrder(order, currentOrder);
+        } catch (OperationFailedException | RuntimeException e) {
+            log.error("Failed to restore the directory order {}", order, e);
+        }
+    }
+
+}
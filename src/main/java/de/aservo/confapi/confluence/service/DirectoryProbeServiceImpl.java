@@ -0,0 +1,226 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.crowd.exception.FailedAuthenticationException;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.InternalServerErrorException;
+import de.aservo.confapi.confluence.model.DirectoriesProbeBean;
+import de.aservo.confapi.confluence.model.DirectoriesProbeRequestBean;
+import de.aservo.confapi.confluence.model.DirectoryProbeResultBean;
+import de.aservo.confapi.confluence.service.api.DirectoryProbeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Component
+@ExportAsService(DirectoryProbeService.class)
+public class DirectoryProbeServiceImpl implements DirectoryProbeService {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryProbeServiceImpl.class);
+
+    public static final int DEFAULT_PROBES = 5;
+    public static final int MAX_PROBES = 50;
+    public static final int DEFAULT_TIMEOUT_IN_SECONDS = 60;
+    public static final int MAX_TIMEOUT_IN_SECONDS = 300;
+    public static final int MAX_PARALLELISM = 8;
+
+    private final CrowdDirectoryService crowdDirectoryService;
+
+    private final CrowdService crowdService;
+
+    @Inject
+    public DirectoryProbeServiceImpl(
+            @ComponentImport final CrowdDirectoryService crowdDirectoryService,
+            @ComponentImport final CrowdService crowdService) {
+
+        this.crowdDirectoryService = crowdDirectoryService;
+        this.crowdService = crowdService;
+    }
+
+    @Override
+    public DirectoriesProbeBean probeDirectories(
+            final DirectoriesProbeRequestBean probeRequestBean) {
+
+        final int probes = probeRequestBean.getProbes() != null ? probeRequestBean.getProbes() : DEFAULT_PROBES;
+        final int timeoutInSeconds = probeRequestBean.getTimeoutInSeconds() != null ? probeRequestBean.getTimeoutInSeconds() : DEFAULT_TIMEOUT_IN_SECONDS;
+
+        if (probes <= 0 || probes > MAX_PROBES) {
+            throw new BadRequestException(String.format("The number of probes must be between 1 and %d", MAX_PROBES));
+        }
+
+        if (timeoutInSeconds <= 0 || timeoutInSeconds > MAX_TIMEOUT_IN_SECONDS) {
+            throw new BadRequestException(String.format("The timeout must be between 1 and %d seconds", MAX_TIMEOUT_IN_SECONDS));
+        }
+
+        final long start = System.currentTimeMillis();
+
+        // only active directories take part in the authentication
+        final List<Directory> directories = crowdDirectoryService.findAllDirectories().stream()
+                .filter(Directory::isActive)
+                .collect(Collectors.toList());
+
+        final List<Probe> directoryProbes = directories.stream()
+                .map(directory -> new Probe(directory.getId(), directory.getName(), () -> {
+                    crowdDirectoryService.testConnection(directory);
+                    return directory.getId();
+                }))
+                .collect(Collectors.toList());
+
+        final Probe authenticationProbe = probeRequestBean.getUsername() != null
+                ? new Probe(null, probeRequestBean.getUsername(), () -> authenticate(probeRequestBean))
+                : null;
+
+        final List<Probe> allProbes = new ArrayList<>(directoryProbes);
+        if (authenticationProbe != null) {
+            allProbes.add(authenticationProbe);
+        }
+
+        final boolean timedOut = runProbes(allProbes, probes, timeoutInSeconds);
+
+        final DirectoriesProbeBean directoriesProbeBean = new DirectoriesProbeBean();
+        directoriesProbeBean.setDirectories(directoryProbes.stream().map(Probe::toResultBean).collect(Collectors.toList()));
+        directoriesProbeBean.setAuthentication(authenticationProbe != null ? authenticationProbe.toResultBean() : null);
+        directoriesProbeBean.setTimedOut(timedOut);
+        directoriesProbeBean.setElapsedTimeInMillis(System.currentTimeMillis() - start);
+        return directoriesProbeBean;
+    }
+
+    /**
+     * Runs the probes concurrently until they are done or the timeout is reached.
+     *
+     * @return whether the timeout has been reached
+     */
+    private boolean runProbes(
+            final List<Probe> probes,
+            final int count,
+            final int timeoutInSeconds) {
+
+        if (probes.isEmpty()) {
+            return false;
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(probes.size(), MAX_PARALLELISM), runnable -> {
+            final Thread thread = new Thread(runnable, "confapi-directory-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            final List<Future<?>> futures = probes.stream()
+                    .map(probe -> executorService.submit(() -> probe.run(count)))
+                    .collect(Collectors.toList());
+
+            executorService.shutdown();
+
+            if (!executorService.awaitTermination(timeoutInSeconds, TimeUnit.SECONDS)) {
+                futures.forEach(future -> future.cancel(true));
+                log.warn("Probing the directories timed out after {} seconds", timeoutInSeconds);
+                return true;
+            }
+
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException("Interrupted while probing the directories");
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Long authenticate(
+            final DirectoriesProbeRequestBean probeRequestBean) throws FailedAuthenticationException {
+
+        final User user = crowdService.authenticate(probeRequestBean.getUsername(), probeRequestBean.getPassword());
+        return user.getDirectoryId();
+    }
+
+    /**
+     * The probes of one directory or of the authentication, the results are kept even if the probes are cancelled.
+     */
+    static class Probe {
+
+        private final String name;
+        private final Callable<Long> call;
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile Long directoryId;
+        private volatile int errors;
+        private volatile String lastError;
+
+        Probe(
+                final Long directoryId,
+                final String name,
+                final Callable<Long> call) {
+
+            this.directoryId = directoryId;
+            this.name = name;
+            this.call = call;
+        }
+
+        void run(
+                final int count) {
+
+            for (int i = 0; i < count && !Thread.currentThread().isInterrupted(); i++) {
+                final long start = System.nanoTime();
+
+                try {
+                    directoryId = call.call();
+                    latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } catch (InterruptedException e) {
+                    // a cancelled probe is not an error of the directory
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        // the call failed because the probe has been cancelled, e.g. by the timeout
+                        break;
+                    }
+
+                    errors++;
+                    lastError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                }
+            }
+        }
+
+        DirectoryProbeResultBean toResultBean() {
+            final List<Long> sortedLatencies;
+            synchronized (latencies) {
+                sortedLatencies = latencies.stream().sorted().collect(Collectors.toList());
+            }
+
+            final int probes = sortedLatencies.size() + errors;
+
+            final DirectoryProbeResultBean resultBean = new DirectoryProbeResultBean();
+            resultBean.setDirectoryId(directoryId);
+            resultBean.setName(name);
+            resultBean.setProbes(probes);
+            resultBean.setErrors(errors);
+            resultBean.setErrorRate(probes > 0 ? (double) errors / probes : 0);
+            resultBean.setLastError(lastError);
+
+            if (!sortedLatencies.isEmpty()) {
+                resultBean.setMinLatencyInMillis(sortedLatencies.get(0));
+                resultBean.setAvgLatencyInMillis(Math.round(sortedLatencies.stream().mapToLong(Long::longValue).average().orElse(0)));
+                resultBean.setP95LatencyInMillis(DirectorySyncHistory.percentile(sortedLatencies, 95));
+            }
+
+            return resultBean;
+        }
+    }
+
+}
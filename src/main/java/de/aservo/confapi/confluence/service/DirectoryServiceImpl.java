@@ -8,13 +8,18 @@ import com.atlassian.crowd.exception.DirectoryCurrentlySynchronisingException;
 import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
 import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
 import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.InternalServerErrorException;
 import de.aservo.confapi.commons.exception.NotFoundException;
 import de.aservo.confapi.commons.exception.ServiceUnavailableException;
 import de.aservo.confapi.commons.model.AbstractDirectoryBean;
 import de.aservo.confapi.commons.model.DirectoriesBean;
 import de.aservo.confapi.commons.model.DirectoryCrowdBean;
 import de.aservo.confapi.commons.service.api.DirectoriesService;
+import de.aservo.confapi.confluence.model.DirectoriesApplyBean;
+import de.aservo.confapi.confluence.model.DirectoryApplyResultBean;
+import de.aservo.confapi.confluence.model.DirectoryLdapConnectorBean;
 import de.aservo.confapi.confluence.model.util.DirectoryBeanUtil;
+import de.aservo.confapi.confluence.service.api.ConfluenceDirectoriesService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -22,20 +27,34 @@ import org.springframework.stereotype.Component;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
 
 @Component
-@ExportAsService(DirectoriesService.class)
-public class DirectoryServiceImpl implements DirectoriesService {
+@ExportAsService({DirectoriesService.class, ConfluenceDirectoriesService.class})
+public class DirectoryServiceImpl implements ConfluenceDirectoriesService {
 
     private static final Logger log = LoggerFactory.getLogger(DirectoryServiceImpl.class);
     public static final int RETRY_AFTER_IN_SECONDS = 5;
+    public static final int CONNECTION_TEST_TIMEOUT_IN_SECONDS = 30;
+    public static final int CONNECTION_TEST_MAX_PARALLELISM = 8;
+    public static final long MAX_CONNECTION_TIMEOUT_IN_MILLIS = 5 * 60 * 1000;
+    public static final int MAX_CONNECTIONS = 1000;
+    public static final int MAX_LDAP_PAGE_SIZE = 10000;
 
     private final CrowdDirectoryService crowdDirectoryService;
 
@@ -63,24 +82,66 @@ public class DirectoryServiceImpl implements DirectoriesService {
 
     @Override
     public DirectoriesBean setDirectories(DirectoriesBean directoriesBean, boolean testConnection) {
+        applyDirectories(directoriesBean, testConnection);
+        return getDirectories();
+    }
+
+    @Override
+    public DirectoriesApplyBean applyDirectories(DirectoriesBean directoriesBean, boolean testConnection) {
+        final long start = System.currentTimeMillis();
 
-        final Map<String, Directory> existingDirectoriesByName = crowdDirectoryService.findAllDirectories().stream()
-                .collect(Collectors.toMap(Directory::getName, Function.identity()));
+        // one snapshot for matching all directories of the request, instead of reading them per directory
+        final DirectorySnapshot snapshot = DirectorySnapshot.of(crowdDirectoryService);
 
+        // validate all directories before writing any of them
+        final Map<DirectoryCrowdBean, Directory> directories = new LinkedHashMap<>();
         directoriesBean.getDirectories().forEach(directoryRequestBean -> {
             if (directoryRequestBean instanceof DirectoryCrowdBean) {
-                DirectoryCrowdBean crowdRequestBean = (DirectoryCrowdBean)directoryRequestBean;
-
-                if (existingDirectoriesByName.containsKey(crowdRequestBean.getName())) {
-                    setDirectory(existingDirectoriesByName.get(crowdRequestBean.getName()).getId(), crowdRequestBean, testConnection);
-                } else {
-                    addDirectory(crowdRequestBean, testConnection);
-                }
+                DirectoryCrowdBean crowdRequestBean = (DirectoryCrowdBean) directoryRequestBean;
+                validateServer(crowdRequestBean);
+                directories.put(crowdRequestBean, DirectoryBeanUtil.toDirectory(crowdRequestBean));
             } else {
                 throw new BadRequestException(format("Updating directory type '%s' is not supported (yet)", directoryRequestBean.getClass()));
             }
         });
-        return getDirectories();
+
+        final Map<String, Long> connectionTestTimes = testConnection
+                ? testConnections(new ArrayList<>(directories.values()))
+                : new HashMap<>();
+
+        final List<DirectoryApplyResultBean> results = new ArrayList<>();
+        directories.keySet().forEach(crowdRequestBean -> {
+            final long applyStart = System.currentTimeMillis();
+            final Directory existingDirectory = snapshot.getByName(crowdRequestBean.getName());
+            final AbstractDirectoryBean appliedDirectoryBean;
+            final DirectoryApplyResultBean result = new DirectoryApplyResultBean();
+
+            // the connections have already been tested above
+            if (existingDirectory != null) {
+                final List<String> changedFields = new ArrayList<>();
+                appliedDirectoryBean = DirectoryBeanUtil.toDirectoryBean(
+                        updateExistingDirectory(existingDirectory, directories.get(crowdRequestBean),
+                                DirectoryBeanUtil.CROWD_DIRECTORY_ATTRIBUTES, changedFields));
+                result.setStatus(changedFields.isEmpty()
+                        ? DirectoryApplyResultBean.Status.UNCHANGED
+                        : DirectoryApplyResultBean.Status.UPDATED);
+                result.setChangedFields(changedFields);
+            } else {
+                appliedDirectoryBean = addDirectory(crowdRequestBean, false);
+                result.setStatus(DirectoryApplyResultBean.Status.CREATED);
+            }
+
+            result.setId(appliedDirectoryBean.getId());
+            result.setName(appliedDirectoryBean.getName());
+            result.setConnectionTestTimeInMillis(connectionTestTimes.get(crowdRequestBean.getName()));
+            result.setApplyTimeInMillis(System.currentTimeMillis() - applyStart);
+            results.add(result);
+        });
+
+        final DirectoriesApplyBean directoriesApplyBean = new DirectoriesApplyBean();
+        directoriesApplyBean.setResults(results);
+        directoriesApplyBean.setElapsedTimeInMillis(System.currentTimeMillis() - start);
+        return directoriesApplyBean;
     }
 
     @Override
@@ -92,19 +153,120 @@ public class DirectoryServiceImpl implements DirectoriesService {
         }
     }
 
+    @Override
+    public DirectoryLdapConnectorBean getLdapDirectory(long id) {
+        return DirectoryBeanUtil.toDirectoryLdapConnectorBean(findLdapDirectory(id));
+    }
+
+    @Override
+    public DirectoryLdapConnectorBean setLdapDirectory(long id, @NotNull DirectoryLdapConnectorBean ldapBean, boolean testConnection) {
+        Directory existingDirectory = findLdapDirectory(id);
+        validateLdap(ldapBean, existingDirectory);
+
+        // settings that are not given are kept
+        DirectoryLdapConnectorBean existingBean = DirectoryBeanUtil.toDirectoryLdapConnectorBean(existingDirectory);
+        ldapBean.setName(ldapBean.getName() != null ? ldapBean.getName() : existingBean.getName());
+        ldapBean.setDescription(ldapBean.getDescription() != null ? ldapBean.getDescription() : existingBean.getDescription());
+        ldapBean.setActive(ldapBean.getActive() != null ? ldapBean.getActive() : existingBean.getActive());
+        if (ldapBean.getType() != null && !existingBean.getType().equals(ldapBean.getType())) {
+            throw new BadRequestException(format("The LDAP type of directory '%s' cannot be changed", existingDirectory.getName()));
+        }
+
+        // the given attributes are merged into the existing ones, so e.g. the password does not have to be repeated
+        Directory requestedDirectory = DirectoryBeanUtil.toDirectory(ldapBean);
+        Map<String, String> attributes = new HashMap<>(existingDirectory.getAttributes());
+        attributes.putAll(requestedDirectory.getAttributes());
+        Directory directory = ImmutableDirectory.newBuilder(requestedDirectory).setAttributes(attributes).toDirectory();
+
+        if (testConnection) {
+            log.debug("testing user directory connection for {}", directory.getName());
+            crowdDirectoryService.testConnection(ImmutableDirectory.newBuilder(existingDirectory).setAttributes(attributes).toDirectory());
+        }
+
+        return DirectoryBeanUtil.toDirectoryLdapConnectorBean(
+                updateExistingDirectory(existingDirectory, directory, attributes.keySet(), new ArrayList<>()));
+    }
+
+    @Override
+    public DirectoryLdapConnectorBean addLdapDirectory(@NotNull DirectoryLdapConnectorBean ldapBean, boolean testConnection) {
+        validateLdap(ldapBean, null);
+
+        // the given schema attributes and settings take precedence over the default schema of the LDAP type
+        Directory requestedDirectory = DirectoryBeanUtil.toDirectory(ldapBean);
+        Map<String, String> attributes = DirectoryBeanUtil.getDefaultLdapSchema(ldapBean.getType());
+        attributes.putAll(requestedDirectory.getAttributes());
+        Directory directory = ImmutableDirectory.newBuilder(requestedDirectory).setAttributes(attributes).toDirectory();
+
+        if (testConnection) {
+            log.debug("testing user directory connection for {}", directory.getName());
+            crowdDirectoryService.testConnection(directory);
+        }
+
+        Directory addedDirectory = crowdDirectoryService.addDirectory(directory);
+        return DirectoryBeanUtil.toDirectoryLdapConnectorBean(addedDirectory);
+    }
+
     private AbstractDirectoryBean setDirectoryCrowd(long id, @NotNull DirectoryCrowdBean crowdBean, boolean testConnection) {
         Directory existingDirectory = findDirectory(id);
         Directory directory = validateAndCreateDirectoryConfig(crowdBean, testConnection);
 
+        return DirectoryBeanUtil.toDirectoryBean(updateExistingDirectory(
+                existingDirectory, directory, DirectoryBeanUtil.CROWD_DIRECTORY_ATTRIBUTES, new ArrayList<>()));
+    }
+
+    /**
+     * Updates the existing directory with the given configuration, but only if anything has changed.
+     *
+     * Updating a directory can reset its synchronisation state, so updates without changes are skipped.
+     * The mapped attributes of the existing directory are replaced by the given ones, so a mapped attribute that
+     * is not given is removed. Attributes that are not mapped, e.g. the ones set in the UI or by Crowd itself,
+     * are kept and are not compared, so they do not cause an update.
+     *
+     * @param existingDirectory the existing directory
+     * @param directory         the configuration to apply
+     * @param mappedAttributes  the attribute keys the configuration maps
+     * @param changedFields     collects the names of the changed fields and attributes
+     * @return the updated directory or the existing directory if nothing has changed
+     */
+    private Directory updateExistingDirectory(Directory existingDirectory, Directory directory, Set<String> mappedAttributes,
+            List<String> changedFields) {
+        if (!Objects.equals(existingDirectory.getName(), directory.getName())) {
+            changedFields.add("name");
+        }
+        if (!Objects.equals(existingDirectory.getDescription(), directory.getDescription())) {
+            changedFields.add("description");
+        }
+        if (existingDirectory.isActive() != directory.isActive()) {
+            changedFields.add("active");
+        }
+
+        final Map<String, String> existingAttributes = existingDirectory.getAttributes();
+        final Map<String, String> attributes = new HashMap<>(existingAttributes);
+        attributes.keySet().removeAll(mappedAttributes);
+        attributes.putAll(directory.getAttributes());
+
+        // added, changed and removed attributes are all reported as changed
+        final Set<String> attributeKeys = new TreeSet<>(mappedAttributes);
+        attributeKeys.addAll(directory.getAttributes().keySet());
+        attributeKeys.stream()
+                .filter(key -> !Objects.equals(existingAttributes.get(key), attributes.get(key)))
+                .forEach(changedFields::add);
+
+        if (changedFields.isEmpty()) {
+            log.debug("user directory {} is unchanged, skipping the update", existingDirectory.getName());
+            return existingDirectory;
+        }
+
+        log.debug("updating user directory {}, changed fields: {}", existingDirectory.getName(), changedFields);
+
         ImmutableDirectory.Builder directoryBuilder = ImmutableDirectory.newBuilder(existingDirectory);
-        directoryBuilder.setAttributes(directory.getAttributes());
+        directoryBuilder.setAttributes(attributes);
         directoryBuilder.setDescription(directory.getDescription());
         directoryBuilder.setName(directory.getName());
         directoryBuilder.setActive(directory.isActive());
         Directory updatedDirectory = directoryBuilder.toDirectory();
 
-        Directory responseDirectory = crowdDirectoryService.updateDirectory(updatedDirectory);
-        return DirectoryBeanUtil.toDirectoryBean(responseDirectory);
+        return crowdDirectoryService.updateDirectory(updatedDirectory);
     }
 
     @Override
@@ -115,7 +277,7 @@ public class DirectoryServiceImpl implements DirectoriesService {
             Directory addedDirectory = crowdDirectoryService.addDirectory(directory);
             return DirectoryBeanUtil.toDirectoryBean(addedDirectory);
         } else {
-            throw new BadRequestException(format("Adding directory type '%s' is not supported (yet)", abstractDirectoryBean.getClass()));
+            throw new BadRequestException(format("Adding directory type '%s' is not supported (yet), LDAP directories are added with the LDAP directory endpoint", abstractDirectoryBean.getClass()));
         }
     }
 
@@ -124,11 +286,12 @@ public class DirectoryServiceImpl implements DirectoriesService {
         if (!force) {
             throw new BadRequestException("'force = true' must be supplied to delete all entries");
         } else {
-            for (Directory directory : crowdDirectoryService.findAllDirectories()) {
+            // the directories of the snapshot exist, so they are not looked up again one by one
+            for (Directory directory : DirectorySnapshot.of(crowdDirectoryService).getAll()) {
 
                 //do not remove the internal directory
                 if (!DirectoryType.INTERNAL.equals(directory.getType())) {
-                    deleteDirectory(directory.getId());
+                    removeDirectory(directory.getId());
                 }
             }
         }
@@ -140,7 +303,10 @@ public class DirectoryServiceImpl implements DirectoriesService {
         //ensure the directory exists
         findDirectory(id);
 
-        //delete the directory
+        removeDirectory(id);
+    }
+
+    private void removeDirectory(long id) {
         try {
             crowdDirectoryService.removeDirectory(id);
         } catch (DirectoryCurrentlySynchronisingException e) {
@@ -156,7 +322,82 @@ public class DirectoryServiceImpl implements DirectoriesService {
         return directory;
     }
 
+    private Directory findLdapDirectory(long id) {
+        Directory directory = findDirectory(id);
+        if (!DirectoryType.CONNECTOR.equals(directory.getType())) {
+            throw new BadRequestException(format("Directory '%s' is not an LDAP directory", directory.getName()));
+        }
+        return directory;
+    }
+
+    /**
+     * Tests the connections of the given directories concurrently.
+     *
+     * Each directory gets its own timeout, so a single unreachable server only delays the result by that timeout
+     * instead of adding up with the others.
+     *
+     * @return the duration of the connection test per directory name
+     */
+    private Map<String, Long> testConnections(List<Directory> directories) {
+        final Map<String, Long> connectionTestTimes = new HashMap<>();
+
+        if (directories.isEmpty()) {
+            return connectionTestTimes;
+        }
+
+        final int parallelism = Math.min(directories.size(), CONNECTION_TEST_MAX_PARALLELISM);
+        // daemon threads, so that a hanging connection test cannot keep the JVM from shutting down
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism, runnable -> {
+            final Thread thread = new Thread(runnable, "confapi-directory-connection-test");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            final Map<Directory, Future<Long>> futures = new LinkedHashMap<>();
+            for (Directory directory : directories) {
+                futures.put(directory, executorService.submit(() -> {
+                    final long start = System.currentTimeMillis();
+                    log.debug("testing user directory connection for {}", directory.getName());
+                    crowdDirectoryService.testConnection(directory);
+                    return System.currentTimeMillis() - start;
+                }));
+            }
+
+            // tests that are queued behind others start later, so the deadline grows with the number of rounds
+            final int rounds = (directories.size() + parallelism - 1) / parallelism;
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos((long) CONNECTION_TEST_TIMEOUT_IN_SECONDS * rounds);
+            final List<String> errors = new ArrayList<>();
+
+            for (Map.Entry<Directory, Future<Long>> entry : futures.entrySet()) {
+                final String directoryName = entry.getKey().getName();
+
+                try {
+                    connectionTestTimes.put(directoryName, entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    entry.getValue().cancel(true);
+                    errors.add(format("Connection test of directory '%s' timed out after %d seconds", directoryName, CONNECTION_TEST_TIMEOUT_IN_SECONDS));
+                } catch (ExecutionException e) {
+                    errors.add(format("Connection test of directory '%s' failed: %s", directoryName, e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalServerErrorException("Interrupted while testing the directory connections");
+                }
+            }
+
+            if (!errors.isEmpty()) {
+                throw new BadRequestException(String.join(", ", errors));
+            }
+
+            log.debug("tested user directory connections, durations in ms: {}", connectionTestTimes);
+            return connectionTestTimes;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     private Directory validateAndCreateDirectoryConfig(DirectoryCrowdBean crowdBean, boolean testConnection) {
+        validateServer(crowdBean);
         Directory directory = DirectoryBeanUtil.toDirectory(crowdBean);
         String directoryName = crowdBean.getName();
         if (testConnection) {
@@ -166,4 +407,58 @@ public class DirectoryServiceImpl implements DirectoriesService {
         return directory;
     }
 
+    /**
+     * Validates the HTTP connection settings of the Crowd server, Crowd would silently fall back to its defaults.
+     */
+    private static void validateServer(DirectoryCrowdBean crowdBean) {
+        if (crowdBean.getServer() == null) {
+            return;
+        }
+
+        Long connectionTimeoutInMillis = crowdBean.getServer().getConnectionTimeoutInMillis();
+        if (connectionTimeoutInMillis != null && (connectionTimeoutInMillis <= 0 || connectionTimeoutInMillis > MAX_CONNECTION_TIMEOUT_IN_MILLIS)) {
+            throw new BadRequestException(format("The connection timeout of directory '%s' must be between 1 and %d ms",
+                    crowdBean.getName(), MAX_CONNECTION_TIMEOUT_IN_MILLIS));
+        }
+
+        Integer maxConnections = crowdBean.getServer().getMaxConnections();
+        if (maxConnections != null && (maxConnections <= 0 || maxConnections > MAX_CONNECTIONS)) {
+            throw new BadRequestException(format("The maximum connections of directory '%s' must be between 1 and %d",
+                    crowdBean.getName(), MAX_CONNECTIONS));
+        }
+    }
+
+    /**
+     * Validates the LDAP settings, the name and URL are only required for new directories.
+     */
+    private static void validateLdap(DirectoryLdapConnectorBean ldapBean, Directory existingDirectory) {
+        if (existingDirectory == null && (ldapBean.getName() == null || ldapBean.getUrl() == null)) {
+            throw new BadRequestException("The name and the URL of an LDAP directory are required");
+        }
+        if (ldapBean.getPageSize() != null && (ldapBean.getPageSize() <= 0 || ldapBean.getPageSize() > MAX_LDAP_PAGE_SIZE)) {
+            throw new BadRequestException(format("The page size must be between 1 and %d", MAX_LDAP_PAGE_SIZE));
+        }
+        if (ldapBean.getPoolInitialSize() != null && ldapBean.getPoolInitialSize() < 0) {
+            throw new BadRequestException("The initial pool size must not be negative");
+        }
+        if (ldapBean.getPoolMaxSize() != null && ldapBean.getPoolMaxSize() < 0) {
+            throw new BadRequestException("The maximum pool size must not be negative, 0 means no limit");
+        }
+        if (ldapBean.getPoolInitialSize() != null && ldapBean.getPoolMaxSize() != null && ldapBean.getPoolMaxSize() > 0
+                && ldapBean.getPoolInitialSize() > ldapBean.getPoolMaxSize()) {
+            throw new BadRequestException("The initial pool size must not exceed the maximum pool size");
+        }
+        validatePositive(ldapBean.getPoolTimeoutInSeconds(), "pool timeout");
+        validatePositive(ldapBean.getConnectionTimeoutInMillis(), "connection timeout");
+        validatePositive(ldapBean.getReadTimeoutInMillis(), "read timeout");
+        validatePositive(ldapBean.getSearchTimeoutInMillis(), "search timeout");
+        validatePositive(ldapBean.getSyncIntervalInSeconds(), "sync interval");
+    }
+
+    private static void validatePositive(Number value, String name) {
+        if (value != null && value.longValue() <= 0) {
+            throw new BadRequestException(format("The %s must be a positive number", name));
+        }
+    }
+
 }
@@ -0,0 +1,55 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The directories read once per bulk request and indexed by id and by name.
+ *
+ * The snapshot is not updated by writes, it is read again once all writes of the request are done.
+ */
+class DirectorySnapshot {
+
+    private final Map<Long, Directory> directoriesById = new LinkedHashMap<>();
+    private final Map<String, Directory> directoriesByName = new LinkedHashMap<>();
+
+    private DirectorySnapshot(
+            final List<Directory> directories) {
+
+        for (Directory directory : directories) {
+            directoriesById.put(directory.getId(), directory);
+            directoriesByName.putIfAbsent(directory.getName(), directory);
+        }
+    }
+
+    static DirectorySnapshot of(
+            final CrowdDirectoryService crowdDirectoryService) {
+
+        return new DirectorySnapshot(crowdDirectoryService.findAllDirectories());
+    }
+
+    /**
+     * @return the directories in their lookup order
+     */
+    List<Directory> getAll() {
+        return new ArrayList<>(directoriesById.values());
+    }
+
+    Directory getById(
+            final long id) {
+
+        return directoriesById.get(id);
+    }
+
+    Directory getByName(
+            final String name) {
+
+        return directoriesByName.get(name);
+    }
+
+}
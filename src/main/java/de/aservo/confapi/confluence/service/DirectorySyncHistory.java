@@ -0,0 +1,221 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationInformation;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationRoundInformation;
+import com.atlassian.crowd.event.directory.RemoteDirectorySynchronisedEvent;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import com.google.gson.Gson;
+import de.aservo.confapi.confluence.model.DirectorySyncHistoryBean;
+import de.aservo.confapi.confluence.model.DirectorySyncHistoryEntryBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded history of the directory synchronisations, fed from the directory synchronised events.
+ *
+ * The history is stored per directory in the global plugin settings, so it survives restarts and is shared by all
+ * cluster nodes. Syncs of one directory do not overlap, so the history of a directory is only written by one node
+ * at a time.
+ */
+@Component
+@ExportAsService(LifecycleAware.class)
+public class DirectorySyncHistory implements LifecycleAware {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectorySyncHistory.class);
+
+    public static final String SETTINGS_KEY_PREFIX = "de.aservo.confapi.confluence.directories.sync.history.";
+    public static final int MAX_ENTRIES = 100;
+    public static final int MIN_ENTRIES_FOR_THRESHOLD = 5;
+    public static final double DEGRADED_FACTOR = 3.0;
+
+    private static final Gson GSON = new Gson();
+
+    private final EventPublisher eventPublisher;
+    private final PluginSettingsFactory pluginSettingsFactory;
+    private final CrowdDirectoryService crowdDirectoryService;
+
+    @Inject
+    public DirectorySyncHistory(
+            @ComponentImport final EventPublisher eventPublisher,
+            @ComponentImport final PluginSettingsFactory pluginSettingsFactory,
+            @ComponentImport final CrowdDirectoryService crowdDirectoryService) {
+
+        this.eventPublisher = eventPublisher;
+        this.pluginSettingsFactory = pluginSettingsFactory;
+        this.crowdDirectoryService = crowdDirectoryService;
+    }
+
+    @Override
+    public void onStart() {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void onStop() {
+        eventPublisher.unregister(this);
+    }
+
+    @EventListener
+    public void onDirectorySynchronised(
+            final RemoteDirectorySynchronisedEvent event) {
+
+        try {
+            record(event.getRemoteDirectory().getDirectoryId(), null);
+        } catch (RuntimeException e) {
+            log.warn("Failed to record the directory synchronisation", e);
+        }
+    }
+
+    /**
+     * Records the last finished sync round of the given directory.
+     *
+     * A round that is still active is not recorded, because its duration and status are not final yet. The event
+     * may be published before the round is finished, such a round is recorded when the history is read or with the
+     * next sync. A round that has already been recorded is only updated, so a sync that is recorded both from the
+     * event and from the sync task is only recorded once.
+     *
+     * @param directoryId the directory id
+     * @param users       the number of users after the sync, may be null
+     */
+    public synchronized void record(
+            final long directoryId,
+            final Long users) {
+
+        final DirectorySynchronisationInformation information = crowdDirectoryService.getDirectorySynchronisationInformation(directoryId);
+
+        if (information == null) {
+            return;
+        }
+
+        final DirectorySynchronisationRoundInformation round = information.getLastRound();
+
+        if (round == null) {
+            return;
+        }
+
+        final DirectorySyncHistoryEntryBean entry = new DirectorySyncHistoryEntryBean(
+                round.getStartTime(), round.getDurationMs(), users, round.getStatusKey());
+
+        final List<DirectorySyncHistoryEntryBean> entries = getEntries(directoryId);
+        final DirectorySyncHistoryEntryBean lastEntry = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+
+        if (lastEntry != null && lastEntry.getStartTimeInMillis() == entry.getStartTimeInMillis()) {
+            if (entry.getUsers() == null) {
+                entry.setUsers(lastEntry.getUsers());
+            }
+
+            // the round is already recorded as it is
+            if (entry.equals(lastEntry)) {
+                return;
+            }
+
+            entries.set(entries.size() - 1, entry);
+        } else {
+            entries.add(entry);
+        }
+
+        final PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+        pluginSettings.put(SETTINGS_KEY_PREFIX + directoryId, entries.subList(Math.max(0, entries.size() - MAX_ENTRIES), entries.size()).stream()
+                .map(GSON::toJson)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the history of the given directory with the duration statistics.
+     *
+     * @param directoryId       the directory id
+     * @param thresholdInMillis the duration above which a sync is considered degraded,
+     *                          if null a multiple of the median duration once enough syncs are recorded
+     * @return the history
+     */
+    public DirectorySyncHistoryBean getHistory(
+            final long directoryId,
+            final Long thresholdInMillis) {
+
+        // picks up a round that was still active when its event was published
+        record(directoryId, null);
+
+        final List<DirectorySyncHistoryEntryBean> entries = getEntries(directoryId);
+        final List<Long> durations = entries.stream()
+                .map(DirectorySyncHistoryEntryBean::getDurationInMillis)
+                .sorted()
+                .collect(Collectors.toList());
+
+        final DirectorySyncHistoryBean historyBean = new DirectorySyncHistoryBean();
+        historyBean.setDirectoryId(directoryId);
+        historyBean.setEntries(entries);
+
+        if (entries.isEmpty()) {
+            historyBean.setThresholdInMillis(thresholdInMillis);
+            return historyBean;
+        }
+
+        final long p50 = percentile(durations, 50);
+        historyBean.setP50DurationInMillis(p50);
+        historyBean.setP95DurationInMillis(percentile(durations, 95));
+        historyBean.setTrendInPercent(trend(entries));
+
+        final Long threshold = thresholdInMillis != null ? thresholdInMillis
+                : entries.size() >= MIN_ENTRIES_FOR_THRESHOLD ? (long) (p50 * DEGRADED_FACTOR) : null;
+        historyBean.setThresholdInMillis(threshold);
+        historyBean.setDegraded(threshold != null && entries.get(entries.size() - 1).getDurationInMillis() > threshold);
+
+        return historyBean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DirectorySyncHistoryEntryBean> getEntries(
+            final long directoryId) {
+
+        final Object entries = pluginSettingsFactory.createGlobalSettings().get(SETTINGS_KEY_PREFIX + directoryId);
+
+        if (!(entries instanceof List)) {
+            return new ArrayList<>();
+        }
+
+        return ((List<String>) entries).stream()
+                .map(entry -> GSON.fromJson(entry, DirectorySyncHistoryEntryBean.class))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Nearest-rank percentile of the given sorted values.
+     */
+    static long percentile(
+            final List<Long> sortedValues,
+            final int percentile) {
+
+        final int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.size());
+        return sortedValues.get(Math.max(0, rank - 1));
+    }
+
+    private static Double trend(
+            final List<DirectorySyncHistoryEntryBean> entries) {
+
+        if (entries.size() < 2) {
+            return null;
+        }
+
+        final int half = entries.size() / 2;
+        final double olderMean = entries.subList(0, half).stream()
+                .mapToLong(DirectorySyncHistoryEntryBean::getDurationInMillis).average().orElse(0);
+        final double newerMean = entries.subList(entries.size() - half, entries.size()).stream()
+                .mapToLong(DirectorySyncHistoryEntryBean::getDurationInMillis).average().orElse(0);
+
+        return olderMean > 0 ? (newerMean - olderMean) * 100 / olderMean : null;
+    }
+
+}
@@ -0,0 +1,181 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.confluence.util.longrunning.ConfluenceAbstractLongRunningTask;
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationInformation;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationRoundInformation;
+import com.atlassian.crowd.exception.DirectoryNotFoundException;
+import com.atlassian.crowd.exception.OperationFailedException;
+import com.atlassian.crowd.manager.directory.DirectoryManager;
+import com.atlassian.crowd.search.EntityDescriptor;
+import com.atlassian.crowd.search.builder.QueryBuilder;
+import com.atlassian.crowd.search.query.entity.EntityQuery;
+import de.aservo.confapi.confluence.model.DirectorySyncMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Synchronises a remote directory in the background and counts its users and groups afterwards.
+ *
+ * Crowd does not report how many entities a synchronisation has processed. A full synchronisation processes all
+ * users and groups of the directory, so their totals are the processed entities and give the processing rate. An
+ * incremental synchronisation only processes the changes, so no rate is given for it.
+ */
+class DirectorySyncLongRunningTask extends ConfluenceAbstractLongRunningTask {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectorySyncLongRunningTask.class);
+
+    static final int COUNT_CHUNK_SIZE = 1000;
+
+    private final CrowdDirectoryService crowdDirectoryService;
+    private final DirectoryManager directoryManager;
+    private final DirectorySyncHistory directorySyncHistory;
+    private final Directory directory;
+    private final DirectorySyncMode mode;
+
+    private volatile Long durationInMillis;
+    private volatile Long users;
+    private volatile Long groups;
+    private volatile Double entitiesPerSecond;
+    private volatile String status;
+    private volatile String error;
+
+    DirectorySyncLongRunningTask(
+            final CrowdDirectoryService crowdDirectoryService,
+            final DirectoryManager directoryManager,
+            final DirectorySyncHistory directorySyncHistory,
+            final Directory directory,
+            final DirectorySyncMode mode) {
+
+        this.crowdDirectoryService = crowdDirectoryService;
+        this.directoryManager = directoryManager;
+        this.directorySyncHistory = directorySyncHistory;
+        this.directory = directory;
+        this.mode = mode;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("Synchronising directory %s", directory.getName());
+    }
+
+    @Override
+    protected void runInternal() {
+        progress.setStatus(String.format("Synchronising directory %s", directory.getName()));
+        final long start = System.currentTimeMillis();
+
+        try {
+            // runs the synchronisation in this thread, so the task completes with it
+            crowdDirectoryService.synchroniseDirectory(directory.getId(), false);
+        } catch (RuntimeException e) {
+            log.warn("Failed to synchronise directory {}", directory.getName(), e);
+            error = e.getMessage();
+            progress.setStatus(String.format("Failed to synchronise directory %s", directory.getName()));
+            progress.setPercentage(100);
+            progress.setCompletedSuccessfully(false);
+            return;
+        }
+
+        durationInMillis = System.currentTimeMillis() - start;
+        status = getLastRoundStatus();
+        progress.setPercentage(50);
+
+        users = countEntities(EntityDescriptor.user(), query -> directoryManager.searchUsers(directory.getId(), query));
+        groups = countEntities(EntityDescriptor.group(), query -> directoryManager.searchGroups(directory.getId(), query));
+        entitiesPerSecond = getEntitiesPerSecond();
+        directorySyncHistory.record(directory.getId(), users);
+        log.info("Synchronised directory {} with {} users and {} groups in {} ms",
+                directory.getName(), users, groups, durationInMillis);
+
+        progress.setStatus(String.format("Synchronised directory %s", directory.getName()));
+        progress.setPercentage(100);
+        progress.setCompletedSuccessfully(true);
+    }
+
+    Directory getDirectory() {
+        return directory;
+    }
+
+    DirectorySyncMode getMode() {
+        return mode;
+    }
+
+    Long getDurationInMillis() {
+        return durationInMillis;
+    }
+
+    Long getUsers() {
+        return users;
+    }
+
+    Long getGroups() {
+        return groups;
+    }
+
+    Double getEntitiesPerSecond() {
+        return entitiesPerSecond;
+    }
+
+    String getStatus() {
+        return status;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    private String getLastRoundStatus() {
+        final DirectorySynchronisationInformation information =
+                crowdDirectoryService.getDirectorySynchronisationInformation(directory.getId());
+        final DirectorySynchronisationRoundInformation lastRound = information != null ? information.getLastRound() : null;
+        return lastRound != null ? lastRound.getStatusKey() : null;
+    }
+
+    private Double getEntitiesPerSecond() {
+        if (!DirectorySyncMode.FULL.equals(mode) || users == null || groups == null || durationInMillis <= 0) {
+            return null;
+        }
+
+        return (users + groups) * 1000.0 / durationInMillis;
+    }
+
+    /**
+     * Counts the users or groups of the directory in chunks of names, the embedded Crowd API has no per-directory count.
+     *
+     * @return the number of entities or null if they cannot be counted
+     */
+    private Long countEntities(
+            final EntityDescriptor entityDescriptor,
+            final NameSearch nameSearch) {
+
+        long count = 0;
+        int found;
+
+        try {
+            do {
+                // the query is restricted to this directory and only returns the names, not the whole entities
+                found = nameSearch.search(QueryBuilder.queryFor(String.class, entityDescriptor)
+                        .startingAt((int) count)
+                        .returningAtMost(COUNT_CHUNK_SIZE)).size();
+                count += found;
+            } while (found == COUNT_CHUNK_SIZE);
+        } catch (DirectoryNotFoundException | OperationFailedException e) {
+            log.warn("Failed to count the {} of directory {}", entityDescriptor.getEntityType(), directory.getName(), e);
+            return null;
+        }
+
+        return count;
+    }
+
+    @FunctionalInterface
+    private interface NameSearch {
+
+        List<String> search(
+                EntityQuery<String> query) throws DirectoryNotFoundException, OperationFailedException;
+
+    }
+
+}
@@ -0,0 +1,431 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.beehive.ClusterLock;
+import com.atlassian.beehive.ClusterLockService;
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.embedded.impl.ImmutableDirectory;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import com.google.gson.Gson;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.NotFoundException;
+import de.aservo.confapi.confluence.model.DirectorySyncScheduleBean;
+import de.aservo.confapi.confluence.model.DirectorySyncWindowBean;
+import de.aservo.confapi.confluence.service.api.DirectorySyncScheduleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.atlassian.crowd.directory.SynchronisableDirectoryProperties.CACHE_SYNCHRONISE_INTERVAL;
+
+/**
+ * Synchronises directories inside configured time windows instead of on their regular interval. The windows are
+ * interpreted in the zone of the schedule, which defaults to the zone of the server.
+ *
+ * The automatic synchronisation of a paused directory is pushed out by setting a very long sync interval, the
+ * previous interval is kept and restored when the directory is resumed. Once a minute, the paused directories are
+ * synchronised once per window, staggered so that they do not all hit the database at the same time.
+ *
+ * The schedule and the last triggered syncs are stored in the global plugin settings and the check is guarded by a
+ * cluster lock, so only one node triggers the syncs.
+ */
+@Component
+@ExportAsService({DirectorySyncScheduleService.class, LifecycleAware.class})
+public class DirectorySyncScheduler implements DirectorySyncScheduleService, LifecycleAware {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectorySyncScheduler.class);
+
+    private static final String SETTINGS_KEY_PREFIX = "de.aservo.confapi.confluence.directories.sync.schedule.";
+    public static final String SETTINGS_KEY_SCHEDULE = SETTINGS_KEY_PREFIX + "config";
+    public static final String SETTINGS_KEY_STATE = SETTINGS_KEY_PREFIX + "state";
+    private static final String LOCK_NAME = SETTINGS_KEY_PREFIX + "lock";
+
+    public static final int CHECK_INTERVAL_IN_SECONDS = 60;
+    public static final int DEFAULT_STAGGER_IN_MINUTES = 5;
+    public static final int MAX_STAGGER_IN_MINUTES = 60;
+    public static final long PAUSED_SYNC_INTERVAL_IN_SECONDS = TimeUnit.DAYS.toSeconds(365);
+
+    private static final Gson GSON = new Gson();
+
+    private final CrowdDirectoryService crowdDirectoryService;
+    private final PluginSettingsFactory pluginSettingsFactory;
+    private final ClusterLockService clusterLockService;
+    private ScheduledExecutorService scheduleExecutor;
+
+    @Inject
+    public DirectorySyncScheduler(
+            @ComponentImport final CrowdDirectoryService crowdDirectoryService,
+            @ComponentImport final PluginSettingsFactory pluginSettingsFactory,
+            @ComponentImport final ClusterLockService clusterLockService) {
+
+        this.crowdDirectoryService = crowdDirectoryService;
+        this.pluginSettingsFactory = pluginSettingsFactory;
+        this.clusterLockService = clusterLockService;
+    }
+
+    @Override
+    public void onStart() {
+        scheduleExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "confapi-directory-sync-schedule");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleExecutor.scheduleWithFixedDelay(this::checkSafely,
+                CHECK_INTERVAL_IN_SECONDS, CHECK_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onStop() {
+        // the plugin may be stopped without having been started
+        if (scheduleExecutor != null) {
+            scheduleExecutor.shutdownNow();
+            scheduleExecutor = null;
+        }
+    }
+
+    @Override
+    public DirectorySyncScheduleBean getSyncSchedule() {
+        final PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+        final DirectorySyncScheduleBean syncScheduleBean = getSchedule(pluginSettings);
+        final Map<Long, Date> lastTriggered = new LinkedHashMap<>();
+        getState(pluginSettings).lastTriggers.forEach((id, time) -> lastTriggered.put(Long.valueOf(id), new Date(time)));
+        syncScheduleBean.setLastTriggered(lastTriggered);
+        syncScheduleBean.setZone(getZone(syncScheduleBean).getId());
+        return syncScheduleBean;
+    }
+
+    @Override
+    public DirectorySyncScheduleBean setSyncSchedule(
+            final DirectorySyncScheduleBean syncScheduleBean) {
+
+        final List<Long> pausedDirectoryIds = syncScheduleBean.getPausedDirectoryIds() != null
+                ? new ArrayList<>(new LinkedHashSet<>(syncScheduleBean.getPausedDirectoryIds()))
+                : new ArrayList<>();
+        final List<DirectorySyncWindowBean> windows = syncScheduleBean.getWindows() != null
+                ? syncScheduleBean.getWindows()
+                : new ArrayList<>();
+        final int staggerInMinutes = syncScheduleBean.getStaggerInMinutes() != null
+                ? syncScheduleBean.getStaggerInMinutes()
+                : DEFAULT_STAGGER_IN_MINUTES;
+
+        if (staggerInMinutes < 0 || staggerInMinutes > MAX_STAGGER_IN_MINUTES) {
+            throw new BadRequestException(String.format("The stagger must be between 0 and %d minutes", MAX_STAGGER_IN_MINUTES));
+        }
+
+        final ZoneId zone;
+
+        try {
+            zone = getZone(syncScheduleBean);
+        } catch (DateTimeException e) {
+            throw new BadRequestException(String.format("Unknown zone '%s'", syncScheduleBean.getZone()));
+        }
+
+        windows.forEach(DirectorySyncScheduler::validateWindow);
+
+        // one snapshot for checking the paused and resumed directories, instead of reading them one by one
+        final DirectorySnapshot snapshot = DirectorySnapshot.of(crowdDirectoryService);
+        final Map<Long, Directory> pausedDirectories = new LinkedHashMap<>();
+        for (Long id : pausedDirectoryIds) {
+            final Directory directory = snapshot.getById(id);
+
+            if (directory == null) {
+                throw new NotFoundException(String.format("directory with id '%s' was not found!", id));
+            }
+
+            if (DirectoryType.INTERNAL.equals(directory.getType())) {
+                throw new BadRequestException(String.format("Directory '%s' is an internal directory and is not synchronised", directory.getName()));
+            }
+
+            pausedDirectories.put(id, directory);
+        }
+
+        final ClusterLock lock = clusterLockService.getLockForName(LOCK_NAME);
+        lock.lock();
+
+        try {
+            final PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+            final ScheduleState state = getState(pluginSettings);
+
+            // resume the directories that are no longer paused with their previous interval
+            for (String id : new ArrayList<>(state.originalIntervals.keySet())) {
+                if (!pausedDirectories.containsKey(Long.valueOf(id))) {
+                    resume(snapshot.getById(Long.parseLong(id)), state.originalIntervals.remove(id));
+                    state.lastTriggers.remove(id);
+                }
+            }
+
+            for (Directory directory : pausedDirectories.values()) {
+                final String id = String.valueOf(directory.getId());
+
+                if (!state.originalIntervals.containsKey(id)) {
+                    state.originalIntervals.put(id, directory.getAttributes().get(CACHE_SYNCHRONISE_INTERVAL));
+                    setSyncInterval(directory, String.valueOf(PAUSED_SYNC_INTERVAL_IN_SECONDS));
+                    log.info("Paused the automatic synchronisation of directory {}", directory.getName());
+                }
+            }
+
+            final DirectorySyncScheduleBean schedule = new DirectorySyncScheduleBean();
+            schedule.setPausedDirectoryIds(pausedDirectoryIds);
+            schedule.setWindows(windows);
+            schedule.setStaggerInMinutes(staggerInMinutes);
+            schedule.setZone(zone.getId());
+
+            pluginSettings.put(SETTINGS_KEY_SCHEDULE, GSON.toJson(schedule));
+            pluginSettings.put(SETTINGS_KEY_STATE, GSON.toJson(state));
+        } finally {
+            lock.unlock();
+        }
+
+        return getSyncSchedule();
+    }
+
+    private void checkSafely() {
+        final ClusterLock lock = clusterLockService.getLockForName(LOCK_NAME);
+
+        // another node is checking or the schedule is being changed, the next check will catch up
+        if (!lock.tryLock()) {
+            return;
+        }
+
+        try {
+            triggerSyncs(ZonedDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Failed to check the directory sync schedule", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Triggers the sync of the next paused directory that is due in the current window.
+     *
+     * The directories are synchronised one after the other, each one at least stagger after the previous trigger of
+     * the schedule. This also holds if the check only starts long after the window opened, e.g. after a restart.
+     * A directory is synchronised once per window, also if it only became due late in the window.
+     *
+     * @param time the current time, it is converted to the zone of the schedule
+     */
+    void triggerSyncs(
+            final ZonedDateTime time) {
+
+        final PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+        final DirectorySyncScheduleBean schedule = getSchedule(pluginSettings);
+        final ZonedDateTime now = time.withZoneSameInstant(getZone(schedule));
+        final ZonedDateTime windowStart = getWindowStart(schedule.getWindows(), now);
+
+        if (windowStart == null || schedule.getPausedDirectoryIds() == null) {
+            return;
+        }
+
+        final ScheduleState state = getState(pluginSettings);
+        final int staggerInMinutes = schedule.getStaggerInMinutes() != null ? schedule.getStaggerInMinutes() : DEFAULT_STAGGER_IN_MINUTES;
+
+        // the next directory is due one stagger after the previous trigger of any directory of the schedule
+        if (state.lastTrigger != null
+                && now.toInstant().isBefore(Instant.ofEpochMilli(state.lastTrigger).plus(staggerInMinutes, ChronoUnit.MINUTES))) {
+            return;
+        }
+
+        boolean triggered = false;
+
+        for (long id : schedule.getPausedDirectoryIds()) {
+            final Long lastTrigger = state.lastTriggers.get(String.valueOf(id));
+
+            if (lastTrigger != null && lastTrigger >= windowStart.toInstant().toEpochMilli()) {
+                continue;
+            }
+
+            if (crowdDirectoryService.findDirectoryById(id) == null || crowdDirectoryService.isDirectorySynchronising(id)) {
+                continue;
+            }
+
+            crowdDirectoryService.synchroniseDirectory(id, true);
+            state.lastTriggers.put(String.valueOf(id), now.toInstant().toEpochMilli());
+            state.lastTrigger = now.toInstant().toEpochMilli();
+            triggered = true;
+            log.info("Triggered the scheduled synchronisation of directory {}", id);
+
+            // only one directory per stagger, the others are checked again once it has passed
+            if (staggerInMinutes > 0) {
+                break;
+            }
+        }
+
+        if (triggered) {
+            pluginSettings.put(SETTINGS_KEY_STATE, GSON.toJson(state));
+        }
+    }
+
+    /**
+     * Returns the start of the window occurrence that contains the given time, windows may end on the next day.
+     * The windows are interpreted in the zone of the given time.
+     */
+    static ZonedDateTime getWindowStart(
+            final List<DirectorySyncWindowBean> windows,
+            final ZonedDateTime now) {
+
+        if (windows == null) {
+            return null;
+        }
+
+        for (DirectorySyncWindowBean window : windows) {
+            final LocalTime startTime = LocalTime.parse(window.getStartTime());
+            final LocalTime endTime = LocalTime.parse(window.getEndTime());
+
+            // the occurrence that started today or, if the window ends on the next day, yesterday
+            for (int daysAgo = 0; daysAgo <= 1; daysAgo++) {
+                final LocalDate date = now.toLocalDate().minusDays(daysAgo);
+
+                if (window.getDays() != null && !window.getDays().isEmpty()
+                        && !window.getDays().contains(date.getDayOfWeek().name())) {
+                    continue;
+                }
+
+                final ZonedDateTime start = date.atTime(startTime).atZone(now.getZone());
+                final ZonedDateTime end = endTime.isAfter(startTime)
+                        ? date.atTime(endTime).atZone(now.getZone())
+                        : date.plusDays(1).atTime(endTime).atZone(now.getZone());
+
+                if (!now.isBefore(start) && now.isBefore(end)) {
+                    return start;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static void validateWindow(
+            final DirectorySyncWindowBean window) {
+
+        final LocalTime startTime;
+        final LocalTime endTime;
+
+        try {
+            startTime = LocalTime.parse(window.getStartTime());
+            endTime = LocalTime.parse(window.getEndTime());
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new BadRequestException(String.format(
+                    "The start and end time of a sync window must be given as HH:mm, got '%s' and '%s'",
+                    window.getStartTime(), window.getEndTime()));
+        }
+
+        if (startTime.equals(endTime)) {
+            throw new BadRequestException("The start and end time of a sync window must differ");
+        }
+
+        if (window.getDays() != null) {
+            for (int i = 0; i < window.getDays().size(); i++) {
+                final String day = window.getDays().get(i);
+
+                try {
+                    window.getDays().set(i, DayOfWeek.valueOf(day.toUpperCase(Locale.ENGLISH)).name());
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    throw new BadRequestException(String.format("Unknown day of week '%s'", day));
+                }
+            }
+        }
+    }
+
+    private void resume(
+            final Directory directory,
+            final String originalInterval) {
+
+        // the directory may have been deleted in the meantime
+        if (directory != null) {
+            setSyncInterval(directory, originalInterval);
+            log.info("Resumed the automatic synchronisation of directory {}", directory.getName());
+        }
+    }
+
+    private void setSyncInterval(
+            final Directory directory,
+            final String syncInterval) {
+
+        final Map<String, String> attributes = new HashMap<>(directory.getAttributes());
+
+        if (syncInterval != null) {
+            attributes.put(CACHE_SYNCHRONISE_INTERVAL, syncInterval);
+        } else {
+            attributes.remove(CACHE_SYNCHRONISE_INTERVAL);
+        }
+
+        crowdDirectoryService.updateDirectory(ImmutableDirectory.newBuilder(directory)
+                .setAttributes(attributes)
+                .toDirectory());
+    }
+
+    private static DirectorySyncScheduleBean getSchedule(
+            final PluginSettings pluginSettings) {
+
+        final Object schedule = pluginSettings.get(SETTINGS_KEY_SCHEDULE);
+
+        if (!(schedule instanceof String)) {
+            final DirectorySyncScheduleBean syncScheduleBean = new DirectorySyncScheduleBean();
+            syncScheduleBean.setPausedDirectoryIds(Collections.emptyList());
+            syncScheduleBean.setWindows(Collections.emptyList());
+            syncScheduleBean.setStaggerInMinutes(DEFAULT_STAGGER_IN_MINUTES);
+            return syncScheduleBean;
+        }
+
+        return GSON.fromJson((String) schedule, DirectorySyncScheduleBean.class);
+    }
+
+    /**
+     * Returns the zone of the schedule, the zone of the server if none is set.
+     *
+     * @throws DateTimeException if the zone is unknown
+     */
+    private static ZoneId getZone(
+            final DirectorySyncScheduleBean syncScheduleBean) {
+
+        return syncScheduleBean.getZone() != null ? ZoneId.of(syncScheduleBean.getZone()) : ZoneId.systemDefault();
+    }
+
+    private static ScheduleState getState(
+            final PluginSettings pluginSettings) {
+
+        final Object state = pluginSettings.get(SETTINGS_KEY_STATE);
+        return state instanceof String ? GSON.fromJson((String) state, ScheduleState.class) : new ScheduleState();
+    }
+
+    /**
+     * The sync intervals of the paused directories and the last triggered syncs, keyed by directory id.
+     */
+    private static class ScheduleState {
+
+        private Map<String, String> originalIntervals = new LinkedHashMap<>();
+        private Map<String, Long> lastTriggers = new LinkedHashMap<>();
+        private Long lastTrigger;
+
+    }
+
+}
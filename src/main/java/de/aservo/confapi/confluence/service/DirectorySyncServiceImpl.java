@@ -0,0 +1,196 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.confluence.util.longrunning.LongRunningTaskId;
+import com.atlassian.confluence.util.longrunning.LongRunningTaskManager;
+import com.atlassian.core.task.longrunning.LongRunningTask;
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationInformation;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationRoundInformation;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.exception.DirectoryCurrentlySynchronisingException;
+import com.atlassian.crowd.manager.directory.DirectoryManager;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import de.aservo.confapi.commons.constants.ConfAPI;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.NotFoundException;
+import de.aservo.confapi.commons.exception.ServiceUnavailableException;
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import de.aservo.confapi.confluence.model.DirectorySyncBean;
+import de.aservo.confapi.confluence.model.DirectorySyncHistoryBean;
+import de.aservo.confapi.confluence.model.DirectorySyncMode;
+import de.aservo.confapi.confluence.model.DirectorySyncQueueBean;
+import de.aservo.confapi.confluence.service.api.DirectorySyncService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.net.URI;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.atlassian.crowd.directory.SynchronisableDirectoryProperties.INCREMENTAL_SYNC_ENABLED;
+import static de.aservo.confapi.confluence.util.HttpUtil.createRestUri;
+import static de.aservo.confapi.confluence.util.HttpUtil.getUser;
+
+@Component
+@ExportAsService(DirectorySyncService.class)
+public class DirectorySyncServiceImpl implements DirectorySyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectorySyncServiceImpl.class);
+
+    public static final int RETRY_AFTER_IN_SECONDS = 60;
+
+    private final CrowdDirectoryService crowdDirectoryService;
+
+    private final DirectoryManager directoryManager;
+
+    private final LongRunningTaskManager longRunningTaskManager;
+
+    private final DirectorySyncHistory directorySyncHistory;
+
+    private final Map<Long, LongRunningTaskId> syncTaskIds = new ConcurrentHashMap<>();
+
+    @Inject
+    public DirectorySyncServiceImpl(
+            @ComponentImport final CrowdDirectoryService crowdDirectoryService,
+            @ComponentImport final DirectoryManager directoryManager,
+            @ComponentImport final LongRunningTaskManager longRunningTaskManager,
+            final DirectorySyncHistory directorySyncHistory) {
+
+        this.crowdDirectoryService = crowdDirectoryService;
+        this.directoryManager = directoryManager;
+        this.longRunningTaskManager = longRunningTaskManager;
+        this.directorySyncHistory = directorySyncHistory;
+    }
+
+    @Override
+    public synchronized URI synchroniseDirectory(
+            final long id,
+            final DirectorySyncMode mode) {
+
+        final Directory directory = findDirectory(id);
+
+        if (DirectoryType.INTERNAL.equals(directory.getType())) {
+            throw new BadRequestException(String.format("Directory '%s' is an internal directory and cannot be synchronised", directory.getName()));
+        }
+
+        // the embedded Crowd API synchronises in the mode configured for the directory, it cannot be chosen per sync
+        final DirectorySyncMode configuredMode = getMode(directory);
+        if (mode != null && !mode.equals(configuredMode)) {
+            throw new BadRequestException(String.format("Directory '%s' is configured for %s synchronisation",
+                    directory.getName(), configuredMode.name().toLowerCase()));
+        }
+
+        final LongRunningTaskId runningTaskId = syncTaskIds.get(id);
+        final LongRunningTask runningTask = runningTaskId != null ? longRunningTaskManager.getLongRunningTask(getUser(), runningTaskId) : null;
+
+        if ((runningTask != null && !runningTask.isComplete()) || crowdDirectoryService.isDirectorySynchronising(id)) {
+            throw new ServiceUnavailableException(new DirectoryCurrentlySynchronisingException(id), RETRY_AFTER_IN_SECONDS);
+        }
+
+        final DirectorySyncLongRunningTask task = new DirectorySyncLongRunningTask(
+                crowdDirectoryService, directoryManager, directorySyncHistory, directory, configuredMode);
+        final LongRunningTaskId taskId = longRunningTaskManager.startLongRunningTask(getUser(), task);
+        syncTaskIds.put(id, taskId);
+        log.info("Started asynchronous task '{}' for synchronising directory {}", taskId, directory.getName());
+
+        return createRestUri(ConfAPI.DIRECTORIES, ConfluenceConfAPI.DIRECTORIES_SYNC_QUEUE, taskId.toString());
+    }
+
+    @Override
+    public DirectorySyncBean getDirectorySync(
+            final long id) {
+
+        final Directory directory = findDirectory(id);
+        final DirectorySynchronisationInformation information = crowdDirectoryService.getDirectorySynchronisationInformation(id);
+        final DirectorySynchronisationRoundInformation lastRound = information != null ? information.getLastRound() : null;
+
+        final DirectorySyncBean directorySyncBean = new DirectorySyncBean();
+        directorySyncBean.setDirectoryId(id);
+        directorySyncBean.setMode(getMode(directory));
+        directorySyncBean.setSynchronising(crowdDirectoryService.isDirectorySynchronising(id));
+
+        if (lastRound != null) {
+            directorySyncBean.setLastStartTime(new Date(lastRound.getStartTime()));
+            directorySyncBean.setLastDurationInMillis(lastRound.getDurationMs());
+            directorySyncBean.setLastStatus(lastRound.getStatusKey());
+        }
+
+        directorySyncBean.setDegraded(directorySyncHistory.getHistory(id, null).isDegraded());
+
+        return directorySyncBean;
+    }
+
+    @Override
+    public DirectorySyncHistoryBean getDirectorySyncHistory(
+            final long id,
+            final Long thresholdInMillis) {
+
+        findDirectory(id);
+
+        if (thresholdInMillis != null && thresholdInMillis <= 0) {
+            throw new BadRequestException("The threshold must be a positive number");
+        }
+
+        return directorySyncHistory.getHistory(id, thresholdInMillis);
+    }
+
+    @Override
+    public DirectorySyncQueueBean getSyncQueue(
+            final UUID uuid) {
+
+        final LongRunningTaskId taskId = LongRunningTaskId.valueOf(uuid.toString());
+        final LongRunningTask task = longRunningTaskManager.getLongRunningTask(getUser(), taskId);
+
+        if (task == null) {
+            return null;
+        }
+
+        if (!(task instanceof DirectorySyncLongRunningTask)) {
+            throw new BadRequestException(String.format(
+                    "Given task uuid '%s' does not belong to a directory sync task", uuid));
+        }
+
+        final DirectorySyncLongRunningTask syncTask = (DirectorySyncLongRunningTask) task;
+
+        final DirectorySyncQueueBean directorySyncQueueBean = new DirectorySyncQueueBean();
+        directorySyncQueueBean.setDirectoryId(syncTask.getDirectory().getId());
+        directorySyncQueueBean.setMode(syncTask.getMode());
+        directorySyncQueueBean.setPercentageComplete(task.getPercentageComplete());
+        directorySyncQueueBean.setElapsedTimeInMillis(task.getElapsedTime());
+        directorySyncQueueBean.setDurationInMillis(syncTask.getDurationInMillis());
+        directorySyncQueueBean.setUsers(syncTask.getUsers());
+        directorySyncQueueBean.setGroups(syncTask.getGroups());
+        directorySyncQueueBean.setEntitiesPerSecond(syncTask.getEntitiesPerSecond());
+        directorySyncQueueBean.setStatus(syncTask.getStatus());
+        directorySyncQueueBean.setError(syncTask.getError());
+
+        return directorySyncQueueBean;
+    }
+
+    private Directory findDirectory(
+            final long id) {
+
+        final Directory directory = crowdDirectoryService.findDirectoryById(id);
+
+        if (directory == null) {
+            throw new NotFoundException(String.format("directory with id '%s' was not found!", id));
+        }
+
+        return directory;
+    }
+
+    private static DirectorySyncMode getMode(
+            final Directory directory) {
+
+        return Boolean.parseBoolean(directory.getAttributes().get(INCREMENTAL_SYNC_ENABLED))
+                ? DirectorySyncMode.INCREMENTAL
+                : DirectorySyncMode.FULL;
+    }
+
+}
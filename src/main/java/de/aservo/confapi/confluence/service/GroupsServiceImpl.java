@@ -0,0 +1,284 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.Group;
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.crowd.embedded.impl.ImmutableGroup;
+import com.atlassian.crowd.exception.CrowdException;
+import com.atlassian.crowd.search.EntityDescriptor;
+import com.atlassian.crowd.search.builder.QueryBuilder;
+import com.atlassian.crowd.search.query.entity.EntityQuery;
+import com.atlassian.crowd.search.query.entity.restriction.NullRestrictionImpl;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.transaction.TransactionTemplate;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.NotFoundException;
+import de.aservo.confapi.confluence.model.GroupBean;
+import de.aservo.confapi.confluence.model.GroupMembersBean;
+import de.aservo.confapi.confluence.model.GroupMembersChangeBean;
+import de.aservo.confapi.confluence.model.GroupMembersResultBean;
+import de.aservo.confapi.confluence.model.GroupsBean;
+import de.aservo.confapi.confluence.model.UserBulkItemBean;
+import de.aservo.confapi.confluence.service.api.GroupsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static de.aservo.confapi.commons.util.BeanValidationUtil.validate;
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+@Component
+@ExportAsService(GroupsService.class)
+public class GroupsServiceImpl implements GroupsService {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupsServiceImpl.class);
+
+    public static final int BATCH_SIZE = 100;
+
+    private final CrowdService crowdService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Inject
+    public GroupsServiceImpl(
+            @ComponentImport final CrowdService crowdService,
+            @ComponentImport final TransactionTemplate transactionTemplate) {
+
+        this.crowdService = crowdService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public GroupsBean getGroups() {
+        final Iterable<String> names = crowdService.search(QueryBuilder.queryFor(String.class, EntityDescriptor.group())
+                .with(NullRestrictionImpl.INSTANCE)
+                .returningAtMost(EntityQuery.ALL_RESULTS));
+
+        return new GroupsBean(StreamSupport.stream(names.spliterator(), false)
+                .map(GroupBean::new)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public GroupBean getGroup(
+            final String name) {
+
+        return new GroupBean(findGroup(name).getName());
+    }
+
+    @Override
+    public GroupBean setGroup(
+            final GroupBean groupBean) {
+
+        validate(groupBean);
+        final Group existingGroup = crowdService.getGroup(groupBean.getName());
+
+        if (existingGroup != null) {
+            return new GroupBean(existingGroup.getName());
+        }
+
+        try {
+            return new GroupBean(crowdService.addGroup(new ImmutableGroup(groupBean.getName())).getName());
+        } catch (CrowdException e) {
+            throw new BadRequestException(String.format("Group %s cannot be created: %s", groupBean.getName(), e.getMessage()));
+        }
+    }
+
+    @Override
+    public GroupMembersBean getGroupMembers(
+            final String name) {
+
+        final Group group = findGroup(name);
+        return new GroupMembersBean(new ArrayList<>(getMembers(group).values()));
+    }
+
+    @Override
+    public GroupMembersResultBean setGroupMembers(
+            final String name,
+            final GroupMembersBean groupMembersBean) {
+
+        // a missing member list must not be mistaken for an empty one, which would remove all members
+        if (groupMembersBean == null || groupMembersBean.getMembers() == null) {
+            throw new BadRequestException("The members of the group must be given, use an empty list to remove all members");
+        }
+
+        final Map<String, String> members = toKeys(groupMembersBean.getMembers());
+        final Group group = findGroup(name);
+        final Map<String, String> currentMembers = getMembers(group);
+
+        final List<String> membersToAdd = new ArrayList<>();
+        final List<String> membersToRemove = new ArrayList<>();
+
+        members.forEach((key, member) -> {
+            if (!currentMembers.containsKey(key)) {
+                membersToAdd.add(member);
+            }
+        });
+        currentMembers.forEach((key, member) -> {
+            if (!members.containsKey(key)) {
+                membersToRemove.add(member);
+            }
+        });
+
+        final int unchanged = members.size() - membersToAdd.size();
+        return applyGroupMembers(group, membersToAdd, membersToRemove, unchanged);
+    }
+
+    @Override
+    public GroupMembersResultBean updateGroupMembers(
+            final String name,
+            final GroupMembersChangeBean groupMembersChangeBean) {
+
+        if (groupMembersChangeBean == null) {
+            throw new BadRequestException("The members to add and to remove must be given");
+        }
+
+        final Map<String, String> membersToAdd = toKeys(groupMembersChangeBean.getAdd());
+        final Map<String, String> membersToRemove = toKeys(groupMembersChangeBean.getRemove());
+
+        // the result would depend on the order in which the changes are applied
+        for (String key : membersToAdd.keySet()) {
+            if (membersToRemove.containsKey(key)) {
+                throw new BadRequestException(String.format(
+                        "User %s must not be added and removed at the same time", membersToAdd.get(key)));
+            }
+        }
+        final Group group = findGroup(name);
+        final Map<String, String> currentMembers = getMembers(group);
+
+        final int requested = membersToAdd.size() + membersToRemove.size();
+        membersToAdd.keySet().removeAll(currentMembers.keySet());
+        membersToRemove.keySet().retainAll(currentMembers.keySet());
+
+        // remove with the name as stored, which may differ in case from the requested one
+        final List<String> currentMembersToRemove = membersToRemove.keySet().stream()
+                .map(currentMembers::get)
+                .collect(Collectors.toList());
+
+        final int unchanged = requested - membersToAdd.size() - membersToRemove.size();
+        return applyGroupMembers(group, new ArrayList<>(membersToAdd.values()), currentMembersToRemove, unchanged);
+    }
+
+    private GroupMembersResultBean applyGroupMembers(
+            final Group group,
+            final List<String> membersToAdd,
+            final List<String> membersToRemove,
+            final int unchanged) {
+
+        final List<String> added = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        final List<UserBulkItemBean> failed = new ArrayList<>();
+
+        // only the difference to the current members is written, in batches with one transaction each
+        for (int i = 0; i < membersToAdd.size(); i += BATCH_SIZE) {
+            final List<String> batch = membersToAdd.subList(i, Math.min(i + BATCH_SIZE, membersToAdd.size()));
+            transactionTemplate.execute(() -> {
+                batch.forEach(member -> applyGroupMember(group, member, true, added, failed));
+                return null;
+            });
+        }
+
+        for (int i = 0; i < membersToRemove.size(); i += BATCH_SIZE) {
+            final List<String> batch = membersToRemove.subList(i, Math.min(i + BATCH_SIZE, membersToRemove.size()));
+            transactionTemplate.execute(() -> {
+                batch.forEach(member -> applyGroupMember(group, member, false, removed, failed));
+                return null;
+            });
+        }
+
+        log.info("Updated members of group {} ({} added, {} removed, {} unchanged, {} failed)",
+                group.getName(), added.size(), removed.size(), unchanged, failed.size());
+
+        final GroupMembersResultBean groupMembersResultBean = new GroupMembersResultBean();
+        groupMembersResultBean.setAdded(added);
+        groupMembersResultBean.setRemoved(removed);
+        groupMembersResultBean.setUnchanged(unchanged);
+        groupMembersResultBean.setFailed(failed);
+
+        return groupMembersResultBean;
+    }
+
+    private void applyGroupMember(
+            final Group group,
+            final String member,
+            final boolean add,
+            final List<String> applied,
+            final List<UserBulkItemBean> failed) {
+
+        try {
+            final User user = crowdService.getUser(member);
+
+            if (user == null) {
+                failed.add(new UserBulkItemBean(member, UserBulkItemBean.Status.FAILED,
+                        String.format("User %s cannot be found", member)));
+                return;
+            }
+
+            if (add) {
+                crowdService.addUserToGroup(user, group);
+            } else {
+                crowdService.removeUserFromGroup(user, group);
+            }
+
+            applied.add(member);
+        } catch (CrowdException | RuntimeException e) {
+            log.debug("Failed to update membership of user {} in group {}", member, group.getName(), e);
+            failed.add(new UserBulkItemBean(member, UserBulkItemBean.Status.FAILED, e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the direct members of the given group, keyed by the lower case name because names are case insensitive.
+     */
+    private Map<String, String> getMembers(
+            final Group group) {
+
+        final Iterable<String> names = crowdService.search(QueryBuilder.queryFor(String.class, EntityDescriptor.user())
+                .childrenOf(EntityDescriptor.group())
+                .withName(group.getName())
+                .returningAtMost(EntityQuery.ALL_RESULTS));
+
+        return toKeys(StreamSupport.stream(names.spliterator(), false).collect(Collectors.toList()));
+    }
+
+    private Group findGroup(
+            final String name) {
+
+        final Group group = crowdService.getGroup(name);
+
+        if (group == null) {
+            throw new NotFoundException(String.format("Group %s cannot be found", name));
+        }
+
+        return group;
+    }
+
+    private static Map<String, String> toKeys(
+            final Collection<String> names) {
+
+        final Map<String, String> keys = new LinkedHashMap<>();
+
+        for (String name : names != null ? names : Collections.<String>emptyList()) {
+            if (isBlank(name)) {
+                throw new BadRequestException("The names of the members must not be empty");
+            }
+
+            keys.putIfAbsent(name.toLowerCase(Locale.ENGLISH), name);
+        }
+
+        return keys;
+    }
+
+}
@@ -0,0 +1,282 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.beehive.ClusterLock;
+import com.atlassian.beehive.ClusterLockService;
+import com.atlassian.crowd.event.user.UserCreatedEvent;
+import com.atlassian.crowd.event.user.UserDeletedEvent;
+import com.atlassian.crowd.event.user.UserEditedEvent;
+import com.atlassian.crowd.event.user.UserRenamedEvent;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import com.google.gson.Gson;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.confluence.model.UserChangeBean;
+import de.aservo.confapi.confluence.model.UserChangesBean;
+import de.aservo.confapi.confluence.service.api.UserChangesService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only log of user changes, fed from the Crowd user events.
+ *
+ * Changes are buffered in memory and appended to the log in batches, so that bulk operations and directory
+ * synchronisations do not cause one write per user. The log is stored in small segments in the global plugin
+ * settings, which makes it shared by all cluster nodes; appending is guarded by a cluster lock. A flush only
+ * rewrites the last, partially filled segment, full segments are never written again. Sequence numbers are
+ * assigned when appending, so they are strictly increasing across the cluster.
+ *
+ * Changes that have not been flushed yet are lost if the node crashes, which are at most the changes of the last
+ * flush interval. Changes made while the plugin is not running are not recorded at all.
+ */
+@Component
+@ExportAsService({UserChangesService.class, LifecycleAware.class})
+public class UserChangesServiceImpl implements UserChangesService, LifecycleAware {
+
+    private static final Logger log = LoggerFactory.getLogger(UserChangesServiceImpl.class);
+
+    private static final String SETTINGS_KEY_PREFIX = "de.aservo.confapi.confluence.users.changes.";
+    public static final String SETTINGS_KEY_HEAD = SETTINGS_KEY_PREFIX + "head";
+    public static final String SETTINGS_KEY_SEGMENT = SETTINGS_KEY_PREFIX + "segment.";
+    private static final String LOCK_NAME = SETTINGS_KEY_PREFIX + "lock";
+
+    public static final int SEGMENT_SIZE = 50;
+    public static final int MAX_SEGMENTS = 2000;
+    public static final int MAX_PENDING_CHANGES = 100000;
+    public static final int FLUSH_INTERVAL_IN_SECONDS = 1;
+
+    private static final Gson GSON = new Gson();
+
+    private final EventPublisher eventPublisher;
+    private final PluginSettingsFactory pluginSettingsFactory;
+    private final ClusterLockService clusterLockService;
+    private final Queue<UserChangeBean> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingChangesCount = new AtomicInteger();
+    private ScheduledExecutorService flushExecutor;
+
+    @Inject
+    public UserChangesServiceImpl(
+            @ComponentImport final EventPublisher eventPublisher,
+            @ComponentImport final PluginSettingsFactory pluginSettingsFactory,
+            @ComponentImport final ClusterLockService clusterLockService) {
+
+        this.eventPublisher = eventPublisher;
+        this.pluginSettingsFactory = pluginSettingsFactory;
+        this.clusterLockService = clusterLockService;
+    }
+
+    @Override
+    public void onStart() {
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "confapi-user-changes");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushSafely,
+                FLUSH_INTERVAL_IN_SECONDS, FLUSH_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void onStop() {
+        eventPublisher.unregister(this);
+
+        // onStop can be called without a preceding onStart, e.g. if the plugin fails to start
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+            flushExecutor = null;
+        }
+
+        flushSafely();
+    }
+
+    @Override
+    public UserChangesBean getUserChanges(
+            final String cursor,
+            final int limit) {
+
+        if (limit <= 0) {
+            throw new BadRequestException("The limit must be a positive number");
+        }
+
+        final PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+        final long head = getHead(pluginSettings);
+        final long oldest = Math.max(0, (head / SEGMENT_SIZE - MAX_SEGMENTS + 1) * SEGMENT_SIZE);
+        final long from = cursor != null ? parseCursor(cursor) + 1 : oldest;
+
+        if (from < oldest) {
+            throw new BadRequestException(String.format(
+                    "Given cursor '%s' is no longer retained, a full synchronisation is required", cursor));
+        }
+
+        final List<UserChangeBean> changes = new ArrayList<>();
+        long next = from;
+
+        while (next < head && changes.size() < limit) {
+            final List<String> segment = getSegment(pluginSettings, next / SEGMENT_SIZE);
+            final int offset = (int) (next % SEGMENT_SIZE);
+
+            if (offset >= segment.size()) {
+                break;
+            }
+
+            for (String entry : segment.subList(offset, Math.min(segment.size(), offset + limit - changes.size()))) {
+                changes.add(GSON.fromJson(entry, UserChangeBean.class));
+                next++;
+            }
+        }
+
+        // without new changes the client polls again with the same cursor
+        final String nextCursor = next > from ? String.valueOf(next - 1) : cursor;
+        return new UserChangesBean(changes, nextCursor);
+    }
+
+    @EventListener
+    public void onUserCreated(
+            final UserCreatedEvent event) {
+
+        record(UserChangeBean.Type.CREATED, event.getUser().getName(), null);
+    }
+
+    @EventListener
+    public void onUserEdited(
+            final UserEditedEvent event) {
+
+        // renames are recorded by their own listener
+        if (event instanceof UserRenamedEvent) {
+            return;
+        }
+
+        final boolean active = event.getUser().isActive();
+        final boolean wasActive = event.getOriginalUser() == null || event.getOriginalUser().isActive();
+
+        if (wasActive && !active) {
+            record(UserChangeBean.Type.DEACTIVATED, event.getUser().getName(), null);
+        } else if (!wasActive && active) {
+            record(UserChangeBean.Type.REACTIVATED, event.getUser().getName(), null);
+        } else {
+            record(UserChangeBean.Type.UPDATED, event.getUser().getName(), null);
+        }
+    }
+
+    @EventListener
+    public void onUserRenamed(
+            final UserRenamedEvent event) {
+
+        record(UserChangeBean.Type.RENAMED, event.getUser().getName(), event.getOldUsername());
+    }
+
+    @EventListener
+    public void onUserDeleted(
+            final UserDeletedEvent event) {
+
+        record(UserChangeBean.Type.DELETED, event.getUsername(), null);
+    }
+
+    void record(
+            final UserChangeBean.Type type,
+            final String username,
+            final String oldUsername) {
+
+        if (pendingChangesCount.incrementAndGet() > MAX_PENDING_CHANGES) {
+            pendingChangesCount.decrementAndGet();
+            log.warn("Dropping user change {} of user {}, too many changes are pending", type, username);
+            return;
+        }
+
+        pendingChanges.add(new UserChangeBean(-1, System.currentTimeMillis(), type, username, oldUsername));
+    }
+
+    void flush() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+
+        final ClusterLock lock = clusterLockService.getLockForName(LOCK_NAME);
+        lock.lock();
+
+        try {
+            final PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+            long head = getHead(pluginSettings);
+            long segmentIndex = head / SEGMENT_SIZE;
+            List<String> segment = new ArrayList<>(getSegment(pluginSettings, segmentIndex));
+            UserChangeBean change;
+
+            while ((change = pendingChanges.poll()) != null) {
+                pendingChangesCount.decrementAndGet();
+
+                if (head / SEGMENT_SIZE != segmentIndex) {
+                    pluginSettings.put(SETTINGS_KEY_SEGMENT + segmentIndex, segment);
+                    segmentIndex = head / SEGMENT_SIZE;
+                    segment = new ArrayList<>();
+                    // compact the log by dropping the segments that are no longer retained
+                    pluginSettings.remove(SETTINGS_KEY_SEGMENT + (segmentIndex - MAX_SEGMENTS));
+                }
+
+                change.setSequence(head++);
+                segment.add(GSON.toJson(change));
+            }
+
+            pluginSettings.put(SETTINGS_KEY_SEGMENT + segmentIndex, segment);
+            pluginSettings.put(SETTINGS_KEY_HEAD, String.valueOf(head));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to append the user changes to the log", e);
+        }
+    }
+
+    private static long getHead(
+            final PluginSettings pluginSettings) {
+
+        final Object head = pluginSettings.get(SETTINGS_KEY_HEAD);
+        return head instanceof String ? Long.parseLong((String) head) : 0L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> getSegment(
+            final PluginSettings pluginSettings,
+            final long segmentIndex) {
+
+        final Object segment = pluginSettings.get(SETTINGS_KEY_SEGMENT + segmentIndex);
+        return segment instanceof List ? (List<String>) segment : new ArrayList<>();
+    }
+
+    private static long parseCursor(
+            final String cursor) {
+
+        try {
+            final long sequence = Long.parseLong(cursor);
+
+            if (sequence < -1) {
+                throw new NumberFormatException();
+            }
+
+            return sequence;
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(String.format("Given cursor '%s' is not valid", cursor));
+        }
+    }
+
+}
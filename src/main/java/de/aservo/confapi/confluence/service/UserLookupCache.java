@@ -0,0 +1,126 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.cache.Cache;
+import com.atlassian.cache.CacheManager;
+import com.atlassian.cache.CacheSettingsBuilder;
+import com.atlassian.crowd.event.directory.RemoteDirectorySynchronisedEvent;
+import com.atlassian.crowd.event.user.UserDeletedEvent;
+import com.atlassian.crowd.event.user.UserEditedEvent;
+import com.atlassian.crowd.event.user.UserRenamedEvent;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atlassian.sal.api.user.UserKey;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short living cache for user lookups, so that repeated requests for the same users do not hit external directories.
+ *
+ * Only the user keys of the usernames are cached. The users themselves are always loaded by their keys, so that
+ * neither reads nor writes ever work on a stale copy of a user.
+ *
+ * Entries are invalidated whenever a user is edited, renamed or deleted and on directory synchronisations.
+ * The cache is a regular Confluence cache with statistics enabled, so hits and misses are reported by the caches
+ * endpoints like for any other cache.
+ */
+@Component
+@ExportAsService(LifecycleAware.class)
+public class UserLookupCache implements LifecycleAware {
+
+    public static final String CACHE_NAME = UserLookupCache.class.getName();
+    public static final int EXPIRE_AFTER_WRITE_IN_SECONDS = 60;
+    public static final int MAX_ENTRIES = 10000;
+
+    private final EventPublisher eventPublisher;
+    private final Cache<String, UserKey> cache;
+
+    @Inject
+    public UserLookupCache(
+            @ComponentImport final CacheManager cacheManager,
+            @ComponentImport final EventPublisher eventPublisher) {
+
+        this.eventPublisher = eventPublisher;
+        // only invalidations are replicated in a cluster, every node resolves the keys on its own
+        this.cache = cacheManager.getCache(CACHE_NAME, null, new CacheSettingsBuilder()
+                .replicateViaInvalidation()
+                .expireAfterWrite(EXPIRE_AFTER_WRITE_IN_SECONDS, TimeUnit.SECONDS)
+                .maxEntries(MAX_ENTRIES)
+                .statisticsEnabled()
+                .build());
+    }
+
+    @Override
+    public void onStart() {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void onStop() {
+        eventPublisher.unregister(this);
+        cache.removeAll();
+    }
+
+    public UserKey get(
+            final String username) {
+
+        return cache.get(toKey(username));
+    }
+
+    public void put(
+            final String username,
+            final UserKey userKey) {
+
+        cache.put(toKey(username), userKey);
+    }
+
+    public void invalidate(
+            final String username) {
+
+        if (username != null) {
+            cache.remove(toKey(username));
+        }
+    }
+
+    @EventListener
+    public void onUserEdited(
+            final UserEditedEvent event) {
+
+        invalidate(event.getUser().getName());
+    }
+
+    @EventListener
+    public void onUserRenamed(
+            final UserRenamedEvent event) {
+
+        invalidate(event.getOldUsername());
+        invalidate(event.getUser().getName());
+    }
+
+    @EventListener
+    public void onUserDeleted(
+            final UserDeletedEvent event) {
+
+        invalidate(event.getUsername());
+    }
+
+    @EventListener
+    public void onDirectorySynchronised(
+            final RemoteDirectorySynchronisedEvent event) {
+
+        cache.removeAll();
+    }
+
+    // usernames are case insensitive
+    private static String toKey(
+            final String username) {
+
+        return username.toLowerCase(Locale.ENGLISH);
+    }
+
+}
@@ -0,0 +1,193 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.confluence.security.login.LoginInfo;
+import com.atlassian.confluence.security.login.LoginManager;
+import com.atlassian.confluence.user.ConfluenceUser;
+import com.atlassian.confluence.user.UserAccessor;
+import com.atlassian.confluence.util.longrunning.ConfluenceAbstractLongRunningTask;
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.crowd.search.EntityDescriptor;
+import com.atlassian.crowd.search.builder.QueryBuilder;
+import com.atlassian.crowd.search.builder.Restriction;
+import com.atlassian.crowd.search.query.entity.restriction.constants.UserTermKeys;
+import com.atlassian.sal.api.transaction.TransactionTemplate;
+import de.aservo.confapi.confluence.model.UserBulkItemBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deactivates the users that have not logged in for a given number of days, to free their licence seats.
+ *
+ * The active users are scanned in chunks, so only one chunk is held in memory at any time. The inactive users of
+ * a chunk are deactivated in smaller batches, each within its own transaction, before the next chunk is scanned.
+ */
+class UsersDeactivateLongRunningTask extends ConfluenceAbstractLongRunningTask {
+
+    private static final Logger log = LoggerFactory.getLogger(UsersDeactivateLongRunningTask.class);
+
+    static final int SCAN_CHUNK_SIZE = 500;
+    static final int DEACTIVATE_BATCH_SIZE = 100;
+
+    private final CrowdService crowdService;
+    private final UserAccessor userAccessor;
+    private final LoginManager loginManager;
+    private final TransactionTemplate transactionTemplate;
+    private final UsersDeactivateBean deactivate;
+    private final long thresholdInMillis;
+    private final List<UserBulkItemBean> results = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong scanned = new AtomicLong();
+
+    UsersDeactivateLongRunningTask(
+            final CrowdService crowdService,
+            final UserAccessor userAccessor,
+            final LoginManager loginManager,
+            final TransactionTemplate transactionTemplate,
+            final UsersDeactivateBean deactivate) {
+
+        this.crowdService = crowdService;
+        this.userAccessor = userAccessor;
+        this.loginManager = loginManager;
+        this.transactionTemplate = transactionTemplate;
+        this.deactivate = deactivate;
+        this.thresholdInMillis = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(deactivate.getInactiveDays());
+    }
+
+    @Override
+    public String getName() {
+        return String.format("Deactivating users inactive for %d days", deactivate.getInactiveDays());
+    }
+
+    @Override
+    protected void runInternal() {
+        // the total is only used for the progress, so the number of licensed users is good enough
+        final int total = Math.max(1, userAccessor.countLicenseConsumingUsers());
+        progress.setTotalObjects(total);
+
+        int index = 0;
+        boolean exhausted = false;
+
+        while (!exhausted) {
+            final List<String> inactiveUsers = new ArrayList<>();
+            int found = 0;
+
+            for (User user : crowdService.search(QueryBuilder.queryFor(User.class, EntityDescriptor.user())
+                    .with(Restriction.on(UserTermKeys.ACTIVE).exactlyMatching(true))
+                    .startingAt(index)
+                    .returningAtMost(SCAN_CHUNK_SIZE))) {
+
+                found++;
+
+                if (isInactive(user)) {
+                    inactiveUsers.add(user.getName());
+                }
+            }
+
+            final int deactivated = deactivate(inactiveUsers);
+
+            // deactivated users drop out of the search for active users, so the next chunk starts earlier
+            index += found - deactivated;
+            exhausted = found < SCAN_CHUNK_SIZE;
+
+            progress.setCurrentCount((int) scanned.addAndGet(found));
+            progress.setPercentage((int) Math.min(99, scanned.get() * 100 / total));
+        }
+
+        progress.setStatus(String.format("Scanned %d users, %s %d users", scanned.get(),
+                deactivate.isDryRun() ? "found inactive" : "deactivated", countDeactivated()));
+        progress.setPercentage(100);
+        progress.setCompletedSuccessfully(true);
+    }
+
+    long getScanned() {
+        return scanned.get();
+    }
+
+    List<UserBulkItemBean> getResults() {
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    private boolean isInactive(
+            final User user) {
+
+        final LoginInfo loginInfo = loginManager.getLoginInfo(user.getName());
+        final Date lastLogin = loginInfo != null ? loginInfo.getLastSuccessfulLoginDate() : null;
+
+        if (lastLogin == null ? !deactivate.isIncludeNeverLoggedIn() : lastLogin.getTime() > thresholdInMillis) {
+            return false;
+        }
+
+        final Collection<String> excludedGroups = deactivate.getExcludedGroups();
+        return excludedGroups == null || excludedGroups.stream()
+                .noneMatch(group -> crowdService.isUserMemberOfGroup(user.getName(), group));
+    }
+
+    private int deactivate(
+            final List<String> usernames) {
+
+        if (deactivate.isDryRun()) {
+            usernames.forEach(username -> results.add(
+                    new UserBulkItemBean(username, UserBulkItemBean.Status.INACTIVE, null)));
+            return 0;
+        }
+
+        int deactivated = 0;
+
+        for (int i = 0; i < usernames.size(); i += DEACTIVATE_BATCH_SIZE) {
+            final List<String> batch = usernames.subList(i, Math.min(i + DEACTIVATE_BATCH_SIZE, usernames.size()));
+            final List<UserBulkItemBean> batchResults = transactionTemplate.execute(() -> {
+                final List<UserBulkItemBean> deactivateResults = new ArrayList<>(batch.size());
+                batch.forEach(username -> deactivateResults.add(deactivate(username)));
+                return deactivateResults;
+            });
+
+            results.addAll(batchResults);
+            deactivated += (int) batchResults.stream()
+                    .filter(result -> UserBulkItemBean.Status.DEACTIVATED.equals(result.getStatus()))
+                    .count();
+        }
+
+        return deactivated;
+    }
+
+    private UserBulkItemBean deactivate(
+            final String username) {
+
+        try {
+            final ConfluenceUser user = userAccessor.getUserByName(username);
+
+            if (user == null) {
+                return new UserBulkItemBean(username, UserBulkItemBean.Status.FAILED,
+                        String.format("User %s cannot be found", username));
+            }
+
+            userAccessor.deactivateUser(user);
+            log.info("Deactivated user {} because of inactivity", username);
+            return new UserBulkItemBean(username, UserBulkItemBean.Status.DEACTIVATED, null);
+        } catch (RuntimeException e) {
+            log.warn("Failed to deactivate user {}", username, e);
+            return new UserBulkItemBean(username, UserBulkItemBean.Status.FAILED, String.format(
+                    "User %s cannot be deactivated: %s", username, e.getMessage()));
+        }
+    }
+
+    private int countDeactivated() {
+        synchronized (results) {
+            return (int) results.stream()
+                    .filter(result -> !UserBulkItemBean.Status.FAILED.equals(result.getStatus()))
+                    .count();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.confluence.user.ConfluenceUser;
+import com.atlassian.confluence.user.UserAccessor;
+import com.atlassian.confluence.util.longrunning.ConfluenceAbstractLongRunningTask;
+import com.atlassian.user.EntityException;
+import de.aservo.confapi.confluence.model.UserBulkItemBean;
+import de.aservo.confapi.confluence.model.UserRenameBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Renames a batch of users in the background.
+ *
+ * Renaming a user rewrites the references in the content, which can take long on large instances.
+ */
+class UsersRenameLongRunningTask extends ConfluenceAbstractLongRunningTask {
+
+    private static final Logger log = LoggerFactory.getLogger(UsersRenameLongRunningTask.class);
+
+    private final UserAccessor userAccessor;
+    private final List<UserRenameBean> renames;
+    private final List<UserBulkItemBean> results;
+
+    UsersRenameLongRunningTask(
+            final UserAccessor userAccessor,
+            final List<UserRenameBean> renames) {
+
+        this.userAccessor = userAccessor;
+        this.renames = new ArrayList<>(renames);
+        this.results = Collections.synchronizedList(new ArrayList<>(renames.size()));
+    }
+
+    @Override
+    public String getName() {
+        return String.format("Renaming %d users", renames.size());
+    }
+
+    @Override
+    protected void runInternal() {
+        progress.setTotalObjects(renames.size());
+
+        for (UserRenameBean rename : renames) {
+            results.add(rename(rename));
+            progress.setCurrentCount(results.size());
+            progress.setPercentage(results.size() * 100 / renames.size());
+        }
+
+        progress.setStatus(String.format("Renamed %d users", renames.size()));
+        progress.setCompletedSuccessfully(true);
+    }
+
+    List<UserBulkItemBean> getResults() {
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    private UserBulkItemBean rename(
+            final UserRenameBean rename) {
+
+        final String username = rename.getUsername();
+
+        try {
+            final ConfluenceUser user = userAccessor.getUserByName(username);
+
+            if (user == null) {
+                return new UserBulkItemBean(username, UserBulkItemBean.Status.FAILED,
+                        String.format("User %s cannot be found", username));
+            }
+
+            userAccessor.renameUser(user, rename.getNewUsername());
+            log.info("Renamed user {} to {}", username, rename.getNewUsername());
+            return new UserBulkItemBean(username, UserBulkItemBean.Status.RENAMED, null);
+        } catch (EntityException | RuntimeException e) {
+            log.warn("Failed to rename user {} to {}", username, rename.getNewUsername(), e);
+            return new UserBulkItemBean(username, UserBulkItemBean.Status.FAILED, String.format(
+                    "User %s cannot be renamed to %s: %s", username, rename.getNewUsername(), e.getMessage()));
+        }
+    }
+
+}
@@ -1,40 +1,174 @@
 package de.aservo.confapi.confluence.service;
 
+import com.atlassian.confluence.security.login.LoginManager;
 import com.atlassian.confluence.user.ConfluenceUser;
 import com.atlassian.confluence.user.UserAccessor;
+import com.atlassian.confluence.util.longrunning.LongRunningTaskId;
+import com.atlassian.confluence.util.longrunning.LongRunningTaskManager;
+import com.atlassian.core.task.longrunning.LongRunningTask;
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.embedded.api.PasswordCredential;
+import com.atlassian.crowd.embedded.api.Query;
+import com.atlassian.crowd.manager.directory.DirectoryManager;
+import com.atlassian.crowd.password.factory.PasswordEncoderFactory;
+import com.atlassian.crowd.search.EntityDescriptor;
+import com.atlassian.crowd.search.builder.QueryBuilder;
+import com.atlassian.crowd.search.builder.Restriction;
+import com.atlassian.crowd.search.query.entity.restriction.NullRestrictionImpl;
+import com.atlassian.crowd.search.query.entity.restriction.constants.UserTermKeys;
 import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
 import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atlassian.sal.api.transaction.TransactionTemplate;
+import com.atlassian.security.password.DefaultPasswordEncoder;
+import com.atlassian.security.password.PasswordEncoder;
+import com.atlassian.sal.api.user.UserKey;
 import com.atlassian.user.EntityException;
 import com.atlassian.user.User;
 import com.atlassian.user.UserManager;
 import com.atlassian.user.impl.DefaultUser;
+import com.atlassian.user.security.password.Credential;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.gson.stream.JsonWriter;
+import de.aservo.confapi.commons.constants.ConfAPI;
 import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.InternalServerErrorException;
 import de.aservo.confapi.commons.exception.NotFoundException;
+import de.aservo.confapi.commons.exception.ServiceUnavailableException;
 import de.aservo.confapi.commons.model.UserBean;
 import de.aservo.confapi.commons.service.api.UsersService;
+import de.aservo.confapi.confluence.constants.ConfluenceConfAPI;
+import de.aservo.confapi.confluence.model.UserBulkItemBean;
+import de.aservo.confapi.confluence.model.UserRenameBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateQueueBean;
+import de.aservo.confapi.confluence.model.UsersBulkBean;
+import de.aservo.confapi.confluence.model.UsersRenameQueueBean;
 import de.aservo.confapi.confluence.model.util.UserBeanUtil;
+import de.aservo.confapi.confluence.service.api.ConfluenceUsersService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static com.atlassian.crowd.directory.AbstractInternalDirectory.ATTRIBUTE_PASSWORD_HISTORY_COUNT;
+import static com.atlassian.crowd.directory.AbstractInternalDirectory.ATTRIBUTE_PASSWORD_REGEX;
+import static com.atlassian.crowd.directory.AbstractInternalDirectory.ATTRIBUTE_USER_ENCRYPTION_METHOD;
 
 import static de.aservo.confapi.commons.util.BeanValidationUtil.validate;
+import static de.aservo.confapi.confluence.util.HttpUtil.createRestUri;
+import static de.aservo.confapi.confluence.util.HttpUtil.getUser;
+import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
 @Component
-@ExportAsService(UsersService.class)
-public class UsersServiceImpl implements UsersService {
+@ExportAsService({UsersService.class, ConfluenceUsersService.class, LifecycleAware.class})
+public class UsersServiceImpl implements ConfluenceUsersService, LifecycleAware {
+
+    private static final Logger log = LoggerFactory.getLogger(UsersServiceImpl.class);
+
+    public static final int BULK_BATCH_SIZE = 100;
+    public static final int LIST_CHUNK_SIZE = 500;
+    public static final int RENAME_MAX_USERS_PER_TASK = 1000;
+    public static final int RENAME_MAX_RUNNING_TASKS = 2;
+    public static final int DEACTIVATE_MAX_RUNNING_TASKS = 1;
+    public static final int RETRY_AFTER_IN_SECONDS = 30;
+    public static final int PASSWORDS_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    public static final int PASSWORDS_BATCH_SIZE = 20;
+    public static final double PASSWORDS_PER_SECOND = 200.0;
+
+    public static final String FIELD_USERNAME = "username";
+    public static final String FIELD_FULL_NAME = "fullName";
+    public static final String FIELD_EMAIL = "email";
+    public static final String FIELD_ACTIVE = "active";
+    public static final String FIELD_DIRECTORY_ID = "directoryId";
+    public static final Set<String> FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            FIELD_USERNAME, FIELD_FULL_NAME, FIELD_EMAIL, FIELD_ACTIVE, FIELD_DIRECTORY_ID)));
 
     private final UserManager userManager;
 
     private final UserAccessor userAccessor;
 
+    private final TransactionTemplate transactionTemplate;
+
+    private final CrowdService crowdService;
+
+    private final CrowdDirectoryService crowdDirectoryService;
+
+    private final DirectoryManager directoryManager;
+
+    private final LongRunningTaskManager longRunningTaskManager;
+
+    private final LoginManager loginManager;
+
+    private final UserLookupCache userLookupCache;
+
+    private final Set<LongRunningTaskId> renameTaskIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<LongRunningTaskId> deactivateTaskIds = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService passwordEncodeExecutor;
+
     @Inject
     public UsersServiceImpl(
             @ComponentImport final UserManager userManager,
-            @ComponentImport final UserAccessor userAccessor) {
+            @ComponentImport final UserAccessor userAccessor,
+            @ComponentImport final TransactionTemplate transactionTemplate,
+            @ComponentImport final CrowdService crowdService,
+            @ComponentImport final CrowdDirectoryService crowdDirectoryService,
+            @ComponentImport final DirectoryManager directoryManager,
+            @ComponentImport final LongRunningTaskManager longRunningTaskManager,
+            @ComponentImport final LoginManager loginManager,
+            final UserLookupCache userLookupCache) {
 
         this.userManager = userManager;
         this.userAccessor = userAccessor;
+        this.transactionTemplate = transactionTemplate;
+        this.crowdService = crowdService;
+        this.crowdDirectoryService = crowdDirectoryService;
+        this.directoryManager = directoryManager;
+        this.longRunningTaskManager = longRunningTaskManager;
+        this.loginManager = loginManager;
+        this.userLookupCache = userLookupCache;
+        this.passwordEncodeExecutor = Executors.newFixedThreadPool(PASSWORDS_PARALLELISM, runnable -> {
+            final Thread thread = new Thread(runnable, "confapi-password-encode");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onStart() {
+    }
+
+    @Override
+    public void onStop() {
+        passwordEncodeExecutor.shutdownNow();
     }
 
     @Override
@@ -51,58 +185,650 @@ public class UsersServiceImpl implements UsersService {
             final UserBean userBean) {
 
         validate(userBean);
-        User user = findConfluenceUser(userName);
+        final User user = findConfluenceUser(userName);
+
+        if (user == null) {
+            throw new NotFoundException(String.format("User %s cannot be found", userName));
+        }
+
+        return updateUser(user, userBean);
+    }
+
+    @Override
+    public UserBean updatePassword(
+            final String username,
+            final String password) throws NotFoundException, BadRequestException {
+
+        final User user = findConfluenceUser(username);
+        alterPassword(user, password);
+
+        return UserBeanUtil.toUserBean(user);
+    }
+
+    @Override
+    public void validateUsersQuery(
+            final String directory,
+            final String group,
+            final Set<String> fields,
+            final String cursor,
+            final int limit) {
+
+        if (limit <= 0) {
+            throw new BadRequestException("The limit must be a positive number");
+        }
+
+        if (fields != null) {
+            for (String field : fields) {
+                if (!FIELDS.contains(field)) {
+                    throw new BadRequestException(String.format(
+                            "Given field '%s' is not supported, use any of %s", field, FIELDS));
+                }
+            }
+        }
+
+        decodeCursor(cursor);
+
+        if (directory != null) {
+            findDirectory(directory);
+        }
+
+        if (group != null && crowdService.getGroup(group) == null) {
+            throw new NotFoundException(String.format("Group %s cannot be found", group));
+        }
+    }
+
+    @Override
+    public void writeUsers(
+            final Writer writer,
+            final String directory,
+            final String group,
+            final Boolean active,
+            final Set<String> fields,
+            final String cursor,
+            final int limit) throws IOException {
+
+        validateUsersQuery(directory, group, fields, cursor, limit);
+
+        final Set<String> selectedFields = fields == null || fields.isEmpty() ? FIELDS : fields;
+        final Long directoryId = directory != null ? findDirectory(directory).getId() : null;
+        int index = decodeCursor(cursor);
+        int written = 0;
+        boolean exhausted = false;
+
+        final JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.beginObject();
+        jsonWriter.name(ConfAPI.USERS).beginArray();
+
+        // search in chunks, so only one chunk of users is held in memory at any time
+        while (written < limit && !exhausted) {
+            final int chunkSize = Math.min(LIST_CHUNK_SIZE, limit - written);
+            int found = 0;
+
+            for (com.atlassian.crowd.embedded.api.User user : crowdService.search(createUsersQuery(group, active, index, chunkSize))) {
+                found++;
+
+                if ((directoryId == null || directoryId == user.getDirectoryId())
+                        && (active == null || group == null || active == user.isActive())) {
+                    writeUser(jsonWriter, user, selectedFields);
+                    written++;
+                }
+            }
+
+            index += found;
+            exhausted = found < chunkSize;
+            jsonWriter.flush();
+        }
+
+        jsonWriter.endArray();
+        jsonWriter.name("nextCursor");
+        if (exhausted) {
+            jsonWriter.nullValue();
+        } else {
+            jsonWriter.value(encodeCursor(index));
+        }
+        jsonWriter.endObject();
+        jsonWriter.flush();
+    }
+
+    private Query<com.atlassian.crowd.embedded.api.User> createUsersQuery(
+            final String group,
+            final Boolean active,
+            final int startIndex,
+            final int maxResults) {
+
+        if (group != null) {
+            // membership queries do not support restrictions, the active flag is filtered afterwards
+            return QueryBuilder.queryFor(com.atlassian.crowd.embedded.api.User.class, EntityDescriptor.user())
+                    .childrenOf(EntityDescriptor.group())
+                    .withName(group)
+                    .startingAt(startIndex)
+                    .returningAtMost(maxResults);
+        }
+
+        return QueryBuilder.queryFor(com.atlassian.crowd.embedded.api.User.class, EntityDescriptor.user())
+                .with(active != null ? Restriction.on(UserTermKeys.ACTIVE).exactlyMatching(active) : NullRestrictionImpl.INSTANCE)
+                .startingAt(startIndex)
+                .returningAtMost(maxResults);
+    }
+
+    private static void writeUser(
+            final JsonWriter jsonWriter,
+            final com.atlassian.crowd.embedded.api.User user,
+            final Set<String> fields) throws IOException {
+
+        jsonWriter.beginObject();
+        if (fields.contains(FIELD_USERNAME)) {
+            jsonWriter.name(FIELD_USERNAME).value(user.getName());
+        }
+        if (fields.contains(FIELD_FULL_NAME)) {
+            jsonWriter.name(FIELD_FULL_NAME).value(user.getDisplayName());
+        }
+        if (fields.contains(FIELD_EMAIL)) {
+            jsonWriter.name(FIELD_EMAIL).value(user.getEmailAddress());
+        }
+        if (fields.contains(FIELD_ACTIVE)) {
+            jsonWriter.name(FIELD_ACTIVE).value(user.isActive());
+        }
+        if (fields.contains(FIELD_DIRECTORY_ID)) {
+            jsonWriter.name(FIELD_DIRECTORY_ID).value(user.getDirectoryId());
+        }
+        jsonWriter.endObject();
+    }
+
+    private Directory findDirectory(
+            final String name) {
+
+        return crowdDirectoryService.findAllDirectories().stream()
+                .filter(directory -> directory.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException(String.format("Directory %s cannot be found", name)));
+    }
+
+    static String encodeCursor(
+            final int index) {
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                String.valueOf(index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int decodeCursor(
+            final String cursor) {
+
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            final int index = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+
+            if (index < 0) {
+                throw new IllegalArgumentException();
+            }
+
+            return index;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(String.format("Given cursor '%s' is not valid", cursor));
+        }
+    }
+
+    @Override
+    public UsersBulkBean setUsers(
+            final Iterator<UserBean> userBeans) {
+
+        final long start = System.currentTimeMillis();
+        final List<UserBulkItemBean> results = new ArrayList<>();
+        final List<UserBean> batch = new ArrayList<>(BULK_BATCH_SIZE);
+        UserBulkItemBean readFailure = null;
+        int read = 0;
+
+        try {
+            while (userBeans.hasNext()) {
+                batch.add(userBeans.next());
+                read++;
+
+                if (batch.size() == BULK_BATCH_SIZE) {
+                    // one transaction per batch instead of one per user
+                    results.addAll(transactionTemplate.execute(() -> setUsers(batch)));
+                    batch.clear();
+                }
+            }
+        } catch (BadRequestException e) {
+            // nothing has been applied yet, so the whole request can simply be rejected
+            if (read == 0) {
+                throw e;
+            }
+
+            // earlier batches are already committed, so report what has been applied instead of failing the request
+            log.warn("Stopped applying users after {} users, because the next user cannot be read", read, e);
+            readFailure = new UserBulkItemBean(null, UserBulkItemBean.Status.FAILED, String.format(
+                    "User %d cannot be read, it and all following users have not been applied: %s", read + 1, e.getMessage()));
+        }
+
+        if (!batch.isEmpty()) {
+            results.addAll(transactionTemplate.execute(() -> setUsers(batch)));
+        }
+
+        if (readFailure != null) {
+            results.add(readFailure);
+        }
+
+        final long elapsedTimeInMillis = System.currentTimeMillis() - start;
+        final UsersBulkBean usersBulkBean = new UsersBulkBean();
+        usersBulkBean.setResults(results);
+        usersBulkBean.setCreated(countResults(results, UserBulkItemBean.Status.CREATED));
+        usersBulkBean.setUpdated(countResults(results, UserBulkItemBean.Status.UPDATED));
+        usersBulkBean.setFailed(countResults(results, UserBulkItemBean.Status.FAILED));
+        usersBulkBean.setElapsedTimeInMillis(elapsedTimeInMillis);
+        usersBulkBean.setUsersPerSecond(elapsedTimeInMillis > 0 ? results.size() * 1000.0 / elapsedTimeInMillis : results.size());
+
+        log.info("Applied {} users in {} ms ({} created, {} updated, {} failed)", results.size(), elapsedTimeInMillis,
+                usersBulkBean.getCreated(), usersBulkBean.getUpdated(), usersBulkBean.getFailed());
+
+        return usersBulkBean;
+    }
+
+    @Override
+    public UsersBulkBean setPasswords(
+            final List<UserBean> userBeans) {
+
+        if (userBeans == null || userBeans.isEmpty()) {
+            throw new BadRequestException("At least one user must be given");
+        }
+
+        final long start = System.currentTimeMillis();
+
+        // the lookups need the session of the request, only the expensive encoding runs in parallel
+        final Map<Long, Directory> directories = new HashMap<>();
+        final List<PasswordChange> passwordChanges = userBeans.stream()
+                .map(userBean -> preparePasswordChange(userBean, directories))
+                .collect(Collectors.toList());
+        encodePasswords(passwordChanges);
+
+        final RateLimiter rateLimiter = RateLimiter.create(PASSWORDS_PER_SECOND);
+        final List<UserBulkItemBean> results = new ArrayList<>(passwordChanges.size());
+
+        for (int i = 0; i < passwordChanges.size(); i += PASSWORDS_BATCH_SIZE) {
+            final List<PasswordChange> batch = passwordChanges.subList(i, Math.min(i + PASSWORDS_BATCH_SIZE, passwordChanges.size()));
+            final int writes = (int) batch.stream().filter(passwordChange -> passwordChange.error == null).count();
+
+            // wait before opening the transaction, so that it is only open while the passwords are written
+            if (writes > 0) {
+                rateLimiter.acquire(writes);
+            }
+
+            results.addAll(transactionTemplate.execute(() -> batch.stream()
+                    .map(this::setPassword)
+                    .collect(Collectors.toList())));
+        }
+
+        final long elapsedTimeInMillis = System.currentTimeMillis() - start;
+        final UsersBulkBean usersBulkBean = new UsersBulkBean();
+        usersBulkBean.setResults(results);
+        usersBulkBean.setUpdated(countResults(results, UserBulkItemBean.Status.UPDATED));
+        usersBulkBean.setFailed(countResults(results, UserBulkItemBean.Status.FAILED));
+        usersBulkBean.setElapsedTimeInMillis(elapsedTimeInMillis);
+        usersBulkBean.setUsersPerSecond(elapsedTimeInMillis > 0 ? results.size() * 1000.0 / elapsedTimeInMillis : results.size());
+
+        log.info("Set passwords of {} users in {} ms ({} failed)", results.size(), elapsedTimeInMillis, usersBulkBean.getFailed());
+
+        return usersBulkBean;
+    }
+
+    private PasswordChange preparePasswordChange(
+            final UserBean userBean,
+            final Map<Long, Directory> directories) {
+
+        final String username = userBean.getUsername();
+
+        try {
+            if (isBlank(username) || isBlank(userBean.getPassword())) {
+                throw new BadRequestException("The username and the password of the user must be given");
+            }
+
+            final com.atlassian.crowd.embedded.api.User user = crowdService.getUser(username);
+
+            if (user == null) {
+                throw new NotFoundException(String.format("User %s cannot be found", username));
+            }
+
+            final Directory directory = directories.computeIfAbsent(user.getDirectoryId(), crowdDirectoryService::findDirectoryById);
+            return new PasswordChange(username, user, userBean.getPassword(), isPasswordEncodable(directory));
+        } catch (RuntimeException e) {
+            log.debug("Failed to look up user {} for setting the password", username, e);
+            return new PasswordChange(username, e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes the passwords that can be stored encoded in parallel, outside of any transaction.
+     */
+    private void encodePasswords(
+            final List<PasswordChange> passwordChanges) {
 
-        if (isNotBlank(userBean.getUsername()) && !userName.equals(userBean.getUsername())) {
+        final List<Future<?>> encodings = passwordChanges.stream()
+                .filter(passwordChange -> passwordChange.error == null && passwordChange.encodable)
+                .map(passwordChange -> passwordEncodeExecutor.submit(passwordChange::encode))
+                .collect(Collectors.toList());
+
+        try {
+            for (Future<?> encoding : encodings) {
+                encoding.get();
+            }
+        } catch (InterruptedException e) {
+            encodings.forEach(encoding -> encoding.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException("Interrupted while encoding the passwords");
+        } catch (ExecutionException e) {
+            log.error("Failed to encode the passwords", e.getCause());
+            throw new InternalServerErrorException(String.format("Passwords cannot be encoded: %s", e.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * Checks whether passwords of the given directory can be encoded beforehand and stored as they are.
+     *
+     * This is only the case for internal directories with the default encoder. Directories with a password policy
+     * need the plain password to check it, other directories encode the password themselves.
+     */
+    static boolean isPasswordEncodable(
+            final Directory directory) {
+
+        if (directory == null || !DirectoryType.INTERNAL.equals(directory.getType())) {
+            return false;
+        }
+
+        final Map<String, String> attributes = directory.getAttributes();
+        final String passwordHistoryCount = attributes.get(ATTRIBUTE_PASSWORD_HISTORY_COUNT);
+
+        return PasswordEncoderFactory.ATLASSIAN_SECURITY_ENCODER.equals(attributes.get(ATTRIBUTE_USER_ENCRYPTION_METHOD))
+                && isBlank(attributes.get(ATTRIBUTE_PASSWORD_REGEX))
+                && (isBlank(passwordHistoryCount) || "0".equals(passwordHistoryCount));
+    }
+
+    private UserBulkItemBean setPassword(
+            final PasswordChange passwordChange) {
+
+        if (passwordChange.error != null) {
+            return new UserBulkItemBean(passwordChange.username, UserBulkItemBean.Status.FAILED, passwordChange.error);
+        }
+
+        try {
+            if (passwordChange.encodedPassword != null) {
+                directoryManager.updateUserCredential(passwordChange.user.getDirectoryId(), passwordChange.user.getName(),
+                        PasswordCredential.encrypted(passwordChange.encodedPassword));
+            } else {
+                crowdService.updateUserCredential(passwordChange.user, passwordChange.password);
+            }
+
+            return new UserBulkItemBean(passwordChange.username, UserBulkItemBean.Status.UPDATED, null);
+        } catch (Exception e) {
+            log.debug("Failed to set password of user {}", passwordChange.username, e);
+            return new UserBulkItemBean(passwordChange.username, UserBulkItemBean.Status.FAILED, e.getMessage());
+        }
+    }
+
+    private List<UserBulkItemBean> setUsers(
+            final List<UserBean> userBeans) {
+
+        final List<UserBulkItemBean> results = new ArrayList<>(userBeans.size());
+
+        for (UserBean userBean : userBeans) {
+            results.add(setUser(userBean));
+        }
+
+        return results;
+    }
+
+    private UserBulkItemBean setUser(
+            final UserBean userBean) {
+
+        final String username = userBean.getUsername();
+
+        try {
+            if (isBlank(username)) {
+                throw new BadRequestException("The username of the user must be given");
+            }
+
+            validate(userBean);
+            final User user = findConfluenceUser(username);
+
+            if (user != null) {
+                updateUser(user, userBean);
+                return new UserBulkItemBean(username, UserBulkItemBean.Status.UPDATED, null);
+            }
+
+            createUser(userBean);
+            return new UserBulkItemBean(username, UserBulkItemBean.Status.CREATED, null);
+        } catch (RuntimeException e) {
+            log.debug("Failed to apply user {}", username, e);
+            return new UserBulkItemBean(username, UserBulkItemBean.Status.FAILED, e.getMessage());
+        }
+    }
+
+    private void createUser(
+            final UserBean userBean) {
+
+        final DefaultUser user = new DefaultUser(userBean.getUsername(), userBean.getFullName(), userBean.getEmail());
+        final Credential credential = isNotBlank(userBean.getPassword())
+                ? Credential.unencrypted(userBean.getPassword())
+                : Credential.NONE;
+
+        userAccessor.createUser(user, credential);
+    }
+
+    /**
+     * Applies the changes of the given user bean to the already looked up user.
+     *
+     * Only fields that differ from the current user are written, all of them with a single save.
+     * If nothing differs, nothing is written at all. Passwords cannot be compared and are always set if given.
+     */
+    private UserBean updateUser(
+            final User existingUser,
+            final UserBean userBean) {
+
+        User user = existingUser;
+
+        // usernames are stored in lower case and compared case-insensitively, so a different case is no rename
+        if (isNotBlank(userBean.getUsername()) && !user.getName().equalsIgnoreCase(userBean.getUsername())) {
             try {
-                user = userAccessor.renameUser((ConfluenceUser)user, userBean.getUsername());
+                user = userAccessor.renameUser((ConfluenceUser) user, userBean.getUsername());
+                userLookupCache.invalidate(existingUser.getName());
             } catch (EntityException e) {
                 throw new BadRequestException(String.format("Error trying to update username for user: %s. " +
                         "New username might already exist, operation is not permitted or the crowd service could not " +
                         "handle the request.", user.getName()));
             }
         }
-        // userManager.saveUser will convert this user into a ConfluenceUser
-        final DefaultUser updateUser = new DefaultUser(user);
 
-        if (isNotBlank(userBean.getFullName())) {
-            updateUser.setFullName(userBean.getFullName());
-        }
-        if (isNotBlank(userBean.getEmail())) {
-            updateUser.setEmail(userBean.getEmail());
-        }
+        final boolean fullNameChanged = isNotBlank(userBean.getFullName())
+                && !userBean.getFullName().equals(user.getFullName());
+        final boolean emailChanged = isNotBlank(userBean.getEmail())
+                && !userBean.getEmail().equals(user.getEmail());
+
         if (isNotBlank(userBean.getPassword())) {
-            updatePassword(userName, userBean.getPassword());
+            alterPassword(user, userBean.getPassword());
+        }
+
+        if (fullNameChanged || emailChanged) {
+            // userManager.saveUser will convert this user into a ConfluenceUser
+            final DefaultUser updateUser = new DefaultUser(user);
+
+            if (fullNameChanged) {
+                updateUser.setFullName(userBean.getFullName());
+            }
+            if (emailChanged) {
+                updateUser.setEmail(userBean.getEmail());
+            }
+
+            try {
+                userManager.saveUser(updateUser);
+                userLookupCache.invalidate(user.getName());
+            } catch (EntityException e) {
+                throw new BadRequestException(String.format("User %s cannot be updated", user.getName()));
+            }
+
+            user = updateUser;
         }
 
+        return UserBeanUtil.toUserBean(user);
+    }
+
+    private void alterPassword(
+            final User user,
+            final String password) {
+
         try {
-            userManager.saveUser(updateUser);
+            userManager.alterPassword(user, password);
         } catch (EntityException e) {
-            throw new BadRequestException(String.format("User %s cannot be updated", userName));
+            throw new BadRequestException(String.format("Password for user %s cannot be set", user.getName()));
+        }
+    }
+
+    @Override
+    public synchronized URI renameUsersAsynchronously(
+            final List<UserRenameBean> userRenameBeans) {
+
+        if (userRenameBeans == null || userRenameBeans.isEmpty()) {
+            throw new BadRequestException("At least one user rename must be given");
+        }
+        if (userRenameBeans.size() > RENAME_MAX_USERS_PER_TASK) {
+            throw new BadRequestException(String.format(
+                    "At most %d users can be renamed with one request", RENAME_MAX_USERS_PER_TASK));
         }
+        userRenameBeans.forEach(userRenameBean -> validate(userRenameBean));
 
-        return UserBeanUtil.toUserBean(updateUser);
+        // renames are expensive, so only allow a few of them at the same time
+        removeCompletedTasks(renameTaskIds);
+
+        if (renameTaskIds.size() >= RENAME_MAX_RUNNING_TASKS) {
+            throw new ServiceUnavailableException(new IllegalStateException(String.format(
+                    "There are already %d user renames running", renameTaskIds.size())), RETRY_AFTER_IN_SECONDS);
+        }
+
+        final UsersRenameLongRunningTask task = new UsersRenameLongRunningTask(userAccessor, userRenameBeans);
+        final LongRunningTaskId taskId = longRunningTaskManager.startLongRunningTask(getUser(), task);
+        renameTaskIds.add(taskId);
+        log.info("Started asynchronous task '{}' for renaming {} users", taskId, userRenameBeans.size());
+
+        return createRestUri(ConfAPI.USERS, ConfluenceConfAPI.USERS_RENAME_QUEUE, taskId.toString());
     }
 
     @Override
-    public UserBean updatePassword(
-            final String username,
-            final String password) throws NotFoundException, BadRequestException {
+    public UsersRenameQueueBean getRenameQueue(
+            final UUID uuid) {
 
-        final User user = findConfluenceUser(username);
+        final LongRunningTaskId taskId = LongRunningTaskId.valueOf(uuid.toString());
+        final LongRunningTask task = longRunningTaskManager.getLongRunningTask(getUser(), taskId);
 
-        try {
-            userManager.alterPassword(user, password);
-        } catch (EntityException e) {
-            throw new BadRequestException(String.format("Password for user %s cannot be set", username));
+        if (task == null) {
+            return null;
         }
 
-        return UserBeanUtil.toUserBean(user);
+        if (!(task instanceof UsersRenameLongRunningTask)) {
+            throw new BadRequestException(String.format(
+                    "Given task uuid '%s' does not belong to a user rename task", uuid));
+        }
+
+        final UsersRenameQueueBean usersRenameQueueBean = new UsersRenameQueueBean();
+        usersRenameQueueBean.setPercentageComplete(task.getPercentageComplete());
+        usersRenameQueueBean.setElapsedTimeInMillis(task.getElapsedTime());
+        usersRenameQueueBean.setEstimatedTimeRemainingInMillis(task.getEstimatedTimeRemaining());
+        usersRenameQueueBean.setResults(((UsersRenameLongRunningTask) task).getResults());
+
+        return usersRenameQueueBean;
+    }
+
+    @Override
+    public synchronized URI deactivateUsersAsynchronously(
+            final UsersDeactivateBean usersDeactivateBean) {
+
+        validate(usersDeactivateBean);
+
+        if (usersDeactivateBean.getInactiveDays() < 1) {
+            throw new BadRequestException("The number of inactive days must be at least 1");
+        }
+
+        // each task scans all active users, so running several of them at the same time only adds load
+        removeCompletedTasks(deactivateTaskIds);
+
+        if (deactivateTaskIds.size() >= DEACTIVATE_MAX_RUNNING_TASKS) {
+            throw new ServiceUnavailableException(new IllegalStateException(
+                    "There is already a user deactivation running"), RETRY_AFTER_IN_SECONDS);
+        }
+
+        final UsersDeactivateLongRunningTask task = new UsersDeactivateLongRunningTask(
+                crowdService, userAccessor, loginManager, transactionTemplate, usersDeactivateBean);
+        final LongRunningTaskId taskId = longRunningTaskManager.startLongRunningTask(getUser(), task);
+        deactivateTaskIds.add(taskId);
+        log.info("Started asynchronous task '{}' for deactivating users inactive for {} days",
+                taskId, usersDeactivateBean.getInactiveDays());
+
+        return createRestUri(ConfAPI.USERS, ConfluenceConfAPI.USERS_DEACTIVATE_QUEUE, taskId.toString());
+    }
+
+    @Override
+    public UsersDeactivateQueueBean getDeactivateQueue(
+            final UUID uuid) {
+
+        final LongRunningTaskId taskId = LongRunningTaskId.valueOf(uuid.toString());
+        final LongRunningTask task = longRunningTaskManager.getLongRunningTask(getUser(), taskId);
+
+        if (task == null) {
+            return null;
+        }
+
+        if (!(task instanceof UsersDeactivateLongRunningTask)) {
+            throw new BadRequestException(String.format(
+                    "Given task uuid '%s' does not belong to a user deactivation task", uuid));
+        }
+
+        final UsersDeactivateLongRunningTask deactivateTask = (UsersDeactivateLongRunningTask) task;
+        final List<UserBulkItemBean> results = deactivateTask.getResults();
+
+        final UsersDeactivateQueueBean usersDeactivateQueueBean = new UsersDeactivateQueueBean();
+        usersDeactivateQueueBean.setPercentageComplete(task.getPercentageComplete());
+        usersDeactivateQueueBean.setElapsedTimeInMillis(task.getElapsedTime());
+        usersDeactivateQueueBean.setEstimatedTimeRemainingInMillis(task.getEstimatedTimeRemaining());
+        usersDeactivateQueueBean.setScanned(deactivateTask.getScanned());
+        usersDeactivateQueueBean.setDeactivated(countResults(results, UserBulkItemBean.Status.DEACTIVATED));
+        usersDeactivateQueueBean.setFailed(countResults(results, UserBulkItemBean.Status.FAILED));
+        usersDeactivateQueueBean.setResults(results);
+
+        return usersDeactivateQueueBean;
+    }
+
+    private void removeCompletedTasks(
+            final Set<LongRunningTaskId> taskIds) {
+
+        taskIds.removeIf(taskId -> {
+            final LongRunningTask task = longRunningTaskManager.getLongRunningTask(getUser(), taskId);
+            return task == null || task.isComplete();
+        });
+    }
+
+    private static int countResults(
+            final List<UserBulkItemBean> results,
+            final UserBulkItemBean.Status status) {
+
+        return (int) results.stream().filter(result -> status.equals(result.getStatus())).count();
     }
 
     private User findConfluenceUser(
             final String username) {
 
+        final UserKey cachedUserKey = userLookupCache.get(username);
+
+        if (cachedUserKey != null) {
+            // the user is always loaded by its key, so updates are applied to the current state of the user
+            final ConfluenceUser cachedUser = userAccessor.getUserByKey(cachedUserKey);
+
+            if (cachedUser != null && cachedUser.getName().equalsIgnoreCase(username)) {
+                return cachedUser;
+            }
+
+            userLookupCache.invalidate(username);
+        }
+
         final ConfluenceUser confluenceUser;
 
         try {
@@ -112,7 +838,52 @@ public class UsersServiceImpl implements UsersService {
             throw new NotFoundException(String.format("User %s cannot be found", username));
         }
 
+        // unknown users are not cached, so that newly created users are found right away
+        if (confluenceUser != null) {
+            userLookupCache.put(username, confluenceUser.getKey());
+        }
+
         return confluenceUser;
     }
 
+    private static class PasswordChange {
+
+        private static final PasswordEncoder PASSWORD_ENCODER = DefaultPasswordEncoder.getDefaultInstance();
+
+        private final String username;
+        private final com.atlassian.crowd.embedded.api.User user;
+        private final String password;
+        private final boolean encodable;
+        private volatile String encodedPassword;
+        private volatile String error;
+
+        private PasswordChange(
+                final String username,
+                final com.atlassian.crowd.embedded.api.User user,
+                final String password,
+                final boolean encodable) {
+
+            this.username = username;
+            this.user = user;
+            this.password = password;
+            this.encodable = encodable;
+        }
+
+        private PasswordChange(
+                final String username,
+                final String error) {
+
+            this(username, null, null, false);
+            this.error = error;
+        }
+
+        private void encode() {
+            try {
+                encodedPassword = PASSWORD_ENCODER.encodePassword(password);
+            } catch (RuntimeException e) {
+                error = String.format("Password for user %s cannot be encoded", username);
+            }
+        }
+    }
+
 }
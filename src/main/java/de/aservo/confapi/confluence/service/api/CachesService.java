@@ -1,16 +1,100 @@
 package de.aservo.confapi.confluence.service.api;
 
 import de.aservo.confapi.confluence.model.CacheBean;
+import de.aservo.confapi.confluence.model.CacheHeapSizeMode;
+import de.aservo.confapi.confluence.model.CacheProfileBean;
 import de.aservo.confapi.confluence.model.CachesBean;
+import de.aservo.confapi.confluence.model.CachesClusterBean;
+
+import java.io.IOException;
+import java.io.Writer;
 
 public interface CachesService {
 
     CachesBean getAllCaches();
 
+    /**
+     * Returns the local cache information.
+     *
+     * @param heapSizeMode how to determine the heap size of the caches
+     * @return the caches
+     */
+    CachesBean getAllCaches(CacheHeapSizeMode heapSizeMode);
+
+    /**
+     * Collects the cache information of all cluster nodes.
+     *
+     * @return the caches per node and the caches summed up over all nodes
+     */
+    CachesClusterBean getAllCachesCluster();
+
+    /**
+     * Collects the cache information of all cluster nodes.
+     *
+     * @param heapSizeMode how to determine the heap size of the caches on each node
+     * @return the caches per node and the caches summed up over all nodes
+     */
+    CachesClusterBean getAllCachesCluster(CacheHeapSizeMode heapSizeMode);
+
+    /**
+     * Writes the statistics of all local caches in the OpenMetrics text format.
+     *
+     * The statistics are written directly from the caches without building cache beans first.
+     *
+     * @param writer       the writer to write the metrics to
+     * @param heapSizeMode how to determine the heap size of the caches
+     * @throws IOException if writing fails
+     */
+    void writeCacheMetrics(Writer writer, CacheHeapSizeMode heapSizeMode) throws IOException;
+
     CacheBean getCache(String name);
 
+    /**
+     * Returns the cache information of the given cache.
+     *
+     * @param name         the cache name
+     * @param heapSizeMode how to determine the heap size of the cache
+     * @return the cache
+     */
+    CacheBean getCache(String name, CacheHeapSizeMode heapSizeMode);
+
     void setMaxCacheSize(String name, int newValue);
 
     void flushCache(String name);
 
+    /**
+     * Flushes the given cache.
+     *
+     * If warm-up is requested, the keys currently in the cache are recorded before clearing it
+     * and are loaded again asynchronously at a throttled rate (only for caches having a loader).
+     *
+     * @param name   the cache name
+     * @param warmUp whether to repopulate the cache after flushing
+     */
+    void flushCache(String name, boolean warmUp);
+
+    /**
+     * Returns the stored cache profile.
+     *
+     * @return the cache profile
+     */
+    CacheProfileBean getCacheProfile();
+
+    /**
+     * Stores the given cache profile and applies it to all matching caches of all cluster nodes.
+     *
+     * The stored profile is applied again whenever the plugin starts, e.g. on a newly started cluster node.
+     *
+     * @param cacheProfileBean the cache profile
+     * @return the sizes of the caches the profile has been applied to
+     */
+    CacheProfileBean setCacheProfile(CacheProfileBean cacheProfileBean);
+
+    /**
+     * Applies the stored cache profile to all matching caches of all cluster nodes.
+     *
+     * @return the sizes of the caches the profile has been applied to
+     */
+    CacheProfileBean applyCacheProfile();
+
 }
@@ -0,0 +1,60 @@
+package de.aservo.confapi.confluence.service.api;
+
+import de.aservo.confapi.commons.model.DirectoriesBean;
+import de.aservo.confapi.commons.service.api.DirectoriesService;
+import de.aservo.confapi.confluence.model.DirectoriesApplyBean;
+import de.aservo.confapi.confluence.model.DirectoryLdapConnectorBean;
+
+/**
+ * Confluence specific directory operations in addition to the shared {@link DirectoriesService}.
+ */
+public interface ConfluenceDirectoriesService extends DirectoriesService {
+
+    /**
+     * Creates or updates the given directories, matched by name.
+     *
+     * The connections of all directories are tested concurrently, each with its own timeout, before any directory
+     * is written. If a connection test fails, no directory is written at all.
+     *
+     * @param directoriesBean the directories to create or update
+     * @param testConnection  whether to test the connections before writing
+     * @return the result and the timing per directory
+     */
+    DirectoriesApplyBean applyDirectories(
+            DirectoriesBean directoriesBean,
+            boolean testConnection);
+
+    /**
+     * Returns the LDAP directory with its connection, paging and pooling settings.
+     *
+     * @param id the directory id
+     * @return the LDAP directory
+     */
+    DirectoryLdapConnectorBean getLdapDirectory(
+            long id);
+
+    /**
+     * Updates the LDAP directory, settings that are not given are kept.
+     *
+     * @param id             the directory id
+     * @param ldapBean       the LDAP settings to update
+     * @param testConnection whether to test the connection before writing
+     * @return the updated LDAP directory
+     */
+    DirectoryLdapConnectorBean setLdapDirectory(
+            long id,
+            DirectoryLdapConnectorBean ldapBean,
+            boolean testConnection);
+
+    /**
+     * Adds an LDAP directory, settings that are not given fall back to the Crowd defaults.
+     *
+     * @param ldapBean       the LDAP directory to add
+     * @param testConnection whether to test the connection before writing
+     * @return the added LDAP directory
+     */
+    DirectoryLdapConnectorBean addLdapDirectory(
+            DirectoryLdapConnectorBean ldapBean,
+            boolean testConnection);
+
+}
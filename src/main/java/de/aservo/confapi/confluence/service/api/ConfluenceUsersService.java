@@ -0,0 +1,136 @@
+package de.aservo.confapi.confluence.service.api;
+
+import de.aservo.confapi.commons.model.UserBean;
+import de.aservo.confapi.commons.service.api.UsersService;
+import de.aservo.confapi.confluence.model.UserRenameBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateQueueBean;
+import de.aservo.confapi.confluence.model.UsersBulkBean;
+import de.aservo.confapi.confluence.model.UsersRenameQueueBean;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Confluence specific user operations in addition to the shared {@link UsersService}.
+ */
+public interface ConfluenceUsersService extends UsersService {
+
+    /**
+     * Validates the parameters of a page of users before any of it is written.
+     *
+     * Once the response is streamed, its status cannot be changed anymore, so invalid parameters must be detected
+     * beforehand to be answered with an error status.
+     *
+     * @param directory the name of the directory to filter by, may be null
+     * @param group     the name of the group to filter by, may be null
+     * @param fields    the fields to write, all fields if null or empty
+     * @param cursor    the cursor of the page, the first page if null
+     * @param limit     the maximum number of users to write
+     */
+    void validateUsersQuery(
+            String directory,
+            String group,
+            Set<String> fields,
+            String cursor,
+            int limit);
+
+    /**
+     * Writes a page of users as JSON to the given writer.
+     *
+     * The users are searched and written in chunks, so the memory usage does not depend on the page size.
+     * The written object contains the users and the cursor of the next page, which is null on the last page.
+     *
+     * @param writer    the writer to write the users to
+     * @param directory the name of the directory to filter by, may be null
+     * @param group     the name of the group to filter by, may be null
+     * @param active    the active flag to filter by, may be null
+     * @param fields    the fields to write, all fields if null or empty
+     * @param cursor    the cursor of the page, the first page if null
+     * @param limit     the maximum number of users to write
+     * @throws IOException if writing fails
+     */
+    void writeUsers(
+            Writer writer,
+            String directory,
+            String group,
+            Boolean active,
+            Set<String> fields,
+            String cursor,
+            int limit) throws IOException;
+
+    /**
+     * Creates or updates the given users.
+     *
+     * The users are consumed one by one and applied in batches, each batch within its own transaction.
+     * A failing user does not abort the other users, its error is reported in the result instead.
+     * If a user cannot be read after others have been applied, the reading stops and the failure is reported as the
+     * last result, so that the already committed users are not hidden behind an error response.
+     *
+     * @param userBeans the users to create or update
+     * @return the result per user and the throughput
+     */
+    UsersBulkBean setUsers(
+            Iterator<UserBean> userBeans);
+
+    /**
+     * Sets the passwords of the given users.
+     *
+     * The users are validated and looked up first. Passwords of users in internal directories with the default
+     * encoder and without password policy are then encoded in parallel by a bounded number of workers, outside of
+     * any transaction. Finally, the passwords are written in small batches, each batch within its own transaction,
+     * while a rate limiter between the transactions keeps the number of password writes per second low enough for
+     * the database. Passwords of other users are encoded by their directory while they are written.
+     *
+     * @param userBeans the users with username and password
+     * @return the result per user and the throughput
+     */
+    UsersBulkBean setPasswords(
+            List<UserBean> userBeans);
+
+    /**
+     * Renames the given users in a long-running task.
+     *
+     * Only a limited number of rename tasks may run at the same time.
+     *
+     * @param userRenameBeans the users to rename
+     * @return the URI of the queue of the started task
+     */
+    URI renameUsersAsynchronously(
+            List<UserRenameBean> userRenameBeans);
+
+    /**
+     * Returns the progress and the results so far of a user rename task.
+     *
+     * @param uuid the task uuid
+     * @return the queue information or null if there is no task with the given uuid
+     */
+    UsersRenameQueueBean getRenameQueue(
+            UUID uuid);
+
+    /**
+     * Deactivates the users that have not logged in for the given number of days in a long-running task.
+     *
+     * The active users are scanned and deactivated in chunks. Only one deactivation task may run at the same time.
+     *
+     * @param usersDeactivateBean the inactivity threshold and the users to exclude
+     * @return the URI of the queue of the started task
+     */
+    URI deactivateUsersAsynchronously(
+            UsersDeactivateBean usersDeactivateBean);
+
+    /**
+     * Returns the progress and the results so far of a user deactivation task.
+     *
+     * @param uuid the task uuid
+     * @return the queue information or null if there is no task with the given uuid
+     */
+    UsersDeactivateQueueBean getDeactivateQueue(
+            UUID uuid);
+
+}
@@ -0,0 +1,25 @@
+package de.aservo.confapi.confluence.service.api;
+
+import de.aservo.confapi.confluence.model.DirectoriesOrderBean;
+
+public interface DirectoryOrderService {
+
+    /**
+     * Returns the directories in the order in which users are looked up, with the logins per directory.
+     *
+     * @return the directory order
+     */
+    DirectoriesOrderBean getDirectoriesOrder();
+
+    /**
+     * Sets the order of all directories at once.
+     *
+     * If moving one of the directories fails, the previous order is restored.
+     *
+     * @param directoriesOrderBean all directories in the new order
+     * @return the directory order
+     */
+    DirectoriesOrderBean setDirectoriesOrder(
+            DirectoriesOrderBean directoriesOrderBean);
+
+}
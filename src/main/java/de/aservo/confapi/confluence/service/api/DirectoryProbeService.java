@@ -0,0 +1,20 @@
+package de.aservo.confapi.confluence.service.api;
+
+import de.aservo.confapi.confluence.model.DirectoriesProbeBean;
+import de.aservo.confapi.confluence.model.DirectoriesProbeRequestBean;
+
+public interface DirectoryProbeService {
+
+    /**
+     * Probes the connection of all active directories and, if a test account is given, the authentication.
+     *
+     * The directories are probed concurrently, the probes of one directory one after the other. Probes that have
+     * not completed when the timeout is reached are cancelled and the results of the completed probes returned.
+     *
+     * @param probeRequestBean the test account, the number of probes and the timeout
+     * @return the latency and error rate per directory
+     */
+    DirectoriesProbeBean probeDirectories(
+            DirectoriesProbeRequestBean probeRequestBean);
+
+}
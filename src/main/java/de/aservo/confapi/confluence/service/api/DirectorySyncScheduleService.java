@@ -0,0 +1,26 @@
+package de.aservo.confapi.confluence.service.api;
+
+import de.aservo.confapi.confluence.model.DirectorySyncScheduleBean;
+
+public interface DirectorySyncScheduleService {
+
+    /**
+     * Returns the sync schedule with the last triggered syncs.
+     *
+     * @return the sync schedule
+     */
+    DirectorySyncScheduleBean getSyncSchedule();
+
+    /**
+     * Sets the sync schedule.
+     *
+     * The automatic synchronisation of newly paused directories is paused and the one of directories that are no
+     * longer paused is resumed with their previous interval.
+     *
+     * @param syncScheduleBean the sync schedule
+     * @return the sync schedule
+     */
+    DirectorySyncScheduleBean setSyncSchedule(
+            DirectorySyncScheduleBean syncScheduleBean);
+
+}
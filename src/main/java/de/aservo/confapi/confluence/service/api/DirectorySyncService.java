@@ -0,0 +1,54 @@
+package de.aservo.confapi.confluence.service.api;
+
+import de.aservo.confapi.confluence.model.DirectorySyncBean;
+import de.aservo.confapi.confluence.model.DirectorySyncHistoryBean;
+import de.aservo.confapi.confluence.model.DirectorySyncMode;
+import de.aservo.confapi.confluence.model.DirectorySyncQueueBean;
+
+import java.net.URI;
+import java.util.UUID;
+
+public interface DirectorySyncService {
+
+    /**
+     * Synchronises the given remote directory in a long-running task.
+     *
+     * @param id   the directory id
+     * @param mode the expected sync mode, which must match the directory configuration, may be null
+     * @return the URI of the queue of the started task
+     */
+    URI synchroniseDirectory(
+            long id,
+            DirectorySyncMode mode);
+
+    /**
+     * Returns whether the given directory is synchronising and the information about its last synchronisation.
+     *
+     * @param id the directory id
+     * @return the synchronisation information
+     */
+    DirectorySyncBean getDirectorySync(
+            long id);
+
+    /**
+     * Returns the recorded syncs of the given directory with the duration statistics.
+     *
+     * @param id                the directory id
+     * @param thresholdInMillis the duration above which a sync is flagged as degraded,
+     *                          if null a multiple of the median duration is used
+     * @return the sync history
+     */
+    DirectorySyncHistoryBean getDirectorySyncHistory(
+            long id,
+            Long thresholdInMillis);
+
+    /**
+     * Returns the progress and the result of a directory sync task.
+     *
+     * @param uuid the task uuid
+     * @return the queue information or null if there is no task with the given uuid
+     */
+    DirectorySyncQueueBean getSyncQueue(
+            UUID uuid);
+
+}
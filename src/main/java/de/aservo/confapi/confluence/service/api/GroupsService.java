@@ -0,0 +1,49 @@
+package de.aservo.confapi.confluence.service.api;
+
+import de.aservo.confapi.confluence.model.GroupBean;
+import de.aservo.confapi.confluence.model.GroupMembersBean;
+import de.aservo.confapi.confluence.model.GroupMembersChangeBean;
+import de.aservo.confapi.confluence.model.GroupMembersResultBean;
+import de.aservo.confapi.confluence.model.GroupsBean;
+
+public interface GroupsService {
+
+    GroupsBean getGroups();
+
+    GroupBean getGroup(String name);
+
+    /**
+     * Creates the given group if it does not exist yet.
+     *
+     * @param groupBean the group
+     * @return the group
+     */
+    GroupBean setGroup(GroupBean groupBean);
+
+    GroupMembersBean getGroupMembers(String name);
+
+    /**
+     * Sets the members of the given group.
+     *
+     * The given members are compared with the current members, so that only missing members are added
+     * and only members that are not given anymore are removed.
+     *
+     * @param name             the group name
+     * @param groupMembersBean the complete list of members, which must be given and may only be empty to remove all members
+     * @return the added and removed members
+     */
+    GroupMembersResultBean setGroupMembers(String name, GroupMembersBean groupMembersBean);
+
+    /**
+     * Adds and removes members of the given group.
+     *
+     * Users that already are members are not added again, users that are no members are not removed.
+     * A user must not be given both to add and to remove.
+     *
+     * @param name                   the group name
+     * @param groupMembersChangeBean the members to add and to remove
+     * @return the added and removed members
+     */
+    GroupMembersResultBean updateGroupMembers(String name, GroupMembersChangeBean groupMembersChangeBean);
+
+}
@@ -0,0 +1,21 @@
+package de.aservo.confapi.confluence.service.api;
+
+import de.aservo.confapi.confluence.model.UserChangesBean;
+
+public interface UserChangesService {
+
+    /**
+     * Returns the user changes that have been recorded after the given cursor.
+     *
+     * Changes are recorded from the user events and become visible with a short delay, because they are
+     * written to the log in batches. Only a limited number of the most recent changes is retained.
+     *
+     * @param cursor the cursor returned by the previous call, the oldest retained change if null
+     * @param limit  the maximum number of changes to return
+     * @return the changes and the cursor to pass to the next call
+     */
+    UserChangesBean getUserChanges(
+            String cursor,
+            int limit);
+
+}
@@ -0,0 +1,68 @@
+package de.aservo.confapi.confluence.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import de.aservo.confapi.commons.exception.BadRequestException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the elements of a JSON array read from a stream, without reading the whole array into memory.
+ *
+ * @param <T> the element type
+ */
+public class JsonArrayIterator<T> implements Iterator<T> {
+
+    private static final Gson GSON = new Gson();
+
+    private final JsonReader reader;
+    private final Class<T> type;
+    private boolean started;
+
+    public JsonArrayIterator(
+            final InputStream inputStream,
+            final Class<T> type) {
+
+        this.reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this.type = type;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (!started) {
+                reader.beginArray();
+                started = true;
+            }
+
+            if (reader.peek() == JsonToken.END_ARRAY) {
+                return false;
+            }
+
+            return reader.hasNext();
+        } catch (IOException | IllegalStateException e) {
+            throw new BadRequestException(String.format("Request body must be a JSON array: %s", e.getMessage()));
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            return GSON.fromJson(reader, type);
+        } catch (JsonParseException e) {
+            throw new BadRequestException(String.format("Request body contains an invalid element: %s", e.getMessage()));
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package de.aservo.confapi.confluence.filter;
+
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.core.util.MultivaluedMapImpl;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import de.aservo.confapi.commons.model.UserBean;
+import de.aservo.confapi.commons.service.api.UsersService;
+import de.aservo.confapi.confluence.model.util.UserBeanUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserEntityTagResourceFilterTest {
+
+    @Mock
+    private UsersService usersService;
+
+    @Mock
+    private ContainerRequest request;
+
+    @Mock
+    private ContainerResponse response;
+
+    private UserEntityTagResourceFilter filter;
+
+    @Before
+    public void setup() {
+        filter = new UserEntityTagResourceFilter(usersService);
+    }
+
+    @Test
+    public void testFilterDefaults() {
+        assertEquals(filter, filter.getRequestFilter());
+        assertEquals(filter, filter.getResponseFilter());
+    }
+
+    @Test
+    public void testResponseWithEntityTag() {
+        final MultivaluedMap<String, Object> headers = new MultivaluedMapImpl();
+        doReturn(200).when(response).getStatus();
+        doReturn(UserBean.EXAMPLE_1).when(response).getEntity();
+        doReturn(headers).when(response).getHttpHeaders();
+        doReturn(HttpMethod.GET).when(request).getMethod();
+
+        filter.filter(request, response);
+
+        assertEquals(new EntityTag(UserBeanUtil.toEntityTag(UserBean.EXAMPLE_1)), headers.getFirst(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void testResponseNotModified() {
+        doReturn(200).when(response).getStatus();
+        doReturn(UserBean.EXAMPLE_1).when(response).getEntity();
+        doReturn(HttpMethod.GET).when(request).getMethod();
+        doReturn(Response.notModified()).when(request).evaluatePreconditions(any(EntityTag.class));
+
+        filter.filter(request, response);
+
+        verify(response).setResponse(argThat(r -> r.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()));
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testRequestPreconditionFailed() {
+        final MultivaluedMap<String, String> queryParameters = new MultivaluedMapImpl();
+        queryParameters.putSingle(UserEntityTagResourceFilter.QUERY_PARAM_USERNAME, UserBean.EXAMPLE_1.getUsername());
+        final InBoundHeaders requestHeaders = new InBoundHeaders();
+        requestHeaders.putSingle(HttpHeaders.IF_MATCH, "\"outdated\"");
+
+        doReturn(queryParameters).when(request).getQueryParameters();
+        doReturn(requestHeaders).when(request).getRequestHeaders();
+        doReturn(HttpMethod.PUT).when(request).getMethod();
+        doReturn(UserBean.EXAMPLE_1).when(usersService).getUser(UserBean.EXAMPLE_1.getUsername());
+        doReturn(Response.status(Response.Status.PRECONDITION_FAILED)).when(request).evaluatePreconditions(any(EntityTag.class));
+
+        filter.filter(request);
+    }
+
+}
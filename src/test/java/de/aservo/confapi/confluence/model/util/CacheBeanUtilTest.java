@@ -0,0 +1,44 @@
+package de.aservo.confapi.confluence.model.util;
+
+import com.atlassian.cache.CacheStatisticsKey;
+import com.atlassian.cache.ManagedCache;
+import de.aservo.confapi.confluence.model.CacheBean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CacheBeanUtilTest {
+
+    @Test
+    public void testToCacheBeanWithMissingStatistics() {
+        final SortedMap<CacheStatisticsKey, Supplier<Long>> statistics = new TreeMap<>();
+        statistics.put(CacheStatisticsKey.HIT_COUNT, () -> 3L);
+
+        final ManagedCache cache = mock(ManagedCache.class);
+        doReturn("cache").when(cache).getName();
+        doReturn(100).when(cache).currentMaxEntries();
+        doReturn(statistics).when(cache).getStatistics();
+
+        final CacheBean cacheBean = CacheBeanUtil.toCacheBean(cache);
+
+        assertEquals("cache", cacheBean.getName());
+        assertEquals(Long.valueOf(3L), cacheBean.getHitCount());
+        assertNull(cacheBean.getObjectCount());
+        assertNull(cacheBean.getMissCount());
+        assertNull(cacheBean.getCurrentHeapSizeInByte());
+        assertNull(cacheBean.getHeapSizeEstimated());
+        assertNull(cacheBean.getEffectivenessInPercent());
+        assertNull(cacheBean.getUtilisationInPercent());
+    }
+
+}
@@ -49,6 +49,20 @@ public class DirectoryBeanUtilTest {
         assertEquals(bean.getServer().getProxy().getPassword(), attributes.get(CROWD_HTTP_PROXY_PASSWORD));
     }
 
+    @Test
+    public void testToDirectoryWithConnectionSettings() {
+        final DirectoryImpl directory = new DirectoryImpl("test", DirectoryType.CROWD, "test.class");
+        directory.setAttribute(CROWD_SERVER_URL, "http://localhost");
+        directory.setAttribute(CROWD_HTTP_TIMEOUT, "5000");
+        directory.setAttribute(CROWD_HTTP_MAX_CONNECTIONS, "40");
+
+        final DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
+        final Map<String, String> attributes = DirectoryBeanUtil.toDirectory(directoryBean).getAttributes();
+
+        assertEquals("5000", attributes.get(CROWD_HTTP_TIMEOUT));
+        assertEquals("40", attributes.get(CROWD_HTTP_MAX_CONNECTIONS));
+    }
+
     @Test
     public void testToDirectoryBeanWithProxy() {
         final DirectoryImpl directory = new DirectoryImpl("test", DirectoryType.CROWD, "test.class");
@@ -7,6 +7,7 @@ import de.aservo.confapi.commons.model.UserBean;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class UserBeanUtilTest {
 
@@ -30,4 +31,24 @@ public class UserBeanUtilTest {
         assertEquals(userBean.getEmail(), user.getEmail());
     }
 
+    @Test
+    public void testToEntityTag() {
+        final UserBean userBean = UserBeanUtil.toUserBean(UserBeanUtil.toUser(UserBean.EXAMPLE_1));
+        final UserBean sameUserBean = UserBeanUtil.toUserBean(UserBeanUtil.toUser(UserBean.EXAMPLE_1));
+        final UserBean changedUserBean = UserBeanUtil.toUserBean(UserBeanUtil.toUser(UserBean.EXAMPLE_1));
+        changedUserBean.setEmail("changed@localhost");
+
+        assertEquals(UserBeanUtil.toEntityTag(userBean), UserBeanUtil.toEntityTag(sameUserBean));
+        assertNotEquals(UserBeanUtil.toEntityTag(userBean), UserBeanUtil.toEntityTag(changedUserBean));
+    }
+
+    @Test
+    public void testToEntityTagIgnoresPassword() {
+        final UserBean userBean = UserBeanUtil.toUserBean(UserBeanUtil.toUser(UserBean.EXAMPLE_1));
+        final UserBean userBeanWithPassword = UserBeanUtil.toUserBean(UserBeanUtil.toUser(UserBean.EXAMPLE_1));
+        userBeanWithPassword.setPassword("secret");
+
+        assertEquals(UserBeanUtil.toEntityTag(userBean), UserBeanUtil.toEntityTag(userBeanWithPassword));
+    }
+
 }
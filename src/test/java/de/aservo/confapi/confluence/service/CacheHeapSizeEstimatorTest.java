@@ -0,0 +1,131 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.cache.CacheStatisticsKey;
+import com.atlassian.cache.ManagedCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CacheHeapSizeEstimatorTest {
+
+    private CacheHeapSizeEstimator heapSizeEstimator;
+
+    @Before
+    public void setup() {
+        heapSizeEstimator = new CacheHeapSizeEstimator();
+    }
+
+    @After
+    public void tearDown() {
+        heapSizeEstimator.shutdown();
+    }
+
+    @Test
+    public void testEstimateExtrapolatesFromSample() {
+        final AtomicLong size = new AtomicLong(1000L);
+        final ManagedCache cache = createCache("test_cache", () -> 5000L, size::get);
+
+        final CacheHeapSizeEstimator.Estimate measured = heapSizeEstimator.estimate(cache);
+        assertEquals(Long.valueOf(5000L), measured.heapSize);
+        assertFalse(measured.estimated);
+
+        size.set(2000L);
+
+        final CacheHeapSizeEstimator.Estimate extrapolated = heapSizeEstimator.estimate(cache);
+        assertEquals(Long.valueOf(10000L), extrapolated.heapSize);
+        assertTrue(extrapolated.estimated);
+    }
+
+    @Test
+    public void testEstimateExceedingTimeBudgetKeepsMeasuring() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger measurements = new AtomicInteger();
+        final ManagedCache cache = createCache("test_cache", () -> {
+            measurements.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 5000L;
+        }, () -> 1000L);
+
+        final CacheHeapSizeEstimator.Estimate estimate = heapSizeEstimator.estimate(cache);
+        assertNull(estimate.heapSize);
+        assertTrue(estimate.estimated);
+
+        // the running measurement is not cancelled and no second one is started
+        assertNull(heapSizeEstimator.estimate(cache).heapSize);
+        release.countDown();
+
+        // the late measurement still records a sample, which serves the later requests
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        CacheHeapSizeEstimator.Estimate lateEstimate = heapSizeEstimator.estimate(cache, 0);
+        while (lateEstimate.heapSize == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            lateEstimate = heapSizeEstimator.estimate(cache, 0);
+        }
+
+        assertEquals(Long.valueOf(5000L), lateEstimate.heapSize);
+        assertTrue(lateEstimate.estimated);
+        assertEquals(1, measurements.get());
+    }
+
+    @Test
+    public void testEstimateWithExceededDeadline() {
+        final AtomicInteger measurements = new AtomicInteger();
+        final ManagedCache cache = createCache("test_cache", () -> {
+            measurements.incrementAndGet();
+            return 5000L;
+        }, () -> 1000L);
+
+        final CacheHeapSizeEstimator.Estimate estimate = heapSizeEstimator.estimate(cache, System.currentTimeMillis() - 1);
+        assertNull(estimate.heapSize);
+        assertTrue(estimate.estimated);
+        assertEquals(0, measurements.get());
+    }
+
+    @Test
+    public void testEstimateEmptyCacheRecordsNoSample() {
+        final AtomicLong size = new AtomicLong(0L);
+        final ManagedCache cache = createCache("test_cache", () -> 100L, size::get);
+
+        assertEquals(Long.valueOf(100L), heapSizeEstimator.estimate(cache).heapSize);
+
+        size.set(1000L);
+
+        // without a sample from the empty cache, the filled cache is measured instead of extrapolated to zero
+        final CacheHeapSizeEstimator.Estimate estimate = heapSizeEstimator.estimate(cache);
+        assertEquals(Long.valueOf(100L), estimate.heapSize);
+        assertFalse(estimate.estimated);
+    }
+
+    private ManagedCache createCache(String name, Supplier<Long> heapSize, Supplier<Long> size) {
+        final SortedMap<CacheStatisticsKey, Supplier<Long>> statistics = new TreeMap<>();
+        statistics.put(CacheStatisticsKey.HEAP_SIZE, heapSize);
+        statistics.put(CacheStatisticsKey.SIZE, size);
+
+        final ManagedCache cache = mock(ManagedCache.class);
+        doReturn(name).when(cache).getName();
+        doReturn(statistics).when(cache).getStatistics();
+        return cache;
+    }
+
+}
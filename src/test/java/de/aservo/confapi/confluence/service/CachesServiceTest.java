@@ -1,11 +1,18 @@
 package de.aservo.confapi.confluence.service;
 
+import com.atlassian.cache.Cache;
 import com.atlassian.cache.CacheManager;
 import com.atlassian.cache.CacheStatisticsKey;
 import com.atlassian.cache.ManagedCache;
+import com.atlassian.confluence.cluster.ClusterManager;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
 import de.aservo.confapi.commons.exception.BadRequestException;
 import de.aservo.confapi.commons.exception.NotFoundException;
 import de.aservo.confapi.confluence.model.CacheBean;
+import de.aservo.confapi.confluence.model.CacheHeapSizeMode;
+import de.aservo.confapi.confluence.model.CacheProfileBean;
+import de.aservo.confapi.confluence.model.CachesClusterBean;
 import de.aservo.confapi.confluence.model.util.CacheBeanUtil;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,13 +20,25 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Supplier;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -28,11 +47,17 @@ public class CachesServiceTest {
     @Mock
     private CacheManager cacheManager;
 
+    @Mock
+    private ClusterManager clusterManager;
+
+    @Mock
+    private PluginSettingsFactory pluginSettingsFactory;
+
     private CachesServiceImpl cachesService;
 
     @Before
     public void setup() {
-        cachesService = new CachesServiceImpl(cacheManager);
+        cachesService = new CachesServiceImpl(cacheManager, clusterManager, pluginSettingsFactory);
     }
 
     @Test
@@ -70,6 +95,99 @@ public class CachesServiceTest {
 
     }
 
+    @Test
+    public void testGetCacheWithoutHeapSize() {
+        ManagedCache cache = createCache("test_cache", 2000, createStatistics(555L, 2L, 1L, 1000L));
+        doReturn(cache).when(cacheManager).getManagedCache("test_cache");
+
+        CacheBean cacheBean = cachesService.getCache("test_cache", CacheHeapSizeMode.NONE);
+
+        assertNull(cacheBean.getCurrentHeapSizeInByte());
+        assertNull(cacheBean.getHeapSizeEstimated());
+        assertEquals(Long.valueOf(1000L), cacheBean.getObjectCount());
+    }
+
+    @Test
+    public void testWriteCacheMetrics() throws IOException {
+        ManagedCache cache = mock(ManagedCache.class);
+        doReturn("test \"cache\"").when(cache).getName();
+        doReturn(2000).when(cache).currentMaxEntries();
+        doReturn(createStatistics(555L, 2L, 1L, 1000L)).when(cache).getStatistics();
+        doReturn(Collections.singletonList(cache)).when(cacheManager).getManagedCaches();
+
+        StringWriter writer = new StringWriter();
+        cachesService.writeCacheMetrics(writer, CacheHeapSizeMode.NONE);
+        String metrics = writer.toString();
+
+        assertTrue(metrics.contains("# TYPE confluence_cache_entries gauge\n"));
+        assertTrue(metrics.contains("confluence_cache_entries{cache=\"test \\\"cache\\\"\"} 1000\n"));
+        assertTrue(metrics.contains("confluence_cache_max_entries{cache=\"test \\\"cache\\\"\"} 2000\n"));
+        assertTrue(metrics.contains("# TYPE confluence_cache_hits counter\n"));
+        assertTrue(metrics.contains("confluence_cache_hits_total{cache=\"test \\\"cache\\\"\"} 1\n"));
+        assertTrue(metrics.contains("confluence_cache_misses_total{cache=\"test \\\"cache\\\"\"} 2\n"));
+        assertFalse(metrics.contains("confluence_cache_puts_total"));
+        assertFalse(metrics.contains("heap_size"));
+        assertTrue(metrics.endsWith("# EOF\n"));
+    }
+
+    @Test
+    public void testEscapeLabelValue() {
+        assertEquals("a\\\\b\\\"c\\nd", CachesServiceImpl.escapeLabelValue("a\\b\"c\nd"));
+    }
+
+    @Test
+    public void testGetAllCachesClusterNotClustered() {
+        ManagedCache cache = createCache("test_cache", 2000, createStatistics(555L, 2L, 1L, 1000L));
+        doReturn(Collections.singletonList(cache)).when(cacheManager).getManagedCaches();
+        doReturn(false).when(clusterManager).isClustered();
+
+        CachesClusterBean cachesClusterBean = cachesService.getAllCachesCluster();
+
+        assertEquals(1, cachesClusterBean.getNodes().size());
+        assertEquals(CacheBeanUtil.toCacheBean(cache), cachesClusterBean.getCaches().iterator().next());
+    }
+
+    @Test
+    public void testGetAllCachesClusterSummedUp() {
+        CacheBean node1Cache = CacheBeanUtil.toCacheBean(createCache("test_cache", 2000, createStatistics(500L, 1L, 3L, 1000L)));
+        CacheBean node2Cache = CacheBeanUtil.toCacheBean(createCache("test_cache", 2000, createStatistics(100L, 3L, 1L, 200L)));
+
+        Map<String, CompletionStage<ArrayList<CacheBean>>> results = new HashMap<>();
+        results.put("node1", CompletableFuture.completedFuture(new ArrayList<>(Collections.singletonList(node1Cache))));
+        results.put("node2", CompletableFuture.completedFuture(new ArrayList<>(Collections.singletonList(node2Cache))));
+        CompletableFuture<ArrayList<CacheBean>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("node down"));
+        results.put("node3", failed);
+
+        doReturn(true).when(clusterManager).isClustered();
+        doReturn(results).when(clusterManager).submitToAllNodes(any(), anyString());
+
+        CachesClusterBean cachesClusterBean = cachesService.getAllCachesCluster();
+        assertEquals(3, cachesClusterBean.getNodes().size());
+        assertNotNull(cachesClusterBean.getNodes().stream().filter(node -> node.getNodeId().equals("node3")).findFirst().get().getError());
+
+        CacheBean summedCache = cachesClusterBean.getCaches().iterator().next();
+        assertEquals("test_cache", summedCache.getName());
+        assertEquals(Long.valueOf(1200L), summedCache.getObjectCount());
+        assertEquals(Long.valueOf(600L), summedCache.getCurrentHeapSizeInByte());
+        assertEquals(Integer.valueOf(4000), summedCache.getMaxObjectCount());
+        assertEquals(50.0, summedCache.getEffectivenessInPercent(), 0.001);
+        assertEquals(30.0, summedCache.getUtilisationInPercent(), 0.001);
+    }
+
+    @Test
+    public void testSumCachesWithoutMaxEntries() {
+        CacheBean cacheBean = new CacheBean();
+        cacheBean.setName("test_cache");
+        cacheBean.setObjectCount(10L);
+
+        CacheBean summedCache = CacheBeanUtil.toCacheBean("test_cache", Collections.singletonList(cacheBean));
+
+        assertNull(summedCache.getMaxObjectCount());
+        assertNull(summedCache.getUtilisationInPercent());
+        assertNull(summedCache.getEffectivenessInPercent());
+    }
+
     @Test(expected = NotFoundException.class)
     public void testGetCacheNotExisting() {
 
@@ -112,6 +230,75 @@ public class CachesServiceTest {
 
     }
 
+    @Test
+    public void testFlushCacheWithWarmUp() {
+        ManagedCache managedCache = mock(ManagedCache.class, withSettings().extraInterfaces(Cache.class));
+        doReturn(true).when(managedCache).isFlushable();
+        doReturn(managedCache).when(cacheManager).getManagedCache("test_cache");
+
+        @SuppressWarnings("unchecked")
+        Cache<Object, Object> cache = (Cache<Object, Object>) managedCache;
+        doReturn(Arrays.asList("key1", "key2")).when(cache).getKeys();
+        doReturn("value").when(cache).get(any());
+
+        cachesService.flushCache("test_cache", true);
+
+        verify(managedCache).clear();
+        verify(cache).get("key1");
+        verify(cache, timeout(5000)).get("key2");
+        verify(cacheManager, never()).getCache(anyString());
+    }
+
+    @Test
+    public void testFlushCacheWithWarmUpRemovesFinishedWarmUps() throws InterruptedException {
+        ManagedCache managedCache = mock(ManagedCache.class, withSettings().extraInterfaces(Cache.class));
+        doReturn(true).when(managedCache).isFlushable();
+        doReturn(managedCache).when(cacheManager).getManagedCache("test_cache");
+
+        @SuppressWarnings("unchecked")
+        Cache<Object, Object> cache = (Cache<Object, Object>) managedCache;
+        doReturn(Arrays.asList("key1", "key2")).when(cache).getKeys();
+        doReturn("value").when(cache).get(any());
+
+        cachesService.flushCache("test_cache", true);
+        verify(cache, timeout(5000)).get("key2");
+
+        for (int i = 0; i < 50 && cachesService.getRunningWarmUpCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, cachesService.getRunningWarmUpCount());
+    }
+
+    @Test
+    public void testFlushCacheWithWarmUpWithoutLoader() {
+        ManagedCache managedCache = mock(ManagedCache.class, withSettings().extraInterfaces(Cache.class));
+        doReturn(true).when(managedCache).isFlushable();
+        doReturn(managedCache).when(cacheManager).getManagedCache("test_cache");
+
+        @SuppressWarnings("unchecked")
+        Cache<Object, Object> cache = (Cache<Object, Object>) managedCache;
+        doReturn(Arrays.asList("key1", "key2")).when(cache).getKeys();
+
+        cachesService.flushCache("test_cache", true);
+
+        verify(managedCache).clear();
+        verify(cache).get("key1");
+        verify(cache, after(200).never()).get("key2");
+        assertEquals(0, cachesService.getRunningWarmUpCount());
+    }
+
+    @Test
+    public void testFlushCacheWithWarmUpWithoutLoadingView() {
+        ManagedCache managedCache = mock(ManagedCache.class);
+        doReturn(true).when(managedCache).isFlushable();
+        doReturn(managedCache).when(cacheManager).getManagedCache("test_cache");
+
+        cachesService.flushCache("test_cache", true);
+
+        verify(managedCache).clear();
+        verify(cacheManager, never()).getCache(anyString());
+    }
+
     @Test(expected = BadRequestException.class)
     public void testFlushCacheNotFlushable() {
         ManagedCache cache = mock(ManagedCache.class);
@@ -122,6 +309,103 @@ public class CachesServiceTest {
 
     }
 
+    @Test
+    public void testSetCacheProfile() {
+        ManagedCache cache = createNamedCache("com.example.cache.users");
+        ManagedCache otherCache = createNamedCache("com.example.other");
+        doReturn(true).when(cache).updateMaxEntries(5000);
+        doReturn(new TestPluginSettings()).when(pluginSettingsFactory).createGlobalSettings();
+        doReturn(false).when(clusterManager).isClustered();
+        doReturn(Arrays.asList(cache, otherCache)).when(cacheManager).getManagedCaches();
+
+        Map<String, Integer> sizes = new HashMap<>();
+        sizes.put("com.example.cache.*", 5000);
+        CacheProfileBean appliedProfile = cachesService.setCacheProfile(new CacheProfileBean("production", sizes));
+
+        verify(cache).updateMaxEntries(5000);
+        verify(otherCache, never()).updateMaxEntries(anyInt());
+        assertEquals(Collections.singletonMap("com.example.cache.users", 5000), appliedProfile.getMaxObjectCounts());
+        assertEquals(new CacheProfileBean("production", sizes), cachesService.getCacheProfile());
+    }
+
+    @Test
+    public void testApplyCacheProfileOnStart() {
+        ManagedCache cache = createNamedCache("test_cache");
+        doReturn(true).when(cache).updateMaxEntries(2000);
+        doReturn(Collections.singletonList(cache)).when(cacheManager).getManagedCaches();
+
+        TestPluginSettings pluginSettings = new TestPluginSettings();
+        pluginSettings.put(CachesServiceImpl.SETTINGS_KEY_PROFILE_NAME, "production");
+        pluginSettings.put(CachesServiceImpl.SETTINGS_KEY_PROFILE_SIZES, Collections.singletonMap("test_cache", "2000"));
+        doReturn(pluginSettings).when(pluginSettingsFactory).createGlobalSettings();
+
+        cachesService.onStart();
+        cachesService.onStop();
+
+        verify(cache).updateMaxEntries(2000);
+    }
+
+    @Test
+    public void testApplyCacheProfileToNewCaches() {
+        ManagedCache cache = createNamedCache("test_cache");
+        ManagedCache newCache = createNamedCache("test_cache_lazy");
+        doReturn(true).when(newCache).updateMaxEntries(2000);
+        doReturn(Collections.singletonList(cache), Arrays.asList(cache, newCache), Arrays.asList(cache, newCache))
+                .when(cacheManager).getManagedCaches();
+
+        TestPluginSettings pluginSettings = new TestPluginSettings();
+        pluginSettings.put(CachesServiceImpl.SETTINGS_KEY_PROFILE_NAME, "production");
+        pluginSettings.put(CachesServiceImpl.SETTINGS_KEY_PROFILE_SIZES, Collections.singletonMap("test_cache_lazy", "2000"));
+        doReturn(pluginSettings).when(pluginSettingsFactory).createGlobalSettings();
+
+        cachesService.applyCacheProfileToNewCaches();
+        cachesService.applyCacheProfileToNewCaches();
+        cachesService.applyCacheProfileToNewCaches();
+
+        // the profile is only read and applied when a new cache shows up
+        verify(newCache, times(1)).updateMaxEntries(2000);
+        verify(pluginSettingsFactory, times(2)).createGlobalSettings();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSetCacheProfileInvalidSize() {
+        cachesService.setCacheProfile(new CacheProfileBean("production", Collections.singletonMap("test_cache", 0)));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testGetCacheProfileNotExisting() {
+        doReturn(new TestPluginSettings()).when(pluginSettingsFactory).createGlobalSettings();
+        cachesService.getCacheProfile();
+    }
+
+    @Test
+    public void testFindCacheSize() {
+        Map<String, Integer> sizes = new HashMap<>();
+        sizes.put("com.example.*", 100);
+        sizes.put("com.example.cache.*", 200);
+        sizes.put("com.example.cache.users", 300);
+
+        assertEquals(Integer.valueOf(300), CachesServiceImpl.findCacheSize(sizes, "com.example.cache.users"));
+        assertEquals(Integer.valueOf(200), CachesServiceImpl.findCacheSize(sizes, "com.example.cache.groups"));
+        assertEquals(Integer.valueOf(100), CachesServiceImpl.findCacheSize(sizes, "com.example.other"));
+        assertNull(CachesServiceImpl.findCacheSize(sizes, "com.other"));
+    }
+
+    private ManagedCache createNamedCache(String name) {
+        ManagedCache cache = mock(ManagedCache.class);
+        doReturn(name).when(cache).getName();
+        return cache;
+    }
+
+    private ManagedCache createCache(String name, Integer maxEntries, SortedMap<CacheStatisticsKey, Supplier<Long>> statistics) {
+        ManagedCache cache = mock(ManagedCache.class);
+        doReturn(name).when(cache).getName();
+        doReturn(maxEntries).when(cache).currentMaxEntries();
+        doReturn(true).when(cache).isFlushable();
+        doReturn(statistics).when(cache).getStatistics();
+        return cache;
+    }
+
     private SortedMap<CacheStatisticsKey, Supplier<Long>> createStatistics(long heapSize, long missCount, long hitCount, long size) {
         Supplier<Long> supHeapSize = () -> heapSize;
         Supplier<Long> supMissCount = () -> missCount;
@@ -137,4 +421,24 @@ public class CachesServiceTest {
         return statistics;
     }
 
+    private static class TestPluginSettings implements PluginSettings {
+
+        private final Map<String, Object> settings = new HashMap<>();
+
+        @Override
+        public Object get(String key) {
+            return settings.get(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return settings.put(key, value);
+        }
+
+        @Override
+        public Object remove(String key) {
+            return settings.remove(key);
+        }
+    }
+
 }
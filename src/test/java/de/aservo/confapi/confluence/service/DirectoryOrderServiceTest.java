@@ -0,0 +1,125 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.exception.OperationFailedException;
+import com.atlassian.crowd.model.directory.ImmutableDirectory;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.InternalServerErrorException;
+import de.aservo.confapi.confluence.model.DirectoriesOrderBean;
+import de.aservo.confapi.confluence.model.DirectoryOrderEntryBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DirectoryOrderServiceTest {
+
+    @Mock
+    private CrowdDirectoryService crowdDirectoryService;
+
+    @Mock
+    private DirectoryLoginStatistics directoryLoginStatistics;
+
+    private DirectoryOrderServiceImpl directoryOrderService;
+
+    @Before
+    public void setup() {
+        directoryOrderService = new DirectoryOrderServiceImpl(crowdDirectoryService, directoryLoginStatistics);
+    }
+
+    @Test
+    public void testGetDirectoriesOrder() {
+        doReturn(createDirectories(1L, 2L)).when(crowdDirectoryService).findAllDirectories();
+        doReturn(Collections.singletonMap(2L, 3L)).when(directoryLoginStatistics).getLogins();
+        doReturn(new Date()).when(directoryLoginStatistics).getSince();
+
+        final List<DirectoryOrderEntryBean> entries = directoryOrderService.getDirectoriesOrder().getDirectories();
+
+        assertEquals(Long.valueOf(1L), entries.get(0).getId());
+        assertEquals(Long.valueOf(0L), entries.get(0).getLogins());
+        assertEquals(Long.valueOf(3L), entries.get(1).getLogins());
+        assertEquals(100.0, entries.get(1).getLoginsInPercent(), 0);
+    }
+
+    @Test
+    public void testGetDirectoriesOrderWithoutLogins() {
+        doReturn(createDirectories(1L)).when(crowdDirectoryService).findAllDirectories();
+        doReturn(Collections.emptyMap()).when(directoryLoginStatistics).getLogins();
+
+        assertNull(directoryOrderService.getDirectoriesOrder().getDirectories().get(0).getLoginsInPercent());
+    }
+
+    @Test
+    public void testSetDirectoriesOrder() throws OperationFailedException {
+        doReturn(createDirectories(1L, 2L, 3L)).when(crowdDirectoryService).findAllDirectories();
+        doReturn(Collections.emptyMap()).when(directoryLoginStatistics).getLogins();
+
+        directoryOrderService.setDirectoriesOrder(createOrder(3L, 1L, 2L));
+
+        verify(crowdDirectoryService).setDirectoryPosition(3L, 0);
+        verify(crowdDirectoryService, never()).setDirectoryPosition(1L, 1);
+        verify(crowdDirectoryService, never()).setDirectoryPosition(2L, 2);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSetDirectoriesOrderIncomplete() {
+        doReturn(createDirectories(1L, 2L)).when(crowdDirectoryService).findAllDirectories();
+
+        directoryOrderService.setDirectoriesOrder(createOrder(2L));
+    }
+
+    @Test
+    public void testSetDirectoriesOrderRestored() throws OperationFailedException {
+        doReturn(createDirectories(1L, 2L)).when(crowdDirectoryService).findAllDirectories();
+        doThrow(new OperationFailedException("failed")).when(crowdDirectoryService).setDirectoryPosition(2L, 0);
+
+        try {
+            directoryOrderService.setDirectoriesOrder(createOrder(2L, 1L));
+            fail("Expected InternalServerErrorException");
+        } catch (InternalServerErrorException e) {
+            // the directories are still in the previous order, so nothing has to be moved back
+            verify(crowdDirectoryService).setDirectoryPosition(anyLong(), anyInt());
+        }
+    }
+
+    private static List<Directory> createDirectories(
+            final Long... ids) {
+
+        return Arrays.stream(ids)
+                .map(id -> ImmutableDirectory.builder("directory" + id, DirectoryType.CROWD, "test.class")
+                        .setId(id)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private static DirectoriesOrderBean createOrder(
+            final Long... ids) {
+
+        final DirectoriesOrderBean directoriesOrderBean = new DirectoriesOrderBean();
+        directoriesOrderBean.setDirectories(Arrays.stream(ids)
+                .map(id -> new DirectoryOrderEntryBean(id, null, null, null, null))
+                .collect(Collectors.toList()));
+        return directoriesOrderBean;
+    }
+
+}
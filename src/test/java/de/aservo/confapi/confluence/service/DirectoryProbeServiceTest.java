@@ -0,0 +1,137 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.crowd.exception.FailedAuthenticationException;
+import com.atlassian.crowd.model.directory.ImmutableDirectory;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.confluence.model.DirectoriesProbeBean;
+import de.aservo.confapi.confluence.model.DirectoriesProbeRequestBean;
+import de.aservo.confapi.confluence.model.DirectoryProbeResultBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DirectoryProbeServiceTest {
+
+    @Mock
+    private CrowdDirectoryService crowdDirectoryService;
+
+    @Mock
+    private CrowdService crowdService;
+
+    private DirectoryProbeServiceImpl directoryProbeService;
+
+    @Before
+    public void setup() {
+        directoryProbeService = new DirectoryProbeServiceImpl(crowdDirectoryService, crowdService);
+    }
+
+    @Test
+    public void testProbeDirectories() {
+        final Directory activeDirectory = createDirectory(1L, "active", true);
+        final Directory inactiveDirectory = createDirectory(2L, "inactive", false);
+        doReturn(Arrays.asList(activeDirectory, inactiveDirectory)).when(crowdDirectoryService).findAllDirectories();
+
+        final DirectoriesProbeRequestBean probeRequestBean = new DirectoriesProbeRequestBean();
+        probeRequestBean.setProbes(3);
+        final DirectoriesProbeBean directoriesProbeBean = directoryProbeService.probeDirectories(probeRequestBean);
+
+        assertEquals(1, directoriesProbeBean.getDirectories().size());
+        final DirectoryProbeResultBean resultBean = directoriesProbeBean.getDirectories().get(0);
+        assertEquals("active", resultBean.getName());
+        assertEquals(3, resultBean.getProbes());
+        assertEquals(0, resultBean.getErrors());
+        assertNotNull(resultBean.getP95LatencyInMillis());
+        assertNull(directoriesProbeBean.getAuthentication());
+        assertFalse(directoriesProbeBean.isTimedOut());
+        verify(crowdDirectoryService, times(3)).testConnection(activeDirectory);
+        verify(crowdDirectoryService, never()).testConnection(inactiveDirectory);
+    }
+
+    @Test
+    public void testProbeDirectoriesAuthentication() throws FailedAuthenticationException {
+        final Directory directory = createDirectory(1L, "active", true);
+        doReturn(Arrays.asList(directory)).when(crowdDirectoryService).findAllDirectories();
+        doThrow(new IllegalStateException("unreachable")).when(crowdDirectoryService).testConnection(directory);
+        final User user = mock(User.class);
+        doReturn(1L).when(user).getDirectoryId();
+        doReturn(user).when(crowdService).authenticate("probe", "secret");
+
+        final DirectoriesProbeRequestBean probeRequestBean = new DirectoriesProbeRequestBean();
+        probeRequestBean.setUsername("probe");
+        probeRequestBean.setPassword("secret");
+        probeRequestBean.setProbes(2);
+        final DirectoriesProbeBean directoriesProbeBean = directoryProbeService.probeDirectories(probeRequestBean);
+
+        final DirectoryProbeResultBean directoryResultBean = directoriesProbeBean.getDirectories().get(0);
+        assertEquals(2, directoryResultBean.getErrors());
+        assertEquals(1.0, directoryResultBean.getErrorRate(), 0);
+        assertEquals("unreachable", directoryResultBean.getLastError());
+        assertNull(directoryResultBean.getMinLatencyInMillis());
+
+        final DirectoryProbeResultBean authenticationResultBean = directoriesProbeBean.getAuthentication();
+        assertEquals(Long.valueOf(1L), authenticationResultBean.getDirectoryId());
+        assertEquals(2, authenticationResultBean.getProbes());
+        assertEquals(0, authenticationResultBean.getErrors());
+    }
+
+    @Test
+    public void testProbeCancelledIsNoError() {
+        final DirectoryProbeServiceImpl.Probe probe = new DirectoryProbeServiceImpl.Probe(1L, "cancelled", () -> {
+            // simulates a directory call that fails because the probe thread has been interrupted
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted");
+        });
+
+        try {
+            probe.run(3);
+        } finally {
+            Thread.interrupted();
+        }
+
+        final DirectoryProbeResultBean resultBean = probe.toResultBean();
+        assertEquals(0, resultBean.getProbes());
+        assertEquals(0, resultBean.getErrors());
+        assertNull(resultBean.getLastError());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testProbeDirectoriesInvalidProbes() {
+        final DirectoriesProbeRequestBean probeRequestBean = new DirectoriesProbeRequestBean();
+        probeRequestBean.setProbes(DirectoryProbeServiceImpl.MAX_PROBES + 1);
+
+        directoryProbeService.probeDirectories(probeRequestBean);
+    }
+
+    private static Directory createDirectory(
+            final long id,
+            final String name,
+            final boolean active) {
+
+        return ImmutableDirectory.builder(name, DirectoryType.CROWD, "test.class")
+                .setId(id)
+                .setActive(active)
+                .build();
+    }
+
+}
@@ -1,5 +1,6 @@
 package de.aservo.confapi.confluence.service;
 
+import com.atlassian.crowd.directory.OpenLDAP;
 import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
 import com.atlassian.crowd.embedded.api.Directory;
 import com.atlassian.crowd.embedded.api.DirectoryType;
@@ -13,13 +14,18 @@ import de.aservo.confapi.commons.model.AbstractDirectoryBean;
 import de.aservo.confapi.commons.model.DirectoriesBean;
 import de.aservo.confapi.commons.model.DirectoryCrowdBean;
 import de.aservo.confapi.commons.model.DirectoryLdapBean;
+import de.aservo.confapi.confluence.model.DirectoriesApplyBean;
+import de.aservo.confapi.confluence.model.DirectoryApplyResultBean;
+import de.aservo.confapi.confluence.model.DirectoryLdapConnectorBean;
 import de.aservo.confapi.confluence.model.util.DirectoryBeanUtil;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -27,10 +33,14 @@ import java.util.Map;
 
 import static com.atlassian.crowd.directory.RemoteCrowdDirectory.*;
 import static com.atlassian.crowd.directory.SynchronisableDirectoryProperties.*;
+import static com.atlassian.crowd.directory.ldap.LDAPPropertiesMapper.*;
 import static com.atlassian.crowd.directory.SynchronisableDirectoryProperties.SyncGroupMembershipsAfterAuth.WHEN_AUTHENTICATION_CREATED_THE_USER;
 import static com.atlassian.crowd.model.directory.DirectoryImpl.ATTRIBUTE_KEY_USE_NESTED_GROUPS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -97,32 +107,144 @@ public class DirectoryServiceTest {
     public void testSetDirectoriesWithExistingDirectory() {
         Directory directory = createDirectory();
 
-        doReturn(directory).when(crowdDirectoryService).findDirectoryById(1L);
         doReturn(directory).when(crowdDirectoryService).updateDirectory(any());
         doReturn(Collections.singletonList(directory)).when(crowdDirectoryService).findAllDirectories();
 
         DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
         directoryBean.getServer().setAppPassword("test");
+        directoryBean.setDescription("changed");
         DirectoriesBean directoryAdded = directoryService.setDirectories(new DirectoriesBean(Collections.singletonList(directoryBean)), false);
 
         assertEquals(directoryAdded.getDirectories().iterator().next().getName(), directoryBean.getName());
+        // one read for matching the directories and one after writing them
+        verify(crowdDirectoryService, times(2)).findAllDirectories();
+        verify(crowdDirectoryService, never()).findDirectoryById(anyLong());
     }
 
     @Test
     public void testSetDirectoriesWithConnectionTest() {
         Directory directory = createDirectory();
 
-        doReturn(directory).when(crowdDirectoryService).findDirectoryById(1L);
         doReturn(directory).when(crowdDirectoryService).updateDirectory(any());
         doReturn(Collections.singletonList(directory)).when(crowdDirectoryService).findAllDirectories();
 
         DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
         directoryBean.getServer().setAppPassword("test");
+        directoryBean.setDescription("changed");
         DirectoriesBean directoryAdded = directoryService.setDirectories(new DirectoriesBean(Collections.singletonList(directoryBean)), true);
 
         assertEquals(directoryAdded.getDirectories().iterator().next().getName(), directoryBean.getName());
     }
 
+    @Test
+    public void testApplyDirectoriesWithConnectionTest() {
+        Directory directory = createDirectory();
+
+        doReturn(directory).when(crowdDirectoryService).addDirectory(any());
+        doReturn(Collections.emptyList()).when(crowdDirectoryService).findAllDirectories();
+
+        DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
+        directoryBean.getServer().setAppPassword("test");
+        DirectoriesApplyBean directoriesApplyBean = directoryService.applyDirectories(new DirectoriesBean(Collections.singletonList(directoryBean)), true);
+
+        DirectoryApplyResultBean result = directoriesApplyBean.getResults().iterator().next();
+        assertEquals(DirectoryApplyResultBean.Status.CREATED, result.getStatus());
+        assertEquals(directoryBean.getName(), result.getName());
+        assertTrue(result.getConnectionTestTimeInMillis() >= 0);
+        verify(crowdDirectoryService).testConnection(any());
+    }
+
+    @Test
+    public void testApplyDirectoriesConnectionTestFailed() {
+        Directory directory = createDirectory();
+
+        doReturn(Collections.emptyList()).when(crowdDirectoryService).findAllDirectories();
+        doThrow(new IllegalStateException("unreachable")).when(crowdDirectoryService).testConnection(any());
+
+        DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
+        directoryBean.getServer().setAppPassword("test");
+
+        try {
+            directoryService.applyDirectories(new DirectoriesBean(Collections.singletonList(directoryBean)), true);
+            fail("Expected BadRequestException");
+        } catch (BadRequestException e) {
+            verify(crowdDirectoryService, never()).addDirectory(any());
+        }
+    }
+
+    @Test
+    public void testApplyDirectoriesUnchanged() {
+        Directory directory = createDirectory();
+
+        doReturn(Collections.singletonList(directory)).when(crowdDirectoryService).findAllDirectories();
+
+        DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
+        directoryBean.getServer().setAppPassword("test");
+        DirectoriesApplyBean directoriesApplyBean = directoryService.applyDirectories(new DirectoriesBean(Collections.singletonList(directoryBean)), false);
+
+        DirectoryApplyResultBean result = directoriesApplyBean.getResults().iterator().next();
+        assertEquals(DirectoryApplyResultBean.Status.UNCHANGED, result.getStatus());
+        assertTrue(result.getChangedFields().isEmpty());
+        verify(crowdDirectoryService, never()).updateDirectory(any());
+    }
+
+    @Test
+    public void testApplyDirectoriesChangedFields() {
+        Directory directory = createDirectory();
+
+        doReturn(directory).when(crowdDirectoryService).updateDirectory(any());
+        doReturn(Collections.singletonList(directory)).when(crowdDirectoryService).findAllDirectories();
+
+        DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
+        directoryBean.getServer().setAppPassword("changed");
+        directoryBean.setDescription("changed");
+        DirectoriesApplyBean directoriesApplyBean = directoryService.applyDirectories(new DirectoriesBean(Collections.singletonList(directoryBean)), false);
+
+        DirectoryApplyResultBean result = directoriesApplyBean.getResults().iterator().next();
+        assertEquals(DirectoryApplyResultBean.Status.UPDATED, result.getStatus());
+        assertEquals(Arrays.asList("description", APPLICATION_PASSWORD), result.getChangedFields());
+    }
+
+    @Test
+    public void testApplyDirectoriesUnmappedAttributeKept() {
+        DirectoryImpl directory = (DirectoryImpl) createDirectory();
+        directory.setAttribute("custom", "value");
+
+        doReturn(Collections.singletonList(directory)).when(crowdDirectoryService).findAllDirectories();
+
+        DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
+        directoryBean.getServer().setAppPassword("test");
+        DirectoriesApplyBean directoriesApplyBean = directoryService.applyDirectories(new DirectoriesBean(Collections.singletonList(directoryBean)), false);
+
+        DirectoryApplyResultBean result = directoriesApplyBean.getResults().iterator().next();
+        assertEquals(DirectoryApplyResultBean.Status.UNCHANGED, result.getStatus());
+        verify(crowdDirectoryService, never()).updateDirectory(any());
+    }
+
+    @Test
+    public void testApplyDirectoriesRemovedAttribute() {
+        DirectoryImpl directory = (DirectoryImpl) createDirectory();
+        directory.setAttribute(CROWD_HTTP_TIMEOUT, "10000");
+        directory.setAttribute("custom", "value");
+
+        doReturn(directory).when(crowdDirectoryService).updateDirectory(any());
+        doReturn(Collections.singletonList(directory)).when(crowdDirectoryService).findAllDirectories();
+
+        DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
+        directoryBean.getServer().setAppPassword("test");
+        directoryBean.getServer().setConnectionTimeoutInMillis(null);
+        DirectoriesApplyBean directoriesApplyBean = directoryService.applyDirectories(new DirectoriesBean(Collections.singletonList(directoryBean)), false);
+
+        DirectoryApplyResultBean result = directoriesApplyBean.getResults().iterator().next();
+        assertEquals(DirectoryApplyResultBean.Status.UPDATED, result.getStatus());
+        assertEquals(Collections.singletonList(CROWD_HTTP_TIMEOUT), result.getChangedFields());
+
+        ArgumentCaptor<Directory> directoryCaptor = ArgumentCaptor.forClass(Directory.class);
+        verify(crowdDirectoryService).updateDirectory(directoryCaptor.capture());
+        assertFalse(directoryCaptor.getValue().getAttributes().containsKey(CROWD_HTTP_TIMEOUT));
+        assertEquals("value", directoryCaptor.getValue().getAttributes().get("custom"));
+    }
+
     @Test
     public void testSetDirectoryWithConnectionTest() {
         Directory directory = createDirectory();
@@ -132,6 +254,7 @@ public class DirectoryServiceTest {
 
         DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(directory);
         directoryBean.getServer().setAppPassword("test");
+        directoryBean.setDescription("changed");
         AbstractDirectoryBean directoryAdded = directoryService.setDirectory(1L, directoryBean, true);
 
         assertEquals(directoryBean.getName(), directoryAdded.getName());
@@ -171,11 +294,83 @@ public class DirectoryServiceTest {
         assertEquals(directoryAdded.getName(), directoryBean.getName());
     }
 
+    @Test(expected = BadRequestException.class)
+    public void testAddDirectoryInvalidMaxConnections() {
+        DirectoryCrowdBean directoryBean = (DirectoryCrowdBean)DirectoryBeanUtil.toDirectoryBean(createDirectory());
+        directoryBean.getServer().setMaxConnections(0);
+
+        directoryService.addDirectory(directoryBean, false);
+    }
+
     @Test(expected = BadRequestException.class)
     public void testAddDirectoryUnsupportedType() {
         directoryService.addDirectory(new DirectoryLdapBean(), false);
     }
 
+    @Test
+    public void testAddLdapDirectory() {
+        Directory directory = createLdapDirectory();
+        doReturn(directory).when(crowdDirectoryService).addDirectory(any(Directory.class));
+
+        DirectoryLdapConnectorBean ldapBean = DirectoryBeanUtil.toDirectoryLdapConnectorBean(directory);
+        ldapBean.setPassword("secret");
+        DirectoryLdapConnectorBean addedBean = directoryService.addLdapDirectory(ldapBean, true);
+
+        assertEquals(ldapBean.getName(), addedBean.getName());
+        assertEquals(Integer.valueOf(500), addedBean.getPageSize());
+        assertNull(addedBean.getPassword());
+        verify(crowdDirectoryService).testConnection(any());
+    }
+
+    @Test
+    public void testAddLdapDirectoryWithDefaultSchema() {
+        Directory directory = createLdapDirectory();
+        doReturn(directory).when(crowdDirectoryService).addDirectory(any(Directory.class));
+
+        DirectoryLdapConnectorBean ldapBean = DirectoryBeanUtil.toDirectoryLdapConnectorBean(directory);
+        ldapBean.setAttributes(Collections.singletonMap(GROUP_USERNAMES_KEY, "member"));
+        directoryService.addLdapDirectory(ldapBean, false);
+
+        ArgumentCaptor<Directory> directoryCaptor = ArgumentCaptor.forClass(Directory.class);
+        verify(crowdDirectoryService).addDirectory(directoryCaptor.capture());
+        Map<String, String> attributes = directoryCaptor.getValue().getAttributes();
+        assertEquals("inetorgperson", attributes.get(USER_OBJECTCLASS_KEY));
+        assertEquals("member", attributes.get(GROUP_USERNAMES_KEY));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testAddLdapDirectoryInvalidPoolSize() {
+        DirectoryLdapConnectorBean ldapBean = DirectoryBeanUtil.toDirectoryLdapConnectorBean(createLdapDirectory());
+        ldapBean.setPoolInitialSize(20);
+        ldapBean.setPoolMaxSize(10);
+
+        directoryService.addLdapDirectory(ldapBean, false);
+    }
+
+    @Test
+    public void testSetLdapDirectoryKeepsPassword() {
+        Directory directory = createLdapDirectory();
+        doReturn(directory).when(crowdDirectoryService).findDirectoryById(1L);
+        doReturn(directory).when(crowdDirectoryService).updateDirectory(any());
+
+        DirectoryLdapConnectorBean ldapBean = new DirectoryLdapConnectorBean();
+        ldapBean.setPageSize(1000);
+        directoryService.setLdapDirectory(1L, ldapBean, false);
+
+        ArgumentCaptor<Directory> directoryCaptor = ArgumentCaptor.forClass(Directory.class);
+        verify(crowdDirectoryService).updateDirectory(directoryCaptor.capture());
+        assertEquals("1000", directoryCaptor.getValue().getAttributes().get(LDAP_PAGEDRESULTS_SIZE));
+        assertEquals("secret", directoryCaptor.getValue().getAttributes().get(LDAP_PASSWORD_KEY));
+        assertEquals(directory.getName(), directoryCaptor.getValue().getName());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testGetLdapDirectoryNotLdap() {
+        doReturn(createDirectory()).when(crowdDirectoryService).findDirectoryById(1L);
+
+        directoryService.getLdapDirectory(1L);
+    }
+
     @Test(expected = BadRequestException.class)
     public void testDeleteDirectoriesWithoutForceParameter() {
         directoryService.deleteDirectories(false);
@@ -184,12 +379,12 @@ public class DirectoryServiceTest {
     @Test
     public void testDeleteDirectories() throws DirectoryCurrentlySynchronisingException {
         Directory directory = createDirectory();
-        doReturn(directory).when(crowdDirectoryService).findDirectoryById(1L);
         doReturn(Collections.singletonList(directory)).when(crowdDirectoryService).findAllDirectories();
 
         directoryService.deleteDirectories(true);
 
         verify(crowdDirectoryService).removeDirectory(1L);
+        verify(crowdDirectoryService, never()).findDirectoryById(anyLong());
     }
 
     @Test
@@ -223,6 +418,21 @@ public class DirectoryServiceTest {
         directoryService.deleteDirectory(1L);
     }
 
+    private Directory createLdapDirectory() {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put(LDAP_URL_KEY, "ldap://localhost:389");
+        attributes.put(LDAP_BASEDN_KEY, "dc=example,dc=com");
+        attributes.put(LDAP_USERDN_KEY, "cn=admin,dc=example,dc=com");
+        attributes.put(LDAP_PASSWORD_KEY, "secret");
+        attributes.put(LDAP_PAGEDRESULTS_KEY, "true");
+        attributes.put(LDAP_PAGEDRESULTS_SIZE, "500");
+
+        ImmutableDirectory immutableDirectory = ImmutableDirectory.builder("ldap", DirectoryType.CONNECTOR, OpenLDAP.class.getName())
+                .setId(1L)
+                .setAttributes(attributes).build();
+        return new DirectoryImpl(immutableDirectory);
+    }
+
     private Directory createDirectory() {
         return createDirectory("http://localhost");
     }
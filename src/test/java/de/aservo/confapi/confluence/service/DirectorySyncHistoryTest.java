@@ -0,0 +1,152 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationInformation;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationRoundInformation;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import de.aservo.confapi.confluence.model.DirectorySyncHistoryBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DirectorySyncHistoryTest {
+
+    @Mock
+    private EventPublisher eventPublisher;
+
+    @Mock
+    private PluginSettingsFactory pluginSettingsFactory;
+
+    @Mock
+    private CrowdDirectoryService crowdDirectoryService;
+
+    private DirectorySyncHistory directorySyncHistory;
+
+    @Before
+    public void setup() {
+        doReturn(new TestPluginSettings()).when(pluginSettingsFactory).createGlobalSettings();
+        directorySyncHistory = new DirectorySyncHistory(eventPublisher, pluginSettingsFactory, crowdDirectoryService);
+    }
+
+    @Test
+    public void testRecordSameRoundOnlyOnce() {
+        mockLastRound(1000L, 500L);
+
+        directorySyncHistory.record(1L, 42L);
+        directorySyncHistory.record(1L, null);
+
+        final DirectorySyncHistoryBean historyBean = directorySyncHistory.getHistory(1L, null);
+        assertEquals(1, historyBean.getEntries().size());
+        assertEquals(Long.valueOf(42L), historyBean.getEntries().get(0).getUsers());
+        assertNull(historyBean.getThresholdInMillis());
+        assertFalse(historyBean.isDegraded());
+    }
+
+    @Test
+    public void testRecordOnlyFinishedRounds() {
+        // the round is still active, so there is no finished round yet
+        final DirectorySynchronisationInformation information = mock(DirectorySynchronisationInformation.class);
+        doReturn(information).when(crowdDirectoryService).getDirectorySynchronisationInformation(1L);
+
+        directorySyncHistory.record(1L, null);
+        assertTrue(directorySyncHistory.getHistory(1L, null).getEntries().isEmpty());
+
+        // the finished round is picked up when the history is read
+        mockLastRound(1000L, 500L);
+
+        final DirectorySyncHistoryBean historyBean = directorySyncHistory.getHistory(1L, null);
+        assertEquals(1, historyBean.getEntries().size());
+        assertEquals(500L, historyBean.getEntries().get(0).getDurationInMillis());
+    }
+
+    @Test
+    public void testGetHistoryDegraded() {
+        final long[] durations = {100, 110, 90, 100, 105, 1000};
+        for (int i = 0; i < durations.length; i++) {
+            mockLastRound(i * 10000L, durations[i]);
+            directorySyncHistory.record(1L, null);
+        }
+
+        final DirectorySyncHistoryBean historyBean = directorySyncHistory.getHistory(1L, null);
+        assertEquals(durations.length, historyBean.getEntries().size());
+        assertEquals(Long.valueOf(100L), historyBean.getP50DurationInMillis());
+        assertEquals(Long.valueOf(1000L), historyBean.getP95DurationInMillis());
+        assertEquals(Long.valueOf(300L), historyBean.getThresholdInMillis());
+        assertTrue(historyBean.getTrendInPercent() > 0);
+        assertTrue(historyBean.isDegraded());
+
+        assertFalse(directorySyncHistory.getHistory(1L, 2000L).isDegraded());
+    }
+
+    @Test
+    public void testGetHistoryBounded() {
+        for (int i = 0; i < DirectorySyncHistory.MAX_ENTRIES + 10; i++) {
+            mockLastRound(i * 10000L, 100L);
+            directorySyncHistory.record(1L, null);
+        }
+
+        assertEquals(DirectorySyncHistory.MAX_ENTRIES, directorySyncHistory.getHistory(1L, null).getEntries().size());
+    }
+
+    @Test
+    public void testGetHistoryEmpty() {
+        final DirectorySyncHistoryBean historyBean = directorySyncHistory.getHistory(1L, null);
+
+        assertTrue(historyBean.getEntries().isEmpty());
+        assertNull(historyBean.getP50DurationInMillis());
+        assertFalse(historyBean.isDegraded());
+
+        assertEquals(20L, DirectorySyncHistory.percentile(Arrays.asList(10L, 20L, 30L, 40L), 50));
+        assertEquals(40L, DirectorySyncHistory.percentile(Arrays.asList(10L, 20L, 30L, 40L), 95));
+        assertEquals(10L, DirectorySyncHistory.percentile(Arrays.asList(10L), 50));
+    }
+
+    private void mockLastRound(
+            final long startTime,
+            final long duration) {
+
+        final DirectorySynchronisationRoundInformation round = mock(DirectorySynchronisationRoundInformation.class);
+        doReturn(startTime).when(round).getStartTime();
+        doReturn(duration).when(round).getDurationMs();
+        final DirectorySynchronisationInformation information = mock(DirectorySynchronisationInformation.class);
+        doReturn(round).when(information).getLastRound();
+        doReturn(information).when(crowdDirectoryService).getDirectorySynchronisationInformation(1L);
+    }
+
+    private static class TestPluginSettings implements PluginSettings {
+
+        private final Map<String, Object> settings = new HashMap<>();
+
+        @Override
+        public Object get(String key) {
+            return settings.get(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return settings.put(key, value);
+        }
+
+        @Override
+        public Object remove(String key) {
+            return settings.remove(key);
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.manager.directory.DirectoryManager;
+import com.atlassian.crowd.model.directory.ImmutableDirectory;
+import com.atlassian.crowd.search.query.entity.EntityQuery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DirectorySyncLongRunningTaskTest {
+
+    @Mock
+    private CrowdDirectoryService crowdDirectoryService;
+
+    @Mock
+    private DirectoryManager directoryManager;
+
+    @Mock
+    private DirectorySyncHistory directorySyncHistory;
+
+    @Test
+    public void testCountUsersOfDirectoryOnly() throws Exception {
+        final List<String> fullChunk = new ArrayList<>();
+        for (int i = 0; i < DirectorySyncLongRunningTask.COUNT_CHUNK_SIZE; i++) {
+            fullChunk.add("user" + i);
+        }
+        doReturn(fullChunk, Collections.singletonList("last")).when(directoryManager).searchUsers(eq(1L), any());
+        doReturn(Arrays.asList("group1", "group2")).when(directoryManager).searchGroups(eq(1L), any());
+
+        final Directory directory = ImmutableDirectory.builder("directory", DirectoryType.CONNECTOR, "test.class")
+                .setId(1L)
+                .build();
+        final DirectorySyncLongRunningTask task = new DirectorySyncLongRunningTask(
+                crowdDirectoryService, directoryManager, directorySyncHistory, directory, null);
+        task.runInternal();
+
+        assertEquals(Long.valueOf(DirectorySyncLongRunningTask.COUNT_CHUNK_SIZE + 1), task.getUsers());
+        assertEquals(Long.valueOf(2L), task.getGroups());
+        assertNull(task.getEntitiesPerSecond());
+        verify(directorySyncHistory).record(1L, (long) DirectorySyncLongRunningTask.COUNT_CHUNK_SIZE + 1);
+
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<EntityQuery<String>> queryCaptor = ArgumentCaptor.forClass(EntityQuery.class);
+        verify(directoryManager, times(2)).searchUsers(eq(1L), queryCaptor.capture());
+        assertEquals(DirectorySyncLongRunningTask.COUNT_CHUNK_SIZE, queryCaptor.getAllValues().get(1).getStartIndex());
+    }
+
+}
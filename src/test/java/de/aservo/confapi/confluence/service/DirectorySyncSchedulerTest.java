@@ -0,0 +1,221 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.beehive.ClusterLock;
+import com.atlassian.beehive.ClusterLockService;
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.model.directory.ImmutableDirectory;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.confluence.model.DirectorySyncScheduleBean;
+import de.aservo.confapi.confluence.model.DirectorySyncWindowBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.atlassian.crowd.directory.SynchronisableDirectoryProperties.CACHE_SYNCHRONISE_INTERVAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DirectorySyncSchedulerTest {
+
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+
+    @Mock
+    private CrowdDirectoryService crowdDirectoryService;
+
+    @Mock
+    private PluginSettingsFactory pluginSettingsFactory;
+
+    @Mock
+    private ClusterLockService clusterLockService;
+
+    @Mock
+    private ClusterLock clusterLock;
+
+    private DirectorySyncScheduler directorySyncScheduler;
+
+    @Before
+    public void setup() {
+        directorySyncScheduler = new DirectorySyncScheduler(crowdDirectoryService, pluginSettingsFactory, clusterLockService);
+    }
+
+    @Test
+    public void testSetSyncSchedulePausesAndResumes() {
+        mockSettingsAndLock();
+        doReturn(Collections.singletonList(createDirectory(1L))).when(crowdDirectoryService).findAllDirectories();
+
+        directorySyncScheduler.setSyncSchedule(createSchedule(Collections.singletonList(1L)));
+        final DirectorySyncScheduleBean syncScheduleBean = directorySyncScheduler.setSyncSchedule(createSchedule(Collections.emptyList()));
+
+        final ArgumentCaptor<Directory> directoryCaptor = ArgumentCaptor.forClass(Directory.class);
+        verify(crowdDirectoryService, times(2)).updateDirectory(directoryCaptor.capture());
+        final List<Directory> updatedDirectories = directoryCaptor.getAllValues();
+        assertEquals(String.valueOf(DirectorySyncScheduler.PAUSED_SYNC_INTERVAL_IN_SECONDS),
+                updatedDirectories.get(0).getAttributes().get(CACHE_SYNCHRONISE_INTERVAL));
+        assertEquals("3600", updatedDirectories.get(1).getAttributes().get(CACHE_SYNCHRONISE_INTERVAL));
+        assertEquals(Collections.emptyList(), syncScheduleBean.getPausedDirectoryIds());
+    }
+
+    @Test
+    public void testTriggerSyncsStaggered() {
+        mockSettingsAndLock();
+        doReturn(createDirectory(1L)).when(crowdDirectoryService).findDirectoryById(1L);
+        doReturn(createDirectory(2L)).when(crowdDirectoryService).findDirectoryById(2L);
+        doReturn(Arrays.asList(createDirectory(1L), createDirectory(2L))).when(crowdDirectoryService).findAllDirectories();
+        directorySyncScheduler.setSyncSchedule(createSchedule(Arrays.asList(1L, 2L)));
+
+        directorySyncScheduler.triggerSyncs(ZonedDateTime.of(2026, 10, 19, 8, 1, 0, 0, ZONE));
+        verify(crowdDirectoryService).synchroniseDirectory(1L, true);
+        verify(crowdDirectoryService, never()).synchroniseDirectory(2L, true);
+
+        // the first directory has been synchronised in this window and the second one is not due yet
+        directorySyncScheduler.triggerSyncs(ZonedDateTime.of(2026, 10, 19, 8, 2, 0, 0, ZONE));
+        verify(crowdDirectoryService, never()).synchroniseDirectory(2L, true);
+
+        directorySyncScheduler.triggerSyncs(ZonedDateTime.of(2026, 10, 19, 8, 6, 0, 0, ZONE));
+        verify(crowdDirectoryService).synchroniseDirectory(1L, true);
+        verify(crowdDirectoryService).synchroniseDirectory(2L, true);
+
+        assertEquals(2, directorySyncScheduler.getSyncSchedule().getLastTriggered().size());
+    }
+
+    @Test
+    public void testTriggerSyncsStaggeredInWindowOpenedLongAgo() {
+        mockSettingsAndLock();
+        doReturn(createDirectory(1L)).when(crowdDirectoryService).findDirectoryById(1L);
+        doReturn(createDirectory(2L)).when(crowdDirectoryService).findDirectoryById(2L);
+        doReturn(Arrays.asList(createDirectory(1L), createDirectory(2L))).when(crowdDirectoryService).findAllDirectories();
+        directorySyncScheduler.setSyncSchedule(createSchedule(Arrays.asList(1L, 2L)));
+
+        // the window opened at 08:00, so both directories are already due at the first check
+        directorySyncScheduler.triggerSyncs(ZonedDateTime.of(2026, 10, 19, 9, 30, 0, 0, ZONE));
+        verify(crowdDirectoryService).synchroniseDirectory(1L, true);
+
+        // the next check a minute later is still within the stagger of the previous trigger
+        directorySyncScheduler.triggerSyncs(ZonedDateTime.of(2026, 10, 19, 9, 31, 0, 0, ZONE));
+        verify(crowdDirectoryService, never()).synchroniseDirectory(2L, true);
+
+        directorySyncScheduler.triggerSyncs(ZonedDateTime.of(2026, 10, 19, 9, 35, 0, 0, ZONE));
+        verify(crowdDirectoryService).synchroniseDirectory(2L, true);
+    }
+
+    @Test
+    public void testTriggerSyncsInScheduleZone() {
+        mockSettingsAndLock();
+        doReturn(createDirectory(1L)).when(crowdDirectoryService).findDirectoryById(1L);
+        doReturn(Collections.singletonList(createDirectory(1L))).when(crowdDirectoryService).findAllDirectories();
+        final DirectorySyncScheduleBean syncScheduleBean = createSchedule(Collections.singletonList(1L));
+        syncScheduleBean.setZone("Europe/Berlin");
+        assertEquals("Europe/Berlin", directorySyncScheduler.setSyncSchedule(syncScheduleBean).getZone());
+
+        // 08:30 UTC is 10:30 in Berlin and thus after the window
+        directorySyncScheduler.triggerSyncs(ZonedDateTime.of(2026, 10, 19, 8, 30, 0, 0, ZONE));
+        verify(crowdDirectoryService, never()).synchroniseDirectory(1L, true);
+
+        // 06:30 UTC is 08:30 in Berlin and thus inside the window
+        directorySyncScheduler.triggerSyncs(ZonedDateTime.of(2026, 10, 19, 6, 30, 0, 0, ZONE));
+        verify(crowdDirectoryService).synchroniseDirectory(1L, true);
+    }
+
+    @Test
+    public void testGetWindowStart() {
+        // 2026-10-19 is a Monday
+        final List<DirectorySyncWindowBean> windows = Collections.singletonList(
+                new DirectorySyncWindowBean(Collections.singletonList("MONDAY"), "22:00", "02:00"));
+
+        assertEquals(ZonedDateTime.of(2026, 10, 19, 22, 0, 0, 0, ZONE),
+                DirectorySyncScheduler.getWindowStart(windows, ZonedDateTime.of(2026, 10, 20, 1, 0, 0, 0, ZONE)));
+        assertNull(DirectorySyncScheduler.getWindowStart(windows, ZonedDateTime.of(2026, 10, 20, 23, 0, 0, 0, ZONE)));
+        assertNull(DirectorySyncScheduler.getWindowStart(windows, ZonedDateTime.of(2026, 10, 19, 21, 0, 0, 0, ZONE)));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSetSyncScheduleInvalidWindow() {
+        final DirectorySyncScheduleBean syncScheduleBean = createSchedule(Collections.emptyList());
+        syncScheduleBean.getWindows().get(0).setEndTime("25:00");
+
+        directorySyncScheduler.setSyncSchedule(syncScheduleBean);
+    }
+
+    @Test
+    public void testOnStopWithoutStart() {
+        directorySyncScheduler.onStop();
+        directorySyncScheduler.onStart();
+        directorySyncScheduler.onStop();
+        directorySyncScheduler.onStop();
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSetSyncScheduleInvalidZone() {
+        final DirectorySyncScheduleBean syncScheduleBean = createSchedule(Collections.emptyList());
+        syncScheduleBean.setZone("Mars/Olympus");
+
+        directorySyncScheduler.setSyncSchedule(syncScheduleBean);
+    }
+
+    private void mockSettingsAndLock() {
+        doReturn(new TestPluginSettings()).when(pluginSettingsFactory).createGlobalSettings();
+        doReturn(clusterLock).when(clusterLockService).getLockForName(anyString());
+    }
+
+    private static DirectorySyncScheduleBean createSchedule(
+            final List<Long> pausedDirectoryIds) {
+
+        final DirectorySyncScheduleBean syncScheduleBean = new DirectorySyncScheduleBean();
+        syncScheduleBean.setPausedDirectoryIds(pausedDirectoryIds);
+        syncScheduleBean.setWindows(Collections.singletonList(new DirectorySyncWindowBean(null, "08:00", "10:00")));
+        syncScheduleBean.setStaggerInMinutes(5);
+        syncScheduleBean.setZone(ZONE.getId());
+        return syncScheduleBean;
+    }
+
+    private static Directory createDirectory(
+            final long id) {
+
+        return ImmutableDirectory.builder("directory" + id, DirectoryType.CROWD, "test.class")
+                .setId(id)
+                .setAttributes(Collections.singletonMap(CACHE_SYNCHRONISE_INTERVAL, "3600"))
+                .build();
+    }
+
+    private static class TestPluginSettings implements PluginSettings {
+
+        private final Map<String, Object> settings = new HashMap<>();
+
+        @Override
+        public Object get(String key) {
+            return settings.get(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return settings.put(key, value);
+        }
+
+        @Override
+        public Object remove(String key) {
+            return settings.remove(key);
+        }
+    }
+
+}
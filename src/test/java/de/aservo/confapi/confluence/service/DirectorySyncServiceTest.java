@@ -0,0 +1,131 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.confluence.util.longrunning.LongRunningTaskManager;
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationInformation;
+import com.atlassian.crowd.embedded.api.DirectorySynchronisationRoundInformation;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.manager.directory.DirectoryManager;
+import com.atlassian.crowd.model.directory.ImmutableDirectory;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.NotFoundException;
+import de.aservo.confapi.commons.exception.ServiceUnavailableException;
+import de.aservo.confapi.confluence.model.DirectorySyncBean;
+import de.aservo.confapi.confluence.model.DirectorySyncHistoryBean;
+import de.aservo.confapi.confluence.model.DirectorySyncMode;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static com.atlassian.crowd.directory.SynchronisableDirectoryProperties.INCREMENTAL_SYNC_ENABLED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DirectorySyncServiceTest {
+
+    @Mock
+    private CrowdDirectoryService crowdDirectoryService;
+
+    @Mock
+    private DirectoryManager directoryManager;
+
+    @Mock
+    private LongRunningTaskManager longRunningTaskManager;
+
+    @Mock
+    private DirectorySyncHistory directorySyncHistory;
+
+    private DirectorySyncServiceImpl directorySyncService;
+
+    @Before
+    public void setup() {
+        directorySyncService = new DirectorySyncServiceImpl(crowdDirectoryService, directoryManager, longRunningTaskManager,
+                directorySyncHistory);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testSynchroniseDirectoryNotExisting() {
+        directorySyncService.synchroniseDirectory(1L, null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSynchroniseDirectoryInternal() {
+        doReturn(createDirectory(DirectoryType.INTERNAL, false)).when(crowdDirectoryService).findDirectoryById(1L);
+
+        directorySyncService.synchroniseDirectory(1L, null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSynchroniseDirectoryModeNotConfigured() {
+        doReturn(createDirectory(DirectoryType.CROWD, false)).when(crowdDirectoryService).findDirectoryById(1L);
+
+        directorySyncService.synchroniseDirectory(1L, DirectorySyncMode.INCREMENTAL);
+    }
+
+    @Test(expected = ServiceUnavailableException.class)
+    public void testSynchroniseDirectoryAlreadySynchronising() {
+        doReturn(createDirectory(DirectoryType.CROWD, true)).when(crowdDirectoryService).findDirectoryById(1L);
+        doReturn(true).when(crowdDirectoryService).isDirectorySynchronising(1L);
+
+        directorySyncService.synchroniseDirectory(1L, DirectorySyncMode.INCREMENTAL);
+    }
+
+    @Test
+    public void testGetDirectorySync() {
+        doReturn(createDirectory(DirectoryType.CROWD, true)).when(crowdDirectoryService).findDirectoryById(1L);
+
+        final DirectorySynchronisationRoundInformation lastRound = mock(DirectorySynchronisationRoundInformation.class);
+        doReturn(1000L).when(lastRound).getStartTime();
+        doReturn(2000L).when(lastRound).getDurationMs();
+        doReturn("directory.caching.sync.completed.INCREMENTAL").when(lastRound).getStatusKey();
+        final DirectorySynchronisationInformation information = mock(DirectorySynchronisationInformation.class);
+        doReturn(lastRound).when(information).getLastRound();
+        doReturn(information).when(crowdDirectoryService).getDirectorySynchronisationInformation(1L);
+        final DirectorySyncHistoryBean historyBean = new DirectorySyncHistoryBean();
+        historyBean.setDegraded(true);
+        doReturn(historyBean).when(directorySyncHistory).getHistory(1L, null);
+
+        final DirectorySyncBean directorySyncBean = directorySyncService.getDirectorySync(1L);
+
+        assertEquals(DirectorySyncMode.INCREMENTAL, directorySyncBean.getMode());
+        assertFalse(directorySyncBean.isSynchronising());
+        assertEquals(1000L, directorySyncBean.getLastStartTime().getTime());
+        assertEquals(Long.valueOf(2000L), directorySyncBean.getLastDurationInMillis());
+        assertEquals("directory.caching.sync.completed.INCREMENTAL", directorySyncBean.getLastStatus());
+        assertTrue(directorySyncBean.isDegraded());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testGetDirectorySyncHistoryInvalidThreshold() {
+        doReturn(createDirectory(DirectoryType.CROWD, true)).when(crowdDirectoryService).findDirectoryById(1L);
+
+        directorySyncService.getDirectorySyncHistory(1L, 0L);
+    }
+
+    @Test
+    public void testGetSyncQueueNotExisting() {
+        assertNull(directorySyncService.getSyncQueue(UUID.randomUUID()));
+    }
+
+    private static Directory createDirectory(
+            final DirectoryType directoryType,
+            final boolean incrementalSync) {
+
+        return ImmutableDirectory.builder("test", directoryType, "test.class")
+                .setId(1L)
+                .setAttributes(Collections.singletonMap(INCREMENTAL_SYNC_ENABLED, String.valueOf(incrementalSync)))
+                .build();
+    }
+
+}
@@ -0,0 +1,164 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.Group;
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.crowd.embedded.impl.ImmutableGroup;
+import com.atlassian.crowd.exception.InvalidGroupException;
+import com.atlassian.sal.api.transaction.TransactionCallback;
+import com.atlassian.sal.api.transaction.TransactionTemplate;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.commons.exception.NotFoundException;
+import de.aservo.confapi.confluence.model.GroupBean;
+import de.aservo.confapi.confluence.model.GroupMembersBean;
+import de.aservo.confapi.confluence.model.GroupMembersChangeBean;
+import de.aservo.confapi.confluence.model.GroupMembersResultBean;
+import de.aservo.confapi.confluence.model.GroupsBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GroupsServiceTest {
+
+    private static final String GROUP_NAME = "confluence-users";
+
+    @Mock
+    private CrowdService crowdService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private GroupsServiceImpl groupsService;
+
+    @Before
+    public void setup() {
+        groupsService = new GroupsServiceImpl(crowdService, transactionTemplate);
+    }
+
+    @Test
+    public void testGetGroups() {
+        doReturn(Arrays.asList("confluence-users", "confluence-administrators")).when(crowdService).search(any());
+
+        final GroupsBean groupsBean = groupsService.getGroups();
+
+        assertEquals(Arrays.asList(new GroupBean("confluence-users"), new GroupBean("confluence-administrators")),
+                groupsBean.getGroups());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testGetGroupNotFound() {
+        groupsService.getGroup(GROUP_NAME);
+    }
+
+    @Test
+    public void testSetGroupExisting() throws Exception {
+        doReturn(new ImmutableGroup(GROUP_NAME)).when(crowdService).getGroup(GROUP_NAME);
+
+        assertEquals(new GroupBean(GROUP_NAME), groupsService.setGroup(new GroupBean(GROUP_NAME)));
+        verify(crowdService, never()).addGroup(any());
+    }
+
+    @Test
+    public void testSetGroupCreated() throws Exception {
+        final Group group = new ImmutableGroup(GROUP_NAME);
+        doReturn(group).when(crowdService).addGroup(any());
+
+        assertEquals(new GroupBean(GROUP_NAME), groupsService.setGroup(new GroupBean(GROUP_NAME)));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSetGroupCreateFailed() throws Exception {
+        doThrow(new InvalidGroupException(new ImmutableGroup(GROUP_NAME), "invalid"))
+                .when(crowdService).addGroup(any());
+
+        groupsService.setGroup(new GroupBean(GROUP_NAME));
+    }
+
+    @Test
+    public void testSetGroupMembersOnlyWritesDifference() throws Exception {
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction())
+                .when(transactionTemplate).execute(any());
+
+        final Group group = new ImmutableGroup(GROUP_NAME);
+        doReturn(group).when(crowdService).getGroup(GROUP_NAME);
+        doReturn(Arrays.asList("alice", "Bob", "carol")).when(crowdService).search(any());
+
+        final User dave = mock(User.class);
+        final User carol = mock(User.class);
+        doReturn(dave).when(crowdService).getUser("dave");
+        doReturn(carol).when(crowdService).getUser("carol");
+
+        final GroupMembersResultBean result = groupsService.setGroupMembers(GROUP_NAME,
+                new GroupMembersBean(Arrays.asList("alice", "bob", "dave", "eve")));
+
+        assertEquals(Collections.singletonList("dave"), result.getAdded());
+        assertEquals(Collections.singletonList("carol"), result.getRemoved());
+        assertEquals(2, result.getUnchanged());
+        assertEquals(1, result.getFailed().size());
+        assertEquals("eve", result.getFailed().get(0).getUsername());
+        verify(crowdService).addUserToGroup(dave, group);
+        verify(crowdService).removeUserFromGroup(carol, group);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSetGroupMembersWithoutMembers() {
+        groupsService.setGroupMembers(GROUP_NAME, new GroupMembersBean(null));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSetGroupMembersWithBlankMember() {
+        groupsService.setGroupMembers(GROUP_NAME, new GroupMembersBean(Arrays.asList("alice", " ")));
+    }
+
+    @Test
+    public void testUpdateGroupMembers() throws Exception {
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction())
+                .when(transactionTemplate).execute(any());
+
+        final Group group = new ImmutableGroup(GROUP_NAME);
+        doReturn(group).when(crowdService).getGroup(GROUP_NAME);
+        doReturn(Arrays.asList("alice", "Bob")).when(crowdService).search(any());
+
+        final User bob = mock(User.class);
+        final User carol = mock(User.class);
+        doReturn(bob).when(crowdService).getUser("Bob");
+        doReturn(carol).when(crowdService).getUser("carol");
+
+        final GroupMembersResultBean result = groupsService.updateGroupMembers(GROUP_NAME,
+                new GroupMembersChangeBean(Arrays.asList("alice", "carol"), Arrays.asList("bob", "dave")));
+
+        assertEquals(Collections.singletonList("carol"), result.getAdded());
+        assertEquals(Collections.singletonList("Bob"), result.getRemoved());
+        assertEquals(2, result.getUnchanged());
+        assertEquals(0, result.getFailed().size());
+        verify(crowdService).addUserToGroup(carol, group);
+        verify(crowdService).removeUserFromGroup(bob, group);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testUpdateGroupMembersWithoutBody() {
+        groupsService.updateGroupMembers(GROUP_NAME, null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testUpdateGroupMembersAddAndRemoveSameUser() {
+        groupsService.updateGroupMembers(GROUP_NAME,
+                new GroupMembersChangeBean(Arrays.asList("alice", "carol"), Collections.singletonList("Alice")));
+    }
+
+}
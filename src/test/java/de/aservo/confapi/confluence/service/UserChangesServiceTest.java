@@ -0,0 +1,150 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.beehive.ClusterLock;
+import com.atlassian.beehive.ClusterLockService;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import de.aservo.confapi.commons.exception.BadRequestException;
+import de.aservo.confapi.confluence.model.UserChangeBean;
+import de.aservo.confapi.confluence.model.UserChangesBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserChangesServiceTest {
+
+    @Mock
+    private EventPublisher eventPublisher;
+
+    @Mock
+    private PluginSettingsFactory pluginSettingsFactory;
+
+    @Mock
+    private ClusterLockService clusterLockService;
+
+    @Mock
+    private ClusterLock clusterLock;
+
+    private TestPluginSettings pluginSettings;
+
+    private UserChangesServiceImpl userChangesService;
+
+    @Before
+    public void setup() {
+        pluginSettings = new TestPluginSettings();
+        doReturn(pluginSettings).when(pluginSettingsFactory).createGlobalSettings();
+        userChangesService = new UserChangesServiceImpl(eventPublisher, pluginSettingsFactory, clusterLockService);
+    }
+
+    @Test
+    public void testGetUserChangesSinceCursor() {
+        doReturn(clusterLock).when(clusterLockService).getLockForName(anyString());
+
+        userChangesService.record(UserChangeBean.Type.CREATED, "user1", null);
+        userChangesService.record(UserChangeBean.Type.RENAMED, "user2", "user1");
+        userChangesService.flush();
+
+        final UserChangesBean firstPage = userChangesService.getUserChanges(null, 1);
+        assertEquals(1, firstPage.getChanges().size());
+        assertEquals(UserChangeBean.Type.CREATED, firstPage.getChanges().get(0).getType());
+
+        final UserChangesBean secondPage = userChangesService.getUserChanges(firstPage.getNextCursor(), 10);
+        assertEquals(1, secondPage.getChanges().size());
+        assertEquals("user1", secondPage.getChanges().get(0).getOldUsername());
+
+        final UserChangesBean emptyPage = userChangesService.getUserChanges(secondPage.getNextCursor(), 10);
+        assertTrue(emptyPage.getChanges().isEmpty());
+        assertEquals(secondPage.getNextCursor(), emptyPage.getNextCursor());
+
+        verify(clusterLock).lock();
+        verify(clusterLock).unlock();
+    }
+
+    @Test
+    public void testGetUserChangesAcrossSegments() {
+        doReturn(clusterLock).when(clusterLockService).getLockForName(anyString());
+
+        for (int i = 0; i <= UserChangesServiceImpl.SEGMENT_SIZE; i++) {
+            userChangesService.record(UserChangeBean.Type.UPDATED, "user" + i, null);
+        }
+        userChangesService.flush();
+
+        final UserChangesBean userChangesBean = userChangesService.getUserChanges(null, 2 * UserChangesServiceImpl.SEGMENT_SIZE);
+        assertEquals(UserChangesServiceImpl.SEGMENT_SIZE + 1, userChangesBean.getChanges().size());
+        assertEquals(UserChangesServiceImpl.SEGMENT_SIZE, userChangesBean.getChanges().get(UserChangesServiceImpl.SEGMENT_SIZE).getSequence());
+    }
+
+    @Test
+    public void testFlushDoesNotRewriteFullSegments() {
+        doReturn(clusterLock).when(clusterLockService).getLockForName(anyString());
+
+        for (int i = 0; i < UserChangesServiceImpl.SEGMENT_SIZE; i++) {
+            userChangesService.record(UserChangeBean.Type.UPDATED, "user" + i, null);
+        }
+        userChangesService.flush();
+        userChangesService.record(UserChangeBean.Type.UPDATED, "user", null);
+        userChangesService.flush();
+
+        assertEquals(Integer.valueOf(1), pluginSettings.puts.get(UserChangesServiceImpl.SETTINGS_KEY_SEGMENT + 0));
+        assertEquals(Integer.valueOf(1), pluginSettings.puts.get(UserChangesServiceImpl.SETTINGS_KEY_SEGMENT + 1));
+    }
+
+    @Test
+    public void testGetUserChangesEmptyLog() {
+        final UserChangesBean userChangesBean = userChangesService.getUserChanges(null, 10);
+        assertTrue(userChangesBean.getChanges().isEmpty());
+        assertNull(userChangesBean.getNextCursor());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testGetUserChangesInvalidCursor() {
+        userChangesService.getUserChanges("invalid", 10);
+    }
+
+    @Test
+    public void testStopWithoutStart() {
+        doReturn(clusterLock).when(clusterLockService).getLockForName(anyString());
+        userChangesService.record(UserChangeBean.Type.CREATED, "user1", null);
+
+        userChangesService.onStop();
+
+        verify(eventPublisher).unregister(userChangesService);
+        assertEquals(1, userChangesService.getUserChanges(null, 10).getChanges().size());
+    }
+
+    private static class TestPluginSettings implements PluginSettings {
+
+        private final Map<String, Object> settings = new HashMap<>();
+        private final Map<String, Integer> puts = new HashMap<>();
+
+        @Override
+        public Object get(String key) {
+            return settings.get(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            puts.merge(key, 1, Integer::sum);
+            return settings.put(key, value);
+        }
+
+        @Override
+        public Object remove(String key) {
+            return settings.remove(key);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.cache.Cache;
+import com.atlassian.cache.CacheManager;
+import com.atlassian.cache.CacheSettings;
+import com.atlassian.crowd.event.user.UserRenamedEvent;
+import com.atlassian.crowd.model.user.User;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.sal.api.user.UserKey;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserLookupCacheTest {
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private EventPublisher eventPublisher;
+
+    @Mock
+    private Cache<String, UserKey> cache;
+
+    private UserLookupCache userLookupCache;
+
+    @Before
+    public void setup() {
+        doReturn(cache).when(cacheManager).getCache(eq(UserLookupCache.CACHE_NAME), isNull(), any(CacheSettings.class));
+        userLookupCache = new UserLookupCache(cacheManager, eventPublisher);
+    }
+
+    @Test
+    public void testGetIsCaseInsensitive() {
+        final UserKey userKey = new UserKey("key");
+        doReturn(userKey).when(cache).get("user");
+
+        assertEquals(userKey, userLookupCache.get("User"));
+    }
+
+    @Test
+    public void testPutIsCaseInsensitive() {
+        final UserKey userKey = new UserKey("key");
+
+        userLookupCache.put("User", userKey);
+
+        verify(cache).put("user", userKey);
+    }
+
+    @Test
+    public void testInvalidateOnRename() {
+        final User user = mock(User.class);
+        doReturn("NewName").when(user).getName();
+        final UserRenamedEvent event = mock(UserRenamedEvent.class);
+        doReturn(user).when(event).getUser();
+        doReturn("OldName").when(event).getOldUsername();
+
+        userLookupCache.onUserRenamed(event);
+
+        verify(cache).remove("oldname");
+        verify(cache).remove("newname");
+    }
+
+}
@@ -1,27 +1,70 @@
 package de.aservo.confapi.confluence.service;
 
+import com.atlassian.confluence.security.login.LoginManager;
 import com.atlassian.confluence.user.ConfluenceUser;
 import com.atlassian.confluence.user.ConfluenceUserImpl;
 import com.atlassian.confluence.user.UserAccessor;
+import com.atlassian.confluence.util.longrunning.LongRunningTaskManager;
+import com.atlassian.crowd.embedded.api.CrowdDirectoryService;
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.Directory;
+import com.atlassian.crowd.embedded.api.DirectoryType;
+import com.atlassian.crowd.embedded.api.PasswordCredential;
+import com.atlassian.crowd.manager.directory.DirectoryManager;
+import com.atlassian.crowd.model.directory.ImmutableDirectory;
+import com.atlassian.crowd.password.factory.PasswordEncoderFactory;
+import com.atlassian.sal.api.transaction.TransactionCallback;
+import com.atlassian.sal.api.transaction.TransactionTemplate;
+import com.atlassian.sal.api.user.UserKey;
 import com.atlassian.user.EntityException;
 import com.atlassian.user.User;
 import com.atlassian.user.UserManager;
 import com.atlassian.user.impl.DefaultUser;
+import com.atlassian.user.security.password.Credential;
 import de.aservo.confapi.commons.exception.BadRequestException;
 import de.aservo.confapi.commons.exception.NotFoundException;
 import de.aservo.confapi.commons.model.UserBean;
+import de.aservo.confapi.confluence.model.UserBulkItemBean;
+import de.aservo.confapi.confluence.model.UserRenameBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateBean;
+import de.aservo.confapi.confluence.model.UsersBulkBean;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static com.atlassian.crowd.directory.AbstractInternalDirectory.ATTRIBUTE_PASSWORD_REGEX;
+import static com.atlassian.crowd.directory.AbstractInternalDirectory.ATTRIBUTE_USER_ENCRYPTION_METHOD;
 import static de.aservo.confapi.confluence.model.util.UserBeanUtil.toUser;
 import static de.aservo.confapi.confluence.model.util.UserBeanUtil.toUserBean;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class UserServiceTest {
@@ -32,11 +75,38 @@ public class UserServiceTest {
     @Mock
     private UserAccessor userAccessor;
 
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private CrowdService crowdService;
+
+    @Mock
+    private CrowdDirectoryService crowdDirectoryService;
+
+    @Mock
+    private DirectoryManager directoryManager;
+
+    @Mock
+    private LongRunningTaskManager longRunningTaskManager;
+
+    @Mock
+    private LoginManager loginManager;
+
+    @Mock
+    private UserLookupCache userLookupCache;
+
     private UsersServiceImpl userService;
 
     @Before
     public void setup() {
-        userService = new UsersServiceImpl(userManager, userAccessor);
+        userService = new UsersServiceImpl(userManager, userAccessor, transactionTemplate, crowdService,
+                crowdDirectoryService, directoryManager, longRunningTaskManager, loginManager, userLookupCache);
+    }
+
+    @After
+    public void tearDown() {
+        userService.onStop();
     }
 
     @Test
@@ -109,6 +179,52 @@ public class UserServiceTest {
         assertEquals(UserBean.EXAMPLE_1, notUpdatedUserBean);
     }
 
+    @Test
+    public void testUpdateUserWithoutChangesDoesNotWrite() throws EntityException {
+        final User user = toUser(UserBean.EXAMPLE_1);
+        doReturn(user).when(userManager).getUser(user.getName());
+
+        final UserBean updatedUserBean = userService.updateUser(user.getName(), toUserBean(user));
+
+        assertEquals(UserBean.EXAMPLE_1, updatedUserBean);
+        verify(userManager, never()).saveUser(any());
+        verify(userManager, never()).alterPassword(any(), any());
+        verify(userAccessor, never()).renameUser(any(), any());
+    }
+
+    @Test
+    public void testUpdateUserUsernameInDifferentCaseDoesNotRename() throws EntityException {
+        final User user = toUser(UserBean.EXAMPLE_1);
+        doReturn(user).when(userManager).getUser(user.getName());
+
+        final UserBean requestUserBean = toUserBean(user);
+        requestUserBean.setUsername(user.getName().toUpperCase());
+        userService.updateUser(user.getName(), requestUserBean);
+
+        verify(userAccessor, never()).renameUser(any(), any());
+        verify(userManager, never()).saveUser(any());
+    }
+
+    @Test
+    public void testUpdateUserWritesOnce() throws EntityException {
+        final User user = toUser(UserBean.EXAMPLE_1);
+        doReturn(user).when(userManager).getUser(user.getName());
+
+        final UserBean updateUserBean = toUserBean(user);
+        updateUserBean.setFullName("Changed Name");
+        updateUserBean.setEmail("changed@example.com");
+        updateUserBean.setPassword("new password");
+
+        final UserBean updatedUserBean = userService.updateUser(user.getName(), updateUserBean);
+
+        assertEquals("Changed Name", updatedUserBean.getFullName());
+        assertEquals("changed@example.com", updatedUserBean.getEmail());
+        verify(userManager, times(1)).getUser(user.getName());
+        verify(userManager, times(1)).saveUser(any());
+        verify(userManager, times(1)).alterPassword(user, "new password");
+        verify(transactionTemplate, times(1)).execute(any());
+    }
+
     @Test(expected = NotFoundException.class)
     public void testUpdateUserNotConfluenceUser() throws EntityException, NotFoundException, BadRequestException {
         final User user = new DefaultUser(toUser(UserBean.EXAMPLE_1));
@@ -139,4 +255,274 @@ public class UserServiceTest {
         userService.updatePassword(user.getName(), "newPW");
     }
 
+    @Test
+    public void testSetUsersBulk() throws EntityException {
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction())
+                .when(transactionTemplate).execute(any());
+
+        final User existingUser = toUser(UserBean.EXAMPLE_1);
+        doReturn(existingUser).when(userManager).getUser(existingUser.getName());
+
+        final List<UserBean> userBeans = new ArrayList<>();
+        userBeans.add(UserBean.EXAMPLE_1);
+        for (int i = 0; i < UsersServiceImpl.BULK_BATCH_SIZE; i++) {
+            final UserBean userBean = new UserBean();
+            userBean.setUsername("user" + i);
+            userBean.setFullName("User " + i);
+            userBean.setEmail("user" + i + "@example.com");
+            userBeans.add(userBean);
+        }
+        userBeans.add(new UserBean());
+
+        final UsersBulkBean usersBulkBean = userService.setUsers(userBeans.iterator());
+
+        assertEquals(1, usersBulkBean.getUpdated());
+        assertEquals(UsersServiceImpl.BULK_BATCH_SIZE, usersBulkBean.getCreated());
+        assertEquals(1, usersBulkBean.getFailed());
+        assertEquals(userBeans.size(), usersBulkBean.getResults().size());
+        assertEquals(UserBulkItemBean.Status.FAILED, usersBulkBean.getResults().get(userBeans.size() - 1).getStatus());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(userAccessor, times(UsersServiceImpl.BULK_BATCH_SIZE)).createUser(any(User.class), eq(Credential.NONE));
+    }
+
+    @Test
+    public void testSetUsersBulkWithUnreadableUser() throws EntityException {
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction())
+                .when(transactionTemplate).execute(any());
+
+        final UserBean userBean = new UserBean();
+        userBean.setUsername("user");
+        userBean.setFullName("User");
+        userBean.setEmail("user@example.com");
+
+        final Iterator<UserBean> userBeans = new Iterator<UserBean>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public UserBean next() {
+                if (index++ == 0) {
+                    return userBean;
+                }
+                throw new BadRequestException("Request body contains an invalid element");
+            }
+        };
+
+        final UsersBulkBean usersBulkBean = userService.setUsers(userBeans);
+
+        assertEquals(1, usersBulkBean.getCreated());
+        assertEquals(1, usersBulkBean.getFailed());
+        assertEquals(2, usersBulkBean.getResults().size());
+        assertEquals(UserBulkItemBean.Status.FAILED, usersBulkBean.getResults().get(1).getStatus());
+        verify(userAccessor).createUser(any(User.class), eq(Credential.NONE));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testSetUsersBulkWithUnreadableFirstUser() {
+        final Iterator<UserBean> userBeans = new Iterator<UserBean>() {
+            @Override
+            public boolean hasNext() {
+                throw new BadRequestException("Request body must be a JSON array");
+            }
+
+            @Override
+            public UserBean next() {
+                throw new NoSuchElementException();
+            }
+        };
+
+        userService.setUsers(userBeans);
+    }
+
+    @Test
+    public void testWriteUsers() throws IOException {
+        final com.atlassian.crowd.embedded.api.User user1 = mock(com.atlassian.crowd.embedded.api.User.class);
+        doReturn("user1").when(user1).getName();
+        final com.atlassian.crowd.embedded.api.User user2 = mock(com.atlassian.crowd.embedded.api.User.class);
+        doReturn("user2").when(user2).getName();
+        doReturn(Arrays.asList(user1, user2)).when(crowdService).search(any());
+
+        final StringWriter writer = new StringWriter();
+        userService.writeUsers(writer, null, null, null, Collections.singleton(UsersServiceImpl.FIELD_USERNAME), null, 2);
+
+        assertEquals("{\"users\":[{\"username\":\"user1\"},{\"username\":\"user2\"}],\"nextCursor\":\""
+                + UsersServiceImpl.encodeCursor(2) + "\"}", writer.toString());
+    }
+
+    @Test
+    public void testWriteUsersLastPage() throws IOException {
+        doReturn(Collections.emptyList()).when(crowdService).search(any());
+
+        final StringWriter writer = new StringWriter();
+        userService.writeUsers(writer, null, null, null, null, UsersServiceImpl.encodeCursor(10), 10);
+
+        assertEquals("{\"users\":[],\"nextCursor\":null}", writer.toString());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testWriteUsersInvalidCursor() throws IOException {
+        userService.writeUsers(new StringWriter(), null, null, null, null, "not a cursor", 10);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testWriteUsersInvalidField() throws IOException {
+        userService.writeUsers(new StringWriter(), null, null, null, Collections.singleton("password"), null, 10);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testValidateUsersQueryUnknownGroup() {
+        userService.validateUsersQuery(null, "unknown", null, null, 10);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testValidateUsersQueryUnknownDirectory() {
+        doReturn(Collections.emptyList()).when(crowdDirectoryService).findAllDirectories();
+
+        userService.validateUsersQuery("unknown", null, null, null, 10);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testValidateUsersQueryInvalidLimit() {
+        userService.validateUsersQuery(null, null, null, null, 0);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testRenameUsersTooMany() {
+        final List<UserRenameBean> userRenameBeans = new ArrayList<>();
+        for (int i = 0; i <= UsersServiceImpl.RENAME_MAX_USERS_PER_TASK; i++) {
+            userRenameBeans.add(new UserRenameBean("user" + i, "renamed" + i));
+        }
+
+        userService.renameUsersAsynchronously(userRenameBeans);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testDeactivateUsersInvalidInactiveDays() {
+        userService.deactivateUsersAsynchronously(new UsersDeactivateBean(0, false, null, true));
+    }
+
+    @Test
+    public void testGetDeactivateQueueNotExisting() {
+        assertNull(userService.getDeactivateQueue(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testGetRenameQueueNotExisting() {
+        assertNull(userService.getRenameQueue(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testSetPasswords() throws Exception {
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction())
+                .when(transactionTemplate).execute(any());
+
+        final com.atlassian.crowd.embedded.api.User internalUser = createCrowdUser(1L);
+        doReturn("internal").when(internalUser).getName();
+        final com.atlassian.crowd.embedded.api.User ldapUser = createCrowdUser(2L);
+        doReturn(internalUser).when(crowdService).getUser("internal");
+        doReturn(ldapUser).when(crowdService).getUser("ldap");
+        doReturn(createDirectory(1L, DirectoryType.INTERNAL, Collections.singletonMap(
+                ATTRIBUTE_USER_ENCRYPTION_METHOD, PasswordEncoderFactory.ATLASSIAN_SECURITY_ENCODER)))
+                .when(crowdDirectoryService).findDirectoryById(1L);
+        doReturn(createDirectory(2L, DirectoryType.CONNECTOR, Collections.emptyMap()))
+                .when(crowdDirectoryService).findDirectoryById(2L);
+
+        final UsersBulkBean usersBulkBean = userService.setPasswords(Arrays.asList(
+                createPasswordUserBean("internal"), createPasswordUserBean("ldap"), createPasswordUserBean("missing")));
+
+        assertEquals(2, usersBulkBean.getUpdated());
+        assertEquals(1, usersBulkBean.getFailed());
+        assertEquals(UserBulkItemBean.Status.UPDATED, usersBulkBean.getResults().get(0).getStatus());
+        assertEquals(UserBulkItemBean.Status.UPDATED, usersBulkBean.getResults().get(1).getStatus());
+        assertEquals(UserBulkItemBean.Status.FAILED, usersBulkBean.getResults().get(2).getStatus());
+
+        // the password of the internal user is encoded beforehand, the one of the LDAP user by its directory
+        verify(directoryManager).updateUserCredential(eq(1L), eq("internal"), argThat((PasswordCredential credential) ->
+                credential.isEncryptedCredential() && !"new password".equals(credential.getCredential())));
+        verify(crowdService).updateUserCredential(ldapUser, "new password");
+        verify(transactionTemplate, times(1)).execute(any());
+    }
+
+    @Test
+    public void testIsPasswordEncodable() {
+        assertTrue(UsersServiceImpl.isPasswordEncodable(createDirectory(1L, DirectoryType.INTERNAL, Collections.singletonMap(
+                ATTRIBUTE_USER_ENCRYPTION_METHOD, PasswordEncoderFactory.ATLASSIAN_SECURITY_ENCODER))));
+
+        final Map<String, String> policyAttributes = new HashMap<>();
+        policyAttributes.put(ATTRIBUTE_USER_ENCRYPTION_METHOD, PasswordEncoderFactory.ATLASSIAN_SECURITY_ENCODER);
+        policyAttributes.put(ATTRIBUTE_PASSWORD_REGEX, ".{12,}");
+        assertFalse(UsersServiceImpl.isPasswordEncodable(createDirectory(1L, DirectoryType.INTERNAL, policyAttributes)));
+        assertFalse(UsersServiceImpl.isPasswordEncodable(createDirectory(2L, DirectoryType.CONNECTOR, Collections.emptyMap())));
+        assertFalse(UsersServiceImpl.isPasswordEncodable(null));
+    }
+
+    @Test
+    public void testGetUserFromCache() throws EntityException {
+        final ConfluenceUser user = (ConfluenceUser) toUser(UserBean.EXAMPLE_1);
+        final UserKey userKey = new UserKey("key");
+        doReturn(userKey).when(userLookupCache).get(user.getName());
+        doReturn(user).when(userAccessor).getUserByKey(userKey);
+
+        assertEquals(toUserBean(user), userService.getUser(user.getName()));
+        verify(userManager, never()).getUser(any());
+    }
+
+    @Test
+    public void testGetUserFromCacheRenamed() throws EntityException {
+        final ConfluenceUser renamedUser = (ConfluenceUser) toUser(UserBean.EXAMPLE_1);
+        final UserKey userKey = new UserKey("key");
+        doReturn(userKey).when(userLookupCache).get("previous");
+        doReturn(renamedUser).when(userAccessor).getUserByKey(userKey);
+
+        final User user = toUser(UserBean.EXAMPLE_2);
+        doReturn(user).when(userManager).getUser("previous");
+
+        assertEquals(toUserBean(user), userService.getUser("previous"));
+        verify(userLookupCache).invalidate("previous");
+    }
+
+    @Test
+    public void testGetUserCachesLookup() throws EntityException {
+        final ConfluenceUser user = mock(ConfluenceUser.class);
+        final UserKey userKey = new UserKey("key");
+        doReturn(userKey).when(user).getKey();
+        doReturn(user).when(userManager).getUser("user");
+
+        userService.getUser("user");
+
+        verify(userLookupCache).put("user", userKey);
+    }
+
+    private static com.atlassian.crowd.embedded.api.User createCrowdUser(
+            final long directoryId) {
+
+        final com.atlassian.crowd.embedded.api.User user = mock(com.atlassian.crowd.embedded.api.User.class);
+        doReturn(directoryId).when(user).getDirectoryId();
+        return user;
+    }
+
+    private static Directory createDirectory(
+            final long id,
+            final DirectoryType type,
+            final Map<String, String> attributes) {
+
+        return ImmutableDirectory.builder("directory" + id, type, "test.class")
+                .setId(id)
+                .setAttributes(attributes)
+                .build();
+    }
+
+    private static UserBean createPasswordUserBean(
+            final String username) {
+
+        final UserBean userBean = new UserBean();
+        userBean.setUsername(username);
+        userBean.setPassword("new password");
+        return userBean;
+    }
+
 }
@@ -0,0 +1,116 @@
+package de.aservo.confapi.confluence.service;
+
+import com.atlassian.confluence.security.login.LoginInfo;
+import com.atlassian.confluence.security.login.LoginManager;
+import com.atlassian.confluence.user.ConfluenceUser;
+import com.atlassian.confluence.user.UserAccessor;
+import com.atlassian.crowd.embedded.api.CrowdService;
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.sal.api.transaction.TransactionCallback;
+import com.atlassian.sal.api.transaction.TransactionTemplate;
+import de.aservo.confapi.confluence.model.UserBulkItemBean;
+import de.aservo.confapi.confluence.model.UsersDeactivateBean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UsersDeactivateLongRunningTaskTest {
+
+    @Mock
+    private CrowdService crowdService;
+
+    @Mock
+    private UserAccessor userAccessor;
+
+    @Mock
+    private LoginManager loginManager;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void testDeactivateInactiveUsers() {
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction())
+                .when(transactionTemplate).execute(any());
+        doReturn(Arrays.asList(mockUser("inactive"), mockUser("active"), mockUser("never"), mockUser("admin")))
+                .when(crowdService).search(any());
+
+        mockLastLogin("inactive", 100);
+        mockLastLogin("active", 1);
+        mockLastLogin("admin", 100);
+        doReturn(true).when(crowdService).isUserMemberOfGroup("admin", "confluence-administrators");
+
+        final ConfluenceUser inactiveUser = mock(ConfluenceUser.class);
+        doReturn(inactiveUser).when(userAccessor).getUserByName("inactive");
+
+        final UsersDeactivateLongRunningTask task = createTask(new UsersDeactivateBean(
+                30, false, Collections.singletonList("confluence-administrators"), false));
+        task.runInternal();
+
+        final List<UserBulkItemBean> results = task.getResults();
+        assertEquals(4, task.getScanned());
+        assertEquals(1, results.size());
+        assertEquals("inactive", results.get(0).getUsername());
+        assertEquals(UserBulkItemBean.Status.DEACTIVATED, results.get(0).getStatus());
+        verify(userAccessor).deactivateUser(inactiveUser);
+    }
+
+    @Test
+    public void testDeactivateInactiveUsersDryRun() {
+        doReturn(Arrays.asList(mockUser("inactive"), mockUser("never")))
+                .when(crowdService).search(any());
+        mockLastLogin("inactive", 100);
+
+        final UsersDeactivateLongRunningTask task = createTask(new UsersDeactivateBean(30, true, null, true));
+        task.runInternal();
+
+        final List<UserBulkItemBean> results = task.getResults();
+        assertEquals(2, results.size());
+        assertEquals(UserBulkItemBean.Status.INACTIVE, results.get(0).getStatus());
+        assertEquals(UserBulkItemBean.Status.INACTIVE, results.get(1).getStatus());
+        verify(transactionTemplate, never()).execute(any());
+        verify(userAccessor, never()).deactivateUser(any());
+    }
+
+    private UsersDeactivateLongRunningTask createTask(
+            final UsersDeactivateBean usersDeactivateBean) {
+
+        return new UsersDeactivateLongRunningTask(crowdService, userAccessor, loginManager, transactionTemplate,
+                usersDeactivateBean);
+    }
+
+    private void mockLastLogin(
+            final String username,
+            final int daysAgo) {
+
+        final LoginInfo loginInfo = mock(LoginInfo.class);
+        doReturn(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysAgo)))
+                .when(loginInfo).getLastSuccessfulLoginDate();
+        doReturn(loginInfo).when(loginManager).getLoginInfo(username);
+    }
+
+    private static User mockUser(
+            final String username) {
+
+        final User user = mock(User.class);
+        doReturn(username).when(user).getName();
+        return user;
+    }
+
+}